@@ -1,7 +1,9 @@
 package pt.up.fe.comp2024;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -9,7 +11,17 @@ public class CompilerConfig {
 
     private static final String INPUT_FILE = "inputFile";
     private static final String OPTIMIZE = "optimize";
+    private static final String OPTIMIZATION_LEVEL = "optimizationLevel";
     private static final String REGISTER = "registerAllocation";
+    private static final String CLASSPATH = "classpath";
+    private static final String CLASS_INDEX_CACHE = "classIndexCache";
+    private static final String PARALLEL = "parallel";
+    private static final String PASS_STATISTICS = "passStatistics";
+
+    public static final int MAX_OPTIMIZATION_LEVEL = 2;
+
+    // Where the classes imported by the test programs are, the same classpath they are run with
+    private static final String DEFAULT_CLASSPATH = "libs-jmm/compiled";
 
 
     static Map<String, String> shortToLong = new HashMap<>();
@@ -17,7 +29,11 @@ public class CompilerConfig {
     static {
         shortToLong.put("i", CompilerConfig.INPUT_FILE);
         shortToLong.put("o", CompilerConfig.OPTIMIZE);
+        shortToLong.put("O", CompilerConfig.OPTIMIZATION_LEVEL);
         shortToLong.put("r", CompilerConfig.REGISTER);
+        shortToLong.put("c", CompilerConfig.CLASSPATH);
+        shortToLong.put("p", CompilerConfig.PARALLEL);
+        shortToLong.put("s", CompilerConfig.PASS_STATISTICS);
     }
 
 
@@ -36,10 +52,85 @@ public class CompilerConfig {
         return Boolean.parseBoolean(config.getOrDefault(OPTIMIZE, "false"));
     }
 
+    /**
+     * The level is given with '-O', as in '-O0', '-O1' or '-O2', and '-O' alone is the first level. Without it, '-o'
+     * enables every optimization.
+     *
+     * @param config
+     * @return the optimization level, from 0, which does not optimize, to {@link #MAX_OPTIMIZATION_LEVEL}
+     */
+    public static int getOptimizationLevel(Map<String, String> config) {
+        var level = config.get(OPTIMIZATION_LEVEL);
+        if (level == null) {
+            return getOptimize(config) ? MAX_OPTIMIZATION_LEVEL : 0;
+        }
+
+        if (level.equals("true")) {
+            return 1;
+        }
+
+        try {
+            var value = Integer.parseInt(level);
+            if (value >= 0 && value <= MAX_OPTIMIZATION_LEVEL) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below, as any other invalid level
+        }
+
+        throw new RuntimeException("Invalid optimization level '" + level + "', expected a level from 0 to "
+                + MAX_OPTIMIZATION_LEVEL);
+    }
+
     public static int getRegisterAllocation(Map<String, String> config) {
         return Integer.parseInt(config.getOrDefault(REGISTER, "-1"));
     }
 
+    /**
+     * @param config
+     * @return true if the methods of the class are compiled in parallel
+     */
+    public static boolean getParallel(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(PARALLEL, "false"));
+    }
+
+    /**
+     * @param config
+     * @return true if the runs, changes and time of each optimization pass are reported
+     */
+    public static boolean getPassStatistics(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(PASS_STATISTICS, "false"));
+    }
+
+
+    /**
+     * @param config
+     * @return the directories and jars with the compiled classes that can be imported
+     */
+    public static List<File> getClasspath(Map<String, String> config) {
+        var classpath = config.getOrDefault(CLASSPATH, DEFAULT_CLASSPATH);
+
+        return Arrays.stream(classpath.split(File.pathSeparator))
+                .filter(entry -> !entry.isBlank())
+                .map(File::new)
+                .toList();
+    }
+
+    /**
+     * @param config
+     * @return the file where the index of the classpath is kept between runs
+     */
+    public static File getClassIndexCache(Map<String, String> config) {
+        var cacheFile = config.get(CLASS_INDEX_CACHE);
+        if (cacheFile != null) {
+            return new File(cacheFile);
+        }
+
+        var classpath = getClasspath(config).stream().map(File::getAbsolutePath).toList();
+        var name = "jmm-class-index-" + Integer.toHexString(classpath.hashCode()) + ".bin";
+
+        return new File(System.getProperty("java.io.tmpdir"), name);
+    }
 
     public static Map<String, String> getDefault() {
 
@@ -83,6 +174,9 @@ public class CompilerConfig {
                 if (equalSign.equals("=")) {
 
                     value = arg.substring(3);
+                } else {
+                    // Values can also follow the option directly, as in '-O2'
+                    value = arg.substring(2);
                 }
             }
 
@@ -105,6 +199,7 @@ public class CompilerConfig {
 
         // Verify if values are valid
         getOptimize(config);
+        getOptimizationLevel(config);
         getRegisterAllocation(config);
 
         return config;
@@ -5,6 +5,7 @@ import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
 import pt.up.fe.comp2024.backend.JasminBackendImpl;
 import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
@@ -43,9 +44,20 @@ public class Launcher {
 
         // Optimization stage
         JmmOptimizationImpl ollirGen = new JmmOptimizationImpl();
+        semanticsResult = ollirGen.optimize(semanticsResult);
+        TestUtils.noErrors(semanticsResult.getReports());
+
         OllirResult ollirResult = ollirGen.toOllir(semanticsResult);
         TestUtils.noErrors(ollirResult.getReports());
 
+        ollirResult = ollirGen.optimize(ollirResult);
+        TestUtils.noErrors(ollirResult.getReports());
+
+        // Print the statistics of the optimization passes
+        ollirResult.getReports().stream()
+                .filter(report -> report.getType() == ReportType.DEBUG)
+                .forEach(report -> System.out.println(report.getMessage()));
+
         // Print OLLIR code
         System.out.println(ollirResult.getOllirCode());
 
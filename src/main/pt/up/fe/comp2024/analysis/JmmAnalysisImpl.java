@@ -8,6 +8,8 @@ import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.analysis.passes.UndeclaredVariable;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.symboltable.ClassIndex;
 import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
 
 import java.util.ArrayList;
@@ -29,7 +31,9 @@ public class JmmAnalysisImpl implements JmmAnalysis {
 
         JmmNode rootNode = parserResult.getRootNode();
 
-        SymbolTable table = JmmSymbolTableBuilder.build(rootNode);
+        var config = parserResult.getConfig();
+        var classIndex = ClassIndex.load(CompilerConfig.getClasspath(config), CompilerConfig.getClassIndexCache(config));
+        SymbolTable table = JmmSymbolTableBuilder.build(rootNode, classIndex);
 
         List<Report> reports = new ArrayList<>();
 
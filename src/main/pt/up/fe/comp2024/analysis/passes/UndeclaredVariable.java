@@ -50,18 +50,18 @@ public class UndeclaredVariable extends AnalysisVisitor {
         addVisit(Kind.NEGATION, this::visitNegationExpr);
         addVisit(Kind.METHOD_CALL, this::visitMethodCall);
         addVisit(Kind.NEW_CLASS, this::visitNewClass);
-        addVisit("String", this::dealWithType);
-        addVisit("Double", this::dealWithType);
-        addVisit("Boolean", this::dealWithType);
-        addVisit("ClassDeclaration", this::dealClassDecl);
-        addVisit("Int", this::dealWithType);
-        addVisit("Integer", this::dealWithType);
-        addVisit("Id", this::dealWithType);
-        addVisit("Identifier", this::dealWithType);
+        addVisit(Kind.STRING, this::dealWithType);
+        addVisit(Kind.DOUBLE, this::dealWithType);
+        addVisit(Kind.BOOL, this::dealWithType);
+        addVisit(Kind.CLASS_DECLARATION, this::dealClassDecl);
+        addVisit(Kind.INT, this::dealWithType);
+        addVisit(Kind.VARIABLE_INT, this::dealWithType);
+        addVisit(Kind.ID, this::dealWithType);
+        addVisit(Kind.IDENTIFIER, this::dealWithType);
         addVisit(Kind.CONDITION_STM, this::visitBooleanExpr);
         addVisit(Kind.THIS, this::visitThisExpr);
-        addVisit("IfStm", this::visitIfStm);
-        addVisit("WhileStm", this::visitWhileStm);
+        addVisit(Kind.IF_STM, this::visitIfStm);
+        addVisit(Kind.WHILE_STM, this::visitWhileStm);
         addVisit(Kind.VAR_DECL, this::visitVarDeclaration);
     }
 
@@ -213,7 +213,7 @@ public class UndeclaredVariable extends AnalysisVisitor {
             return null;
         }
 
-        if(retType.hasAttribute("vararg") && stmt.getKind().equals("ArrayAccess")){
+        if(retType.hasAttribute("vararg") && Kind.ARRAY_ACCESS.check(stmt)){
             String message = "Invalid return type, varargs cannot be used in array access";
             addReport(Report.newError(
                     Stage.SEMANTIC,
@@ -287,7 +287,7 @@ public class UndeclaredVariable extends AnalysisVisitor {
         Set <String> paramsSet = new HashSet<>();
         localVariables.clear();
 
-        if(method.getChild(0).getKind().equals("VARARG")){
+        if(Kind.VARARG.check(method.getChild(0))){
             String message = "Invalid return type: cannot return VARARG";
             addReport(Report.newError(
                     Stage.SEMANTIC,
@@ -333,7 +333,7 @@ public class UndeclaredVariable extends AnalysisVisitor {
 
 
         var nrVarags = params.stream().filter(
-                param->param.getChild(0).getKind().equals("VARARG")
+                param->Kind.VARARG.check(param.getChild(0))
         ).count();
 
         if (nrVarags > 0) {
@@ -349,7 +349,7 @@ public class UndeclaredVariable extends AnalysisVisitor {
             }
             var pos = 0;
             for (var paramsAux : method.getChildren("ParamDeclaration")) {
-                if (paramsAux.getChild(0).getKind().equals("VARARG")) {
+                if (Kind.VARARG.check(paramsAux.getChild(0))) {
                     pos = method.getChildren().indexOf(paramsAux)-1;
                 }
             }
@@ -697,9 +697,20 @@ public class UndeclaredVariable extends AnalysisVisitor {
             return null;
         }
 
-        if (rhsNode.getKind().equals("MethodCall")) {
-            var aux3 = rhsNode.getJmmChild(0);
-            if (table.getImports().contains(TypeUtils.getExprType(aux3, table).getName())) {
+        if (Kind.METHOD_CALL.check(rhsNode)) {
+            var receiver = rhsNode.getJmmChild(0);
+            var receiverType = TypeUtils.getExprType(receiver, table);
+
+            // The receiver of a static call is the name of a class, which has no type
+            String receiverClass = null;
+            if (receiverType != null) {
+                receiverClass = receiverType.getName();
+            } else if (Kind.VAR_REF_EXPR.check(receiver)) {
+                receiverClass = receiver.get("name");
+            }
+
+            // Calls on imported classes are assumed correct
+            if (table.getImports().contains(receiverClass)) {
                 return null;
             }
         }
@@ -743,7 +754,7 @@ public class UndeclaredVariable extends AnalysisVisitor {
 
     private Void visitMethodCall (JmmNode method, SymbolTable table){
 
-        if (method.getChild(0).getKind().equals("This")) {
+        if (Kind.THIS.check(method.getChild(0))) {
             return null;
         }
 
@@ -800,7 +811,7 @@ public class UndeclaredVariable extends AnalysisVisitor {
             } else if (table.getClassName().equals(method.get("value"))) {
                 return null;
             }
-            if (method.getKind().equals("MethodCall")) {
+            if (Kind.METHOD_CALL.check(method)) {
                 JmmNode rhsNode = method.getChildren().get(0);
                 Type rhsNodeType = TypeUtils.getExprType(rhsNode, table);
                 if (rhsNodeType != null && table.getImports().contains(rhsNodeType.getName())) {
@@ -0,0 +1,405 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.NodePosition;
+import pt.up.fe.specs.util.SpecsCheck;
+import pt.up.fe.specs.util.SpecsSystem;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Compact {@link JmmNode} implementation used for the ASTs built by the parser.
+ * <p>
+ * Instead of a map of strings per node, the kind is interned (and resolved to a {@link Kind} when possible),
+ * source positions are stored as primitive ints and the grammar attributes live in an array of slots whose
+ * names are shared by every node built from the same ANTLR context class. Attributes added later
+ * (e.g. by the semantic analysis) go to a small overflow map that is only allocated when needed.
+ */
+public class CompactJmmNode implements JmmNode {
+
+    /**
+     * Value used for positions that are not known.
+     */
+    public static final int NO_POSITION = Integer.MIN_VALUE;
+
+    private static final String LINE_START = NodePosition.LINE_START.getKey();
+    private static final String COL_START = NodePosition.COL_START.getKey();
+    private static final String LINE_END = NodePosition.LINE_END.getKey();
+    private static final String COL_END = NodePosition.COL_END.getKey();
+    private static final List<String> POSITION_KEYS = List.of(LINE_START, COL_START, LINE_END, COL_END);
+
+    private final String kind;
+    private final Kind nodeKind;
+    private final List<String> hierarchy;
+
+    private int lineStart = NO_POSITION;
+    private int colStart = NO_POSITION;
+    private int lineEnd = NO_POSITION;
+    private int colEnd = NO_POSITION;
+
+    private final String[] slotNames;
+    private final Object[] slots;
+    private Map<String, Object> extraAttributes;
+
+    private final List<JmmNode> children;
+    private JmmNode parent;
+
+    /**
+     * Creates a node with the given shape.
+     *
+     * @param kind      the kind of the node, already interned
+     * @param nodeKind  the corresponding {@link Kind}, or null if the kind has no enum constant
+     * @param hierarchy the hierarchy of the node, shared between nodes of the same kind
+     * @param slotNames the names of the attribute slots, shared between nodes of the same kind
+     * @param numChildren expected number of children, used to size the children list
+     */
+    public CompactJmmNode(String kind, Kind nodeKind, List<String> hierarchy, String[] slotNames, int numChildren) {
+        this.kind = kind;
+        this.nodeKind = nodeKind;
+        this.hierarchy = hierarchy;
+        this.slotNames = slotNames;
+        this.slots = new Object[slotNames.length];
+        this.children = new ArrayList<>(numChildren);
+    }
+
+    /**
+     * Creates a node of the given kind without attribute slots, for nodes created after parsing.
+     *
+     * @param kind
+     */
+    public CompactJmmNode(Kind kind) {
+        this(kind.getNodeName(), kind, List.of(kind.getNodeName()), new String[0], 0);
+    }
+
+    /**
+     * @return the {@link Kind} of this node, or null if the kind of the node has no enum constant
+     */
+    public Kind getNodeKind() {
+        return nodeKind;
+    }
+
+    public int getLineStart() {
+        return lineStart;
+    }
+
+    public int getColStart() {
+        return colStart;
+    }
+
+    public int getLineEnd() {
+        return lineEnd;
+    }
+
+    public int getColEnd() {
+        return colEnd;
+    }
+
+    public void setPosition(int lineStart, int colStart, int lineEnd, int colEnd) {
+        this.lineStart = lineStart;
+        this.colStart = colStart;
+        this.lineEnd = lineEnd;
+        this.colEnd = colEnd;
+    }
+
+    @Override
+    public String getKind() {
+        return kind;
+    }
+
+    @Override
+    public Collection<String> getHierarchy() {
+        return hierarchy;
+    }
+
+    @Override
+    public boolean isInstance(String kind) {
+        // Most checks are against the kind of the node, avoid going through the hierarchy
+        return this.kind.equals(kind) || hierarchy.contains(kind);
+    }
+
+    @Override
+    public Collection<String> getAttributes() {
+        var attributes = new ArrayList<String>(POSITION_KEYS.size() + slots.length);
+
+        for (var key : POSITION_KEYS) {
+            if (getPosition(key) != NO_POSITION) {
+                attributes.add(key);
+            }
+        }
+
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != null) {
+                attributes.add(slotNames[i]);
+            }
+        }
+
+        if (extraAttributes != null) {
+            attributes.addAll(extraAttributes.keySet());
+        }
+
+        return attributes;
+    }
+
+    @Override
+    public boolean hasAttribute(String attribute) {
+        if (isPositionKey(attribute)) {
+            return getPosition(attribute) != NO_POSITION;
+        }
+
+        int slot = getSlotIndex(attribute);
+        if (slot != -1 && slots[slot] != null) {
+            return true;
+        }
+
+        return extraAttributes != null && extraAttributes.containsKey(attribute);
+    }
+
+    @Override
+    public Object getObject(String attribute) {
+        Object value = getObjectOrNull(attribute);
+
+        SpecsCheck.checkNotNull(value, () -> "Node " + getKind() + " does not contain attribute '" + attribute + "'");
+
+        return value;
+    }
+
+    @Override
+    public Optional<Object> getOptionalObject(String attribute) {
+        return Optional.ofNullable(getObjectOrNull(attribute));
+    }
+
+    private Object getObjectOrNull(String attribute) {
+        if (isPositionKey(attribute)) {
+            int position = getPosition(attribute);
+            return position == NO_POSITION ? null : Integer.toString(position);
+        }
+
+        int slot = getSlotIndex(attribute);
+        if (slot != -1 && slots[slot] != null) {
+            return slots[slot];
+        }
+
+        return extraAttributes == null ? null : extraAttributes.get(attribute);
+    }
+
+    @Override
+    public Object putObject(String attribute, Object value) {
+        if (isPositionKey(attribute)) {
+            var previous = getObjectOrNull(attribute);
+            setPosition(attribute, Integer.parseInt(value.toString()));
+            return previous;
+        }
+
+        int slot = getSlotIndex(attribute);
+        if (slot != -1) {
+            var previous = slots[slot];
+            slots[slot] = value;
+            return previous;
+        }
+
+        if (extraAttributes == null) {
+            extraAttributes = new HashMap<>(4);
+        }
+
+        return extraAttributes.put(attribute, value);
+    }
+
+    private static boolean isPositionKey(String attribute) {
+        return POSITION_KEYS.contains(attribute);
+    }
+
+    private int getPosition(String key) {
+        if (key.equals(LINE_START)) {
+            return lineStart;
+        }
+        if (key.equals(COL_START)) {
+            return colStart;
+        }
+        if (key.equals(LINE_END)) {
+            return lineEnd;
+        }
+        return colEnd;
+    }
+
+    private void setPosition(String key, int value) {
+        if (key.equals(LINE_START)) {
+            lineStart = value;
+        } else if (key.equals(COL_START)) {
+            colStart = value;
+        } else if (key.equals(LINE_END)) {
+            lineEnd = value;
+        } else {
+            colEnd = value;
+        }
+    }
+
+    private int getSlotIndex(String attribute) {
+        // Nodes have very few slots, a linear scan is cheaper than hashing
+        for (int i = 0; i < slotNames.length; i++) {
+            if (slotNames[i].equals(attribute)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Deprecated
+    @Override
+    public JmmNode getJmmParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(JmmNode parent) {
+        this.parent = parent;
+    }
+
+    @Override
+    public void removeParent() {
+        this.parent = null;
+    }
+
+    @Override
+    public List<JmmNode> getChildren() {
+        return new ArrayList<>(children);
+    }
+
+    @Override
+    public JmmNode getChild(int index) {
+        return children.get(index);
+    }
+
+    @Override
+    public JmmNode getJmmChild(int index) {
+        return children.get(index);
+    }
+
+    @Override
+    public int getNumChildren() {
+        return children.size();
+    }
+
+    @Override
+    public void add(JmmNode child, int index) {
+        children.add(index, child);
+        child.setParent(this);
+    }
+
+    @Override
+    public void setChild(JmmNode newNode, int index) {
+        var currentChild = children.get(index);
+
+        // Remove parent before setting
+        JmmNode newNodeParent = newNode.getParent();
+        int newNodeCurrentIndex = -1;
+
+        if (newNodeParent != null) {
+            newNodeCurrentIndex = newNode.getIndexOfSelf();
+            newNode.removeParent();
+        }
+
+        children.set(index, newNode);
+        newNode.setParent(this);
+
+        // Remove parent from current child
+        currentChild.removeParent();
+
+        // If new node had a parent, set this node at the old position of the new node
+        if (newNodeParent instanceof CompactJmmNode compactParent) {
+            compactParent.children.set(newNodeCurrentIndex, currentChild);
+            currentChild.setParent(compactParent);
+        } else if (newNodeParent != null) {
+            newNodeParent.removeJmmChild(newNodeCurrentIndex);
+            newNodeParent.add(currentChild, newNodeCurrentIndex);
+        }
+    }
+
+    @Override
+    public int getIndexOfSelf() {
+        if (parent == null) {
+            return -1;
+        }
+
+        for (int i = 0; i < parent.getNumChildren(); i++) {
+            if (parent.getJmmChild(i) == this) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public JmmNode removeJmmChild(int index) {
+        if (index < 0 || index >= children.size()) {
+            throw new IndexOutOfBoundsException("Tried to remove child at index " + index + ", but node only has "
+                    + children.size() + " children");
+        }
+
+        var removedChild = children.remove(index);
+        removedChild.removeParent();
+        return removedChild;
+    }
+
+    @Deprecated
+    @Override
+    public int removeJmmChild(JmmNode node) {
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i) == node) {
+                removeJmmChild(i);
+                return i;
+            }
+        }
+
+        // The node is not a child, which the caller sees in the index
+        return -1;
+    }
+
+    @Override
+    public JmmNode detach() {
+        if (parent == null) {
+            throw new IllegalStateException("Tried to remove node " + kind + " from the tree, but it has no parent");
+        }
+
+        parent.removeChild(this);
+
+        return this;
+    }
+
+    @Override
+    public JmmNode copyNode() {
+        var copy = new CompactJmmNode(kind, nodeKind, hierarchy, slotNames, children.size());
+
+        copy.setPosition(lineStart, colStart, lineEnd, colEnd);
+        System.arraycopy(slots, 0, copy.slots, 0, slots.length);
+
+        if (extraAttributes != null) {
+            copy.extraAttributes = new HashMap<>(extraAttributes);
+        }
+
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        var string = new StringBuilder(kind);
+
+        var attrs = getAttributes().stream()
+                .filter(attr -> !POSITION_KEYS.contains(attr))
+                .collect(Collectors.toList());
+
+        if (!attrs.isEmpty()) {
+            string.append(attrs.stream()
+                    .map(attr -> attr + ": " + get(attr))
+                    .collect(Collectors.joining(", ", " (", ")")));
+        }
+
+        if (SpecsSystem.isDebug() && lineStart != NO_POSITION) {
+            string.append(" ").append(lineStart).append(":").append(colStart)
+                    .append("->").append(lineEnd).append(":").append(colEnd);
+        }
+
+        return string.toString();
+    }
+}
@@ -4,6 +4,8 @@ import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.specs.util.SpecsStrings;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 public enum Kind {
@@ -12,8 +14,13 @@ public enum Kind {
 
     METHOD_CALL,
 
-    VARIABLE_INT,
-    VARARG,
+    VARIABLE_INT("VARIABLE_INT"),
+    VARARG("VARARG"),
+    INT("INT"),
+    BOOL("BOOL"),
+    DOUBLE("DOUBLE"),
+    STRING("STRING"),
+    ID("ID"),
 
     NEGATION,
 
@@ -64,7 +71,8 @@ public enum Kind {
     WHILE_STM,
     FOR_STMT,
 
-    BRACKETS,
+    // The parser names blocks after the label of the rule
+    BRACKETS("BRACKETS"),
 
     EXPR_STMT,
 
@@ -77,6 +85,14 @@ public enum Kind {
     private static final Set<Kind> STATEMENTS = Set.of(ASSIGN_STMT, RETURN_STMT);
     private static final Set<Kind> EXPRESSIONS = Set.of(BINARY_EXPR, INTEGER_LITERAL, VAR_REF_EXPR);
 
+    private static final Map<String, Kind> KINDS_BY_NAME = new HashMap<>();
+
+    static {
+        for (Kind k : values()) {
+            KINDS_BY_NAME.putIfAbsent(k.getNodeName(), k);
+        }
+    }
+
     private final String name;
 
     private Kind(String name) {
@@ -88,13 +104,36 @@ public enum Kind {
     }
 
     public static Kind fromString(String kind) {
+        var k = KINDS_BY_NAME.get(kind);
 
-        for (Kind k : Kind.values()) {
-            if (k.getNodeName().equals(kind)) {
-                return k;
-            }
+        if (k == null) {
+            throw new RuntimeException("Could not convert string '" + kind + "' to a Kind");
         }
-        throw new RuntimeException("Could not convert string '" + kind + "' to a Kind");
+
+        return k;
+    }
+
+    /**
+     * @param kind
+     * @return the Kind with the given node name, or null if there is none
+     */
+    public static Kind lookup(String kind) {
+        return KINDS_BY_NAME.get(kind);
+    }
+
+    /**
+     * Returns the Kind of the given node. Nodes built by the parser already carry their Kind, so this avoids
+     * converting the kind name in the common case.
+     *
+     * @param node
+     * @return
+     */
+    public static Kind fromNode(JmmNode node) {
+        if (node instanceof CompactJmmNode compactNode && compactNode.getNodeKind() != null) {
+            return compactNode.getNodeKind();
+        }
+
+        return fromString(node.getKind());
     }
 
     public String getNodeName() {
@@ -127,6 +166,10 @@ public enum Kind {
      * @return
      */
     public boolean check(JmmNode node) {
+        if (node instanceof CompactJmmNode compactNode && compactNode.getNodeKind() != null) {
+            return compactNode.getNodeKind() == this;
+        }
+
         return node.getKind().equals(getNodeName());
     }
 
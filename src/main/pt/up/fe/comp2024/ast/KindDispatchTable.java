@@ -0,0 +1,53 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.Collection;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Caches the visit method chosen for each {@link Kind}, indexed by ordinal.
+ * <p>
+ * The visitors of the library look up the visit method by going through the hierarchy of the node and hashing each
+ * name. Since every node of the same kind built by the parser shares the same hierarchy, the lookup is done once per
+ * kind and reused afterwards. Nodes without a {@link Kind} are always resolved with the given resolver.
+ * <p>
+ * Visitors should create the table after their visit methods are registered, i.e. as a field initializer.
+ *
+ * @param <D>
+ * @param <R>
+ */
+public class KindDispatchTable<D, R> {
+
+    private final Function<JmmNode, BiFunction<JmmNode, D, R>> resolver;
+    private final Object[] visits;
+    private final Object[] hierarchies;
+
+    /**
+     * @param resolver the original lookup of the visitor, usually {@code super::getVisit}
+     */
+    public KindDispatchTable(Function<JmmNode, BiFunction<JmmNode, D, R>> resolver) {
+        this.resolver = resolver;
+        this.visits = new Object[Kind.values().length];
+        this.hierarchies = new Object[Kind.values().length];
+    }
+
+    @SuppressWarnings("unchecked")
+    public BiFunction<JmmNode, D, R> get(JmmNode node) {
+        if (!(node instanceof CompactJmmNode compactNode) || compactNode.getNodeKind() == null) {
+            return resolver.apply(node);
+        }
+
+        int index = compactNode.getNodeKind().ordinal();
+        Collection<String> hierarchy = compactNode.getHierarchy();
+
+        // Nodes created after parsing may have a different hierarchy than the ones built by the parser
+        if (hierarchies[index] != hierarchy) {
+            visits[index] = resolver.apply(node);
+            hierarchies[index] = hierarchy;
+        }
+
+        return (BiFunction<JmmNode, D, R>) visits[index];
+    }
+}
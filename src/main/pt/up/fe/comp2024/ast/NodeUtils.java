@@ -5,15 +5,25 @@ import pt.up.fe.comp.jmm.ast.JmmNode;
 public class NodeUtils {
 
     public static int getLine(JmmNode node) {
+        if (node instanceof CompactJmmNode compactNode) {
+            return getPosition(compactNode.getLineStart());
+        }
 
         return getIntegerAttribute(node, "lineStart", "-1");
     }
 
     public static int getColumn(JmmNode node) {
+        if (node instanceof CompactJmmNode compactNode) {
+            return getPosition(compactNode.getColStart());
+        }
 
         return getIntegerAttribute(node, "colStart", "-1");
     }
 
+    private static int getPosition(int position) {
+        return position == CompactJmmNode.NO_POSITION ? -1 : position;
+    }
+
     public static int getIntegerAttribute(JmmNode node, String attribute, String defaultVal) {
         String line = node.getOptional(attribute).orElse(defaultVal);
         return Integer.parseInt(line);
@@ -4,6 +4,8 @@ import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.symboltable.ImportedClass;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 
 import java.util.List;
 import java.util.Objects;
@@ -45,26 +47,26 @@ public class TypeUtils {
     public static Type getExprType(JmmNode expr, SymbolTable table) {
         // TODO: Simple implementation that needs to be expanded
 
-        var kind = Kind.fromString(expr.getKind());
+        var kind = Kind.fromNode(expr);
 
         return switch (kind) {
             case BINARY_EXPR -> getBinExprType(expr);
             case BINARY_EXPR_AND -> getBinExprType(expr);
             case VAR_REF_EXPR -> getVarExprType(expr, table);
-            case INTEGER_LITERAL -> new Type(INT_TYPE_NAME, false);
-            case IDENTIFIER, NEGATION -> new Type("boolean", false);
+            case INTEGER_LITERAL -> Types.INT;
+            case IDENTIFIER, NEGATION -> Types.BOOLEAN;
             case PARENTESIS -> getExprType(expr.getChild(0), table);
-            case NEW_CLASS -> new Type(expr.get("value"), false);
-            case THIS -> new Type(table.getClassName(), false);
+            case NEW_CLASS -> Types.get(expr.get("value"));
+            case THIS -> Types.get(table.getClassName());
             case METHOD_CALL -> getReturnType(expr, table);
-            case ARRAY_DECLARATION -> new Type(INT_TYPE_NAME, true);
-            case ARRAY_ACCESS -> new Type(INT_TYPE_NAME, false);
-            case ARRAY_LITERAL -> new Type(INT_TYPE_NAME, true);
-            case LENGTH -> new Type(INT_TYPE_NAME, false);
-            case VARARG -> new Type("vararg", true);
+            case ARRAY_DECLARATION -> Types.INT_ARRAY;
+            case ARRAY_ACCESS -> Types.INT;
+            case ARRAY_LITERAL -> Types.INT_ARRAY;
+            case LENGTH -> Types.INT;
+            case VARARG -> Types.VARARG;
 
             default ->
-                    new Type("undefined", false);
+                    Types.UNDEFINED;
         };
 
         //return type;
@@ -83,8 +85,8 @@ public class TypeUtils {
         String operator = binaryExpr.get("op");
 
         return switch (operator) {
-            case "+", "*", "-", "/" -> new Type(INT_TYPE_NAME, false);
-            case "==" , "!=" , "<=",  ">=", "<" , ">", "&&", "||" -> new Type("boolean", false);
+            case "+", "*", "-", "/" -> Types.INT;
+            case "==" , "!=" , "<=",  ">=", "<" , ">", "&&", "||" -> Types.BOOLEAN;
             default ->
                     throw new RuntimeException("Unknown operator '" + operator + "' of expression '" + binaryExpr + "'");
         };
@@ -137,6 +139,13 @@ public class TypeUtils {
     public static Type getReturnType(JmmNode methodCall, SymbolTable table) {
         String methodName = methodCall.get("value");
         JmmNode x = methodCall.getChild(0);
+
+        // The classpath knows the exact type of methods of imported classes
+        var importedReturnType = getImportedReturnType(methodCall, table);
+        if (importedReturnType.isPresent()) {
+            return importedReturnType.get();
+        }
+
         Type classType = getExprType(x, table);
         if(classType==null){
             return null;
@@ -154,9 +163,74 @@ public class TypeUtils {
                 }
 
             }
-            return new Type("undefined", false);
+            return Types.UNDEFINED;
+        }
+
+    }
+
+    /**
+     * Looks up the return type of a call to a method of an imported class in the classpath. This covers static calls
+     * on an imported class, calls on objects of an imported class and calls to methods this class inherits from an
+     * imported superclass.
+     *
+     * @param methodCall
+     * @param table
+     * @return the return type of the method, if the class is in the classpath and declares it
+     */
+    public static Optional<Type> getImportedReturnType(JmmNode methodCall, SymbolTable table) {
+        if (!(table instanceof JmmSymbolTable jmmTable) || jmmTable.getClassIndex().isEmpty()) {
+            return Optional.empty();
+        }
+
+        String methodName = methodCall.get("value");
+        JmmNode receiver = methodCall.getChild(0);
+
+        String className;
+        if (Kind.VAR_REF_EXPR.check(receiver) && getVarExprType(receiver, table) == null) {
+            // A static call, the receiver is the name of the class
+            className = receiver.get("name");
+        } else {
+            var receiverType = getExprType(receiver, table);
+            if (receiverType == null || receiverType.isArray()) {
+                return Optional.empty();
+            }
+            className = receiverType.getName();
+        }
+
+        if (className.equals(table.getClassName())) {
+            if (table.getMethods().contains(methodName) || table.getSuper() == null) {
+                return Optional.empty();
+            }
+            className = table.getSuper();
+        }
+
+        var importedClass = getImportedClass(className, table);
+        if (importedClass.isEmpty()) {
+            return Optional.empty();
+        }
+
+        return jmmTable.getClassIndex().getReturnType(importedClass.get().getName(), methodName,
+                methodCall.getNumChildren() - 1);
+    }
+
+    /**
+     * @param className the name of a class as used in the code, without its package
+     * @param table
+     * @return the class in the classpath that an import of the table refers to by that name
+     */
+    public static Optional<ImportedClass> getImportedClass(String className, SymbolTable table) {
+        if (!(table instanceof JmmSymbolTable jmmTable)) {
+            return Optional.empty();
+        }
+
+        for (String importDecl : table.getImports()) {
+            String[] segments = importDecl.split("\\.");
+            if (segments[segments.length - 1].equals(className)) {
+                return jmmTable.getClassIndex().find(importDecl);
+            }
         }
 
+        return Optional.empty();
     }
 
 }
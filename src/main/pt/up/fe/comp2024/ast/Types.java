@@ -0,0 +1,53 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical {@link Type} instances, shared by the symbol table, the semantic analysis and the lowering to OLLIR.
+ * <p>
+ * Types are compared with equals, so sharing an instance never changes the result of a comparison, and it avoids
+ * allocating a new type every time the type of an expression is asked for. The instances returned here are shared,
+ * so attributes must never be put on them.
+ */
+public class Types {
+
+    public static final Type INT = new Type("int", false);
+    public static final Type BOOLEAN = new Type("boolean", false);
+    public static final Type VOID = new Type("void", false);
+    public static final Type INT_ARRAY = new Type("int", true);
+    public static final Type STRING_ARRAY = new Type("String", true);
+    public static final Type VARARG = new Type("vararg", true);
+    public static final Type UNDEFINED = new Type("undefined", false);
+
+    private static final Map<String, Type> SCALAR_TYPES = new ConcurrentHashMap<>();
+    private static final Map<String, Type> ARRAY_TYPES = new ConcurrentHashMap<>();
+
+    static {
+        for (var type : new Type[]{INT, BOOLEAN, VOID, INT_ARRAY, STRING_ARRAY, VARARG, UNDEFINED}) {
+            (type.isArray() ? ARRAY_TYPES : SCALAR_TYPES).put(type.getName(), type);
+        }
+    }
+
+    /**
+     * @param name
+     * @param isArray
+     * @return the canonical type with the given name
+     */
+    public static Type get(String name, boolean isArray) {
+        var types = isArray ? ARRAY_TYPES : SCALAR_TYPES;
+        var type = types.get(name);
+
+        return type != null ? type : types.computeIfAbsent(name, key -> new Type(key, isArray));
+    }
+
+    /**
+     * @param name
+     * @return the canonical type of a value of the given class, which is not an array
+     */
+    public static Type get(String name) {
+        return get(name, false);
+    }
+}
@@ -0,0 +1,206 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.tree.TreeNode;
+import pt.up.fe.specs.util.exceptions.NotImplementedException;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Chooses the Jasmin instructions for conditional jumps and for the values of comparisons.
+ * <p>
+ * Comparisons with zero use the branches that compare the top of the stack with zero, such as {@code iflt}, instead of
+ * loading the zero and using {@code if_icmplt}. A negation is merged into the branch by testing the opposite
+ * condition. Comparisons used as values avoid branches where a cheaper sequence gives the same result, e.g. the sign
+ * bit for {@code x < 0}.
+ */
+class BranchSelector {
+
+    private static final String NL = "\n";
+
+    private final Function<TreeNode, String> loader;
+    private final Supplier<String> labels;
+
+    /**
+     * @param loader the code that pushes the value of an operand or instruction
+     * @param labels gives a new label of the method each time it is called
+     */
+    BranchSelector(Function<TreeNode, String> loader, Supplier<String> labels) {
+        this.loader = loader;
+        this.labels = labels;
+    }
+
+    /**
+     * @param condition the condition of a branch, or the value of an assignment
+     * @return true if the condition can be tested by {@link #branch} without computing its value first
+     */
+    static boolean isCondition(Instruction condition) {
+        if (condition instanceof BinaryOpInstruction binaryOp) {
+            return isComparison(binaryOp.getOperation().getOpType());
+        }
+
+        return condition instanceof UnaryOpInstruction unaryOp && isNegation(unaryOp.getOperation().getOpType());
+    }
+
+    /**
+     * @param condition
+     * @param label
+     * @param negate    if the jump is taken when the condition does not hold
+     * @return the code that jumps to the label if the condition holds, or does not hold if negated
+     */
+    String branch(Instruction condition, String label, boolean negate) {
+        if (condition instanceof BinaryOpInstruction binaryOp && isComparison(binaryOp.getOperation().getOpType())) {
+            return compareAndBranch(binaryOp, label, negate);
+        }
+
+        if (condition instanceof UnaryOpInstruction unaryOp && isNegation(unaryOp.getOperation().getOpType())) {
+            return testAndBranch(unaryOp.getOperand(), label, !negate);
+        }
+
+        if (condition instanceof SingleOpInstruction singleOp) {
+            return testAndBranch(singleOp.getSingleOperand(), label, negate);
+        }
+
+        // Other operations, such as a logical and, are computed and then compared with zero
+        return loader.apply(condition) + (negate ? "ifeq " : "ifne ") + label + NL;
+    }
+
+    /**
+     * @param comparison
+     * @return the code that pushes 1 if the comparison holds and 0 otherwise
+     */
+    String materialize(BinaryOpInstruction comparison) {
+        var opType = comparison.getOperation().getOpType();
+        var left = comparison.getLeftOperand();
+        var right = comparison.getRightOperand();
+
+        // 0 < x is x > 0, so a zero on the left is handled as one on the right
+        if (isZero(left) && !isZero(right)) {
+            opType = swap(opType);
+            var temp = left;
+            left = right;
+            right = temp;
+        }
+
+        if (isZero(right) && left.getType().getTypeOfElement() == ElementType.INT32) {
+            // The sign bit is 1 exactly when the number is negative
+            if (opType == OperationType.LTH) {
+                return loader.apply(left) + "bipush 31" + NL + "iushr" + NL;
+            }
+            if (opType == OperationType.GTE) {
+                return loader.apply(left) + "bipush 31" + NL + "iushr" + NL + "iconst_1" + NL + "ixor" + NL;
+            }
+        }
+
+        // Booleans are 0 or 1, so they differ exactly when their exclusive or is 1
+        if (isBoolean(left) && isBoolean(right)) {
+            if (opType == OperationType.NEQ) {
+                return loader.apply(left) + loader.apply(right) + "ixor" + NL;
+            }
+            if (opType == OperationType.EQ) {
+                return loader.apply(left) + loader.apply(right) + "ixor" + NL + "iconst_1" + NL + "ixor" + NL;
+            }
+        }
+
+        var trueLabel = labels.get();
+        var endLabel = labels.get();
+
+        return branch(comparison, trueLabel, false)
+                + "iconst_0" + NL
+                + "goto " + endLabel + NL
+                + trueLabel + ":" + NL
+                + "iconst_1" + NL
+                + endLabel + ":" + NL;
+    }
+
+    private String compareAndBranch(BinaryOpInstruction comparison, String label, boolean negate) {
+        var opType = comparison.getOperation().getOpType();
+        if (negate) {
+            opType = negate(opType);
+        }
+
+        var left = comparison.getLeftOperand();
+        var right = comparison.getRightOperand();
+
+        if (isZero(right)) {
+            return loader.apply(left) + "if" + getSuffix(opType) + " " + label + NL;
+        }
+
+        if (isZero(left)) {
+            return loader.apply(right) + "if" + getSuffix(swap(opType)) + " " + label + NL;
+        }
+
+        return loader.apply(left) + loader.apply(right) + "if_icmp" + getSuffix(opType) + " " + label + NL;
+    }
+
+    private String testAndBranch(Element operand, String label, boolean negate) {
+        // A constant condition either always jumps or never does
+        if (operand instanceof LiteralElement literal) {
+            boolean holds = !literal.getLiteral().equals("0");
+            return holds != negate ? "goto " + label + NL : "";
+        }
+
+        return loader.apply(operand) + (negate ? "ifeq " : "ifne ") + label + NL;
+    }
+
+    private static boolean isComparison(OperationType opType) {
+        return switch (opType) {
+            case LTH, GTH, LTE, GTE, EQ, NEQ -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean isNegation(OperationType opType) {
+        return opType == OperationType.NOT || opType == OperationType.NOTB;
+    }
+
+    private static boolean isZero(Element element) {
+        return element instanceof LiteralElement literal && literal.getLiteral().equals("0");
+    }
+
+    private static boolean isBoolean(Element element) {
+        return element.getType().getTypeOfElement() == ElementType.BOOLEAN;
+    }
+
+    /**
+     * @return the comparison that holds exactly when the given one does not
+     */
+    private static OperationType negate(OperationType opType) {
+        return switch (opType) {
+            case LTH -> OperationType.GTE;
+            case GTE -> OperationType.LTH;
+            case GTH -> OperationType.LTE;
+            case LTE -> OperationType.GTH;
+            case EQ -> OperationType.NEQ;
+            case NEQ -> OperationType.EQ;
+            default -> throw new NotImplementedException(opType);
+        };
+    }
+
+    /**
+     * @return the comparison that holds for the swapped operands, e.g. {@code a < b} is {@code b > a}
+     */
+    private static OperationType swap(OperationType opType) {
+        return switch (opType) {
+            case LTH -> OperationType.GTH;
+            case GTH -> OperationType.LTH;
+            case LTE -> OperationType.GTE;
+            case GTE -> OperationType.LTE;
+            case EQ, NEQ -> opType;
+            default -> throw new NotImplementedException(opType);
+        };
+    }
+
+    private static String getSuffix(OperationType opType) {
+        return switch (opType) {
+            case LTH -> "lt";
+            case GTH -> "gt";
+            case LTE -> "le";
+            case GTE -> "ge";
+            case EQ -> "eq";
+            case NEQ -> "ne";
+            default -> throw new NotImplementedException(opType);
+        };
+    }
+}
@@ -14,7 +14,7 @@ public class JasminBackendImpl implements JasminBackend {
 
         this.jasminCode = new StringBuilder();
 
-        var jasminGenerator = new JasminGenerator(ollirResult);
+        var jasminGenerator = new JasminGenerator(classUnit);
         var jasminCode = jasminGenerator.build();
 
         return new JasminResult(ollirResult, jasminCode, jasminGenerator.getReports());
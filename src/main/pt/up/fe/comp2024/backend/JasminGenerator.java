@@ -4,6 +4,7 @@ import org.specs.comp.ollir.*;
 import org.specs.comp.ollir.tree.TreeNode;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.CompilerConfig;
 import pt.up.fe.specs.util.classmap.FunctionClassMap;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
 import pt.up.fe.specs.util.utilities.StringLines;
@@ -11,43 +12,78 @@ import pt.up.fe.specs.util.utilities.StringLines;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static org.specs.comp.ollir.OperationType.*;
 
 
 /**
- * Generates Jasmin code from an OllirResult.
+ * Generates Jasmin code from an OLLIR ClassUnit.
  * <p>
- * One JasminGenerator instance per OllirResult.
+ * One JasminGenerator instance per ClassUnit.
  */
 public class JasminGenerator {
 
     private static final String NL = "\n";
     private static final String TAB = "   ";
 
-    private final OllirResult ollirResult;
+    private final ClassUnit classUnit;
+
+    // Internal names of the classes used by the class, which are resolved through the imports only once
+    private final Map<String, String> classNames;
+
+    // If the methods are generated in parallel, each by its own generator
+    private final boolean parallel;
 
     List<Report> reports;
 
     String code;
 
     Method currentMethod;
+
+    // Registers of the operands of the current method, bound once per method
+    RegisterMap registers;
     int stackLimit = 0;
     int maxStackLimit = 0;
 
 
     private final FunctionClassMap<TreeNode, String> generators;
 
+    private final BranchSelector branches;
+
+    // Number of the next label created for the current method
+    private int labelCount;
+
     public JasminGenerator(OllirResult ollirResult) {
-        this.ollirResult = ollirResult;
+        this(ollirResult.getOllirClass(), new ConcurrentHashMap<>(),
+                CompilerConfig.getParallel(ollirResult.getConfig()));
+    }
+
+    /**
+     * Creates a generator for a class that was not necessarily parsed from OLLIR code, e.g. built in memory.
+     *
+     * @param classUnit
+     */
+    public JasminGenerator(ClassUnit classUnit) {
+        this(classUnit, new ConcurrentHashMap<>(), false);
+    }
+
+    private JasminGenerator(ClassUnit classUnit, Map<String, String> classNames, boolean parallel) {
+        this.classUnit = classUnit;
+        this.classNames = classNames;
+        this.parallel = parallel;
 
         reports = new ArrayList<>();
         code = null;
         currentMethod = null;
+        registers = null;
 
         this.generators = new FunctionClassMap<>();
+        this.branches = new BranchSelector(generators::apply, this::newLabel);
         generators.put(ClassUnit.class, this::generateClassUnit);
         generators.put(Method.class, this::generateMethod);
         generators.put(AssignInstruction.class, this::generateAssign);
@@ -78,7 +114,7 @@ public class JasminGenerator {
     public String build() {
 
         if (code == null) {
-            code = generators.apply(ollirResult.getOllirClass());
+            code = generators.apply(classUnit);
         }
 
         return code;
@@ -93,31 +129,19 @@ public class JasminGenerator {
     }
 
     private String generateCondBranch(CondBranchInstruction condBranchInstruction) {
-        var code = new StringBuilder();
-
-        code.append(generators.apply(condBranchInstruction.getOperands().get(0)));
-        if (condBranchInstruction.getCondition() instanceof BinaryOpInstruction) {
-            code.append(generators.apply(condBranchInstruction.getOperands().get(1)));
-
-            ((BinaryOpInstruction) condBranchInstruction.getCondition()).getOperation().getOpType();
-
-            var op = switch (((BinaryOpInstruction) condBranchInstruction.getCondition()).getOperation().getOpType()) {
-                case LTH -> "if_icmplt";
-                case GTH -> "if_icmpgt";
-                case EQ -> "if_icmpeq";
-                case NEQ -> "if_icmpne";
-                case LTE -> "if_icmple";
-                case GTE -> "if_icmpge";
-                default -> throw new NotImplementedException(((BinaryOpInstruction) condBranchInstruction.getCondition()).getOperation().getOpType());
-            };
+        return branches.branch(condBranchInstruction.getCondition(), condBranchInstruction.getLabel(), false);
+    }
 
-            code.append(op).append(" ").append(condBranchInstruction.getLabel()).append(NL);
-        }
-        else if (condBranchInstruction.getCondition() instanceof SingleOpInstruction) {
-            code.append("ifne ").append(condBranchInstruction.getLabel()).append(NL);
-        }
+    /**
+     * @return a label that is not used by the current method
+     */
+    private String newLabel() {
+        String label;
+        do {
+            label = "cmp" + labelCount++;
+        } while (currentMethod.getLabels().containsKey(label));
 
-        return code.toString();
+        return label;
     }
 
     private String generateClassUnit(ClassUnit classUnit) {
@@ -162,13 +186,11 @@ public class JasminGenerator {
             code.append(";default constructor");
         }
 
-        for (var method : classUnit.getMethods()) {
-
-            if (method.isConstructMethod()) {
-                continue;
-            }
-
-            code.append(generators.apply(method));
+        var methods = classUnit.getMethods().stream()
+                .filter(method -> !method.isConstructMethod())
+                .toList();
+        for (var methodCode : generateMethods(methods)) {
+            code.append(methodCode);
         }
 
         var defaultConstructor = """
@@ -185,10 +207,38 @@ public class JasminGenerator {
     }
 
 
+    /**
+     * In parallel, each method is generated on the common fork-join pool by a generator of its own, which only shares
+     * the class and the names of its classes, and the code is kept in the order of the methods.
+     *
+     * @param methods
+     * @return the code of each method
+     */
+    private List<String> generateMethods(List<Method> methods) {
+        if (!parallel) {
+            return methods.stream().map(generators::apply).toList();
+        }
+
+        var generated = methods.parallelStream()
+                .map(method -> {
+                    var generator = new JasminGenerator(classUnit, classNames, false);
+                    return Map.entry(generator.generators.apply(method), generator.getReports());
+                })
+                .toList();
+
+        for (var method : generated) {
+            reports.addAll(method.getValue());
+        }
+
+        return generated.stream().map(Map.Entry::getKey).toList();
+    }
+
     private String generateMethod(Method method) {
 
         // set method
         currentMethod = method;
+        registers = new RegisterMap(method);
+        labelCount = 0;
 
         var code = new StringBuilder();
 
@@ -231,25 +281,132 @@ public class JasminGenerator {
         // Add limits
         code.append(TAB).append(".limit stack 98").append(NL);
         code.append(TAB).append(".limit locals ").append(limitsLocals).append(NL);
-        var label = "";
-        for (var inst : method.getInstructions()) {
-            for (var labels : method.getLabels(inst)) {
-                label = labels;
+        code.append(generateInstructions(method));
+
+        code.append(".end method\n");
+
+        currentMethod = null;
+        registers = null;
+
+        return code.toString();
+    }
+
+
+    private String generateInstructions(Method method) {
+        var code = new StringBuilder();
+        var instructions = method.getInstructions();
+
+        for (int i = 0; i < instructions.size(); i++) {
+            var inst = instructions.get(i);
+            for (var label : method.getLabels(inst)) {
                 code.append(label).append(":").append(NL);
             }
-            var instCode = StringLines.getLines(generators.apply(inst)).stream()
-                    .collect(Collectors.joining(NL + TAB, TAB, NL));
 
-            code.append(instCode);
+            String instCode;
+            if (isFusedComparison(method, i)) {
+                // The comparison is only assigned to be tested by the next branch, so it is tested directly
+                var branch = (CondBranchInstruction) instructions.get(i + 1);
+                var condition = ((AssignInstruction) inst).getRhs();
+                instCode = generateBranch(method, i + 1, condition, branch.getLabel());
+                i = skipInvertedGoto(method, i + 1);
+            } else if (isIncrementThroughCopy(method, i)) {
+                // The sum is only assigned to be copied back to the variable, so it is added in place
+                var copy = (AssignInstruction) instructions.get(i + 1);
+                var variable = (Operand) copy.getDest();
+                var reg = registers.get(variable);
+                instCode = LocalVariableEncoding.increment(reg,
+                        getIncrement(variable, ((AssignInstruction) inst).getRhs()).orElseThrow());
+                i++;
+            } else if (inst instanceof CondBranchInstruction branch) {
+                instCode = generateBranch(method, i, branch.getCondition(), branch.getLabel());
+                i = skipInvertedGoto(method, i);
+            } else if (inst instanceof GotoInstruction gotoInst && i + 1 < instructions.size()
+                    && method.getLabels().get(gotoInst.getLabel()) == instructions.get(i + 1)) {
+                // Jumps to the next instruction
+                continue;
+            } else {
+                instCode = generators.apply(inst);
+            }
+
+            code.append(StringLines.getLines(instCode).stream()
+                    .collect(Collectors.joining(NL + TAB, TAB, NL)));
         }
 
-        code.append(".end method\n");
+        return code.toString();
+    }
 
-        currentMethod = null;
+    /**
+     * A branch that jumps over a goto, as in {@code if (c) goto body; goto end; body:}, becomes a single branch with
+     * the opposite condition to the label of the goto.
+     */
+    private String generateBranch(Method method, int branchIndex, Instruction condition, String label) {
+        if (isJumpOverGoto(method, branchIndex)) {
+            var gotoInst = (GotoInstruction) method.getInstructions().get(branchIndex + 1);
+            return branches.branch(condition, gotoInst.getLabel(), true);
+        }
 
-        return code.toString();
+        return branches.branch(condition, label, false);
+    }
+
+    private int skipInvertedGoto(Method method, int branchIndex) {
+        return isJumpOverGoto(method, branchIndex) ? branchIndex + 1 : branchIndex;
+    }
+
+    private boolean isJumpOverGoto(Method method, int branchIndex) {
+        var instructions = method.getInstructions();
+        if (branchIndex + 2 >= instructions.size()
+                || !(instructions.get(branchIndex + 1) instanceof GotoInstruction gotoInst)
+                || !method.getLabels(gotoInst).isEmpty()) {
+            return false;
+        }
+
+        var branch = (CondBranchInstruction) instructions.get(branchIndex);
+        return method.getLabels().get(branch.getLabel()) == instructions.get(branchIndex + 2);
     }
 
+    /**
+     * @return true if the instruction assigns a comparison to a variable that is only read by the branch right after
+     * it, and nothing jumps to that branch
+     */
+    private boolean isFusedComparison(Method method, int index) {
+        var instructions = method.getInstructions();
+        if (index + 1 >= instructions.size()
+                || !(instructions.get(index) instanceof AssignInstruction assign)
+                || assign.getDest() instanceof ArrayOperand
+                || !BranchSelector.isCondition(assign.getRhs())
+                || !(instructions.get(index + 1) instanceof CondBranchInstruction branch)
+                || !method.getLabels(branch).isEmpty()
+                || !(branch.getCondition() instanceof SingleOpInstruction singleOp)
+                || !(singleOp.getSingleOperand() instanceof Operand tested)) {
+            return false;
+        }
+
+        var name = ((Operand) assign.getDest()).getName();
+        return tested.getName().equals(name) && registers.getReads(name) == 1;
+    }
+
+    /**
+     * @return true if the instruction is {@code t := x + c}, the next one is {@code x := t}, nothing jumps to the
+     * copy and {@code t} is not read anywhere else
+     */
+    private boolean isIncrementThroughCopy(Method method, int index) {
+        var instructions = method.getInstructions();
+        if (index + 1 >= instructions.size()
+                || !(instructions.get(index) instanceof AssignInstruction sum)
+                || sum.getDest() instanceof ArrayOperand
+                || !(instructions.get(index + 1) instanceof AssignInstruction copy)
+                || !method.getLabels(copy).isEmpty()
+                || !(copy.getDest() instanceof Operand variable)
+                || !(copy.getRhs() instanceof SingleOpInstruction singleOp)
+                || !(singleOp.getSingleOperand() instanceof Operand copied)
+                || copied instanceof ArrayOperand) {
+            return false;
+        }
+
+        var name = ((Operand) sum.getDest()).getName();
+        return copied.getName().equals(name) && !variable.getName().equals(name)
+                && getIncrement(variable, sum.getRhs()).isPresent() && registers.getReads(name) == 1;
+    }
 
     public static int calculateLocalsLimit(Method method) {
         int maxLocals = method.isStaticMethod() ? -1 : 0;
@@ -273,12 +430,17 @@ public class JasminGenerator {
         var lhs = assign.getDest();
 
         var operand = (Operand) lhs;
-        var reg = currentMethod.getVarTable().get(operand.getName()).getVirtualReg();
+        var reg = registers.get(operand);
 
+        // Adding a constant to a variable in place does not need the stack
+        var increment = getIncrement(operand, assign.getRhs());
+        if (increment.isPresent()) {
+            return LocalVariableEncoding.increment(reg, increment.get());
+        }
 
         if(lhs instanceof ArrayOperand){
             isArrayIndex = true;
-            code.append("aload ").append(reg).append(NL);
+            code.append(LocalVariableEncoding.load(ElementType.ARRAYREF, reg));
             for(Element index : ((ArrayOperand) lhs).getIndexOperands()){
                 code.append(generators.apply(index));
             }
@@ -293,20 +455,57 @@ public class JasminGenerator {
         if(isArrayIndex)
             code.append("iastore").append(NL);
         else {
-            switch (operand.getType().getTypeOfElement()) {
-                case INT32, BOOLEAN -> {
-                    code.append("istore ").append(reg).append(NL);
-                }
-                case STRING, OBJECTREF, ARRAYREF, CLASS, THIS -> {
-                    code.append("astore ").append(reg).append(NL);
+            code.append(LocalVariableEncoding.store(operand.getType().getTypeOfElement(), reg));
+        }
+
+        return code.toString();
+    }
+
+    /**
+     * @return the constant added to the variable, if the sum is {@code x + c}, {@code c + x} or {@code x - c} and
+     * {@code iinc} can add it
+     */
+    private Optional<Integer> getIncrement(Operand variable, Instruction sum) {
+        if (variable instanceof ArrayOperand
+                || variable.getType().getTypeOfElement() != ElementType.INT32
+                || !(sum instanceof BinaryOpInstruction binaryOp)) {
+            return Optional.empty();
+        }
+
+        var name = variable.getName();
+        var left = binaryOp.getLeftOperand();
+        var right = binaryOp.getRightOperand();
+
+        Optional<Integer> value = switch (binaryOp.getOperation().getOpType()) {
+            case ADD -> {
+                if (isVariable(left, name)) {
+                    yield getIntLiteral(right);
                 }
-                case VOID -> code.append("store ").append(reg).append(NL);
-                default ->
-                        throw new NotImplementedException("Unsupported assign type: " + operand.getType().getTypeOfElement());
+                yield isVariable(right, name) ? getIntLiteral(left) : Optional.empty();
             }
+            case SUB -> isVariable(left, name) ? getIntLiteral(right).map(c -> -c) : Optional.empty();
+            default -> Optional.empty();
+        };
+
+        return value.filter(LocalVariableEncoding::canIncrement);
+    }
+
+    private static boolean isVariable(Element element, String name) {
+        return element instanceof Operand operand && !(operand instanceof ArrayOperand)
+                && operand.getName().equals(name);
+    }
+
+    private static Optional<Integer> getIntLiteral(Element element) {
+        if (!(element instanceof LiteralElement literal)
+                || literal.getType().getTypeOfElement() != ElementType.INT32) {
+            return Optional.empty();
         }
 
-        return code.toString();
+        try {
+            return Optional.of(Integer.parseInt(literal.getLiteral()));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
     }
 
     private String generateSingleOp(SingleOpInstruction singleOp) {
@@ -343,32 +542,26 @@ public class JasminGenerator {
 
     private String generateOperand(Operand operand) {
         // get register
-        var reg = currentMethod.getVarTable().get(operand.getName()).getVirtualReg();
+        var reg = registers.get(operand);
         if(operand instanceof ArrayOperand){
             var arrayOperand = (ArrayOperand) operand;
             var code = new StringBuilder();
-            code.append("aload ").append(reg).append(NL);
+            code.append(LocalVariableEncoding.load(ElementType.ARRAYREF, reg));
             for(Element index : arrayOperand.getIndexOperands()){
                 code.append(generators.apply(index));
             }
             code.append("iaload ").append(NL);
             return code.toString();
         } else{
-            return switch (operand.getType().getTypeOfElement()) {
-                case INT32, BOOLEAN -> {
-
-                    yield "iload " + reg + NL;
-                }
-                case STRING, OBJECTREF, ARRAYREF, CLASS, THIS -> {
-
-                    yield "aload " + reg + NL;
-                }
-                default -> throw new NotImplementedException("Unsupported type: " + operand.getType().getTypeOfElement());
-            };
+            return LocalVariableEncoding.load(operand.getType().getTypeOfElement(), reg);
         }
     }
 
     private String generateBinaryOp(BinaryOpInstruction binaryOp) {
+        if (BranchSelector.isCondition(binaryOp)) {
+            return branches.materialize(binaryOp);
+        }
+
         var code = new StringBuilder();
 
         // load values on the left and on the right
@@ -387,12 +580,6 @@ public class JasminGenerator {
             case XOR -> "ixor";
             case AND -> "iand";
             case OR -> "ior";
-            case LTH -> "if_icmplt";
-            case GTH -> "if_icmpgt";
-            case EQ -> "if_icmpeq";
-            case NEQ -> "if_icmpne";
-            case LTE -> "if_icmple";
-            case GTE -> "if_icmpge";
             case ANDB -> "iand";
             case ORB -> "ior";
             case NOTB -> "iconst_m1 \n ixor";
@@ -638,17 +825,20 @@ public class JasminGenerator {
     }
 
     private String getClassNameForElementType(ClassType classType) {
-        ClassUnit classUnit = ollirResult.getOllirClass();
+        return classNames.computeIfAbsent(classType.getName(), this::resolveClassName);
+    }
+
+    private String resolveClassName(String className) {
         String name = null;
 
-        if (classUnit.getClassName().equals(classType.getName())) {
+        if (classUnit.getClassName().equals(className)) {
             name = classUnit.getClassName();
         } else {
             for (String imprt : classUnit.getImports()) {
                 if (!imprt.contains("."))
                     name = imprt;
                 String[] imprtSplit = imprt.split("\\.");
-                if (imprtSplit[imprtSplit.length - 1].equals(classType.getName())) {
+                if (imprtSplit[imprtSplit.length - 1].equals(className)) {
                     name = imprt;
                     break;
                 }
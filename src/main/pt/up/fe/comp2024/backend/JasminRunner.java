@@ -0,0 +1,560 @@
+package pt.up.fe.comp2024.backend;
+
+import jasmin.ClassFile;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.specs.util.system.ProcessOutputAsString;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Assembles and runs Jasmin programs inside the current JVM.
+ * <p>
+ * {@link JasminResult#runWithFullOutput()} writes a class file and starts a new JVM for every program. This runner
+ * assembles the code in memory and defines it, together with the classes it imports, in a new class loader for each
+ * run, so runs do not share static state. The programs run on a pool of threads, and what they print is kept apart by
+ * redirecting {@link System#out} and {@link System#err} per thread. The result has the same form as the output of a
+ * process: return value 0, or 1 if {@code main} throws, and every line ends with a line separator.
+ * <p>
+ * A run that takes longer than the timeout is interrupted and reported with return value -1. Programs that never
+ * check for interruption keep running on their thread, so the pool starts another thread in their place.
+ */
+public final class JasminRunner implements AutoCloseable {
+
+    private static final String NEW_LINE = System.getProperty("line.separator");
+
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(5);
+
+    private static final int TIMEOUT_RETURN_VALUE = -1;
+
+    // The Jasmin assembler keeps parts of its state in static fields
+    private static final Object ASSEMBLER_LOCK = new Object();
+
+    private static final ThreadLocal<OutputStream> STDOUT = new ThreadLocal<>();
+    private static final ThreadLocal<OutputStream> STDERR = new ThreadLocal<>();
+    private static final ThreadLocal<InputStream> STDIN = new ThreadLocal<>();
+
+    private static PrintStream redirectedOut;
+    private static PrintStream redirectedErr;
+    private static InputStream redirectedIn;
+
+    private final ThreadPoolExecutor workers;
+    private final ScheduledThreadPoolExecutor watchdog;
+    private final Duration timeout;
+    private final URLClassLoader libraries;
+    private final Map<String, Optional<byte[]>> libraryClasses;
+
+    /**
+     * @param classpath the directories and jars with the classes the programs import
+     * @param threads   the number of programs that run at the same time
+     * @param timeout   the time a program can run before it is interrupted
+     */
+    public JasminRunner(List<File> classpath, int threads, Duration timeout) {
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), newThreadFactory("jasmin-runner"));
+        this.watchdog = new ScheduledThreadPoolExecutor(1, newThreadFactory("jasmin-runner-watchdog"));
+        this.watchdog.setRemoveOnCancelPolicy(true);
+        this.timeout = timeout;
+        this.libraries = new URLClassLoader(toUrls(classpath), null);
+        this.libraryClasses = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * A runner with the default classpath of the compiler, one thread per processor and the same timeout as
+     * {@link JasminResult#runWithFullOutput()}.
+     *
+     * @return the runner shared by the callers in this JVM
+     */
+    public static JasminRunner getDefault() {
+        return DefaultRunner.INSTANCE;
+    }
+
+    /**
+     * @param program
+     * @return the output of running the main method of the program with no arguments and no input
+     */
+    public ProcessOutputAsString run(JasminResult program) {
+        return run(program, Collections.emptyList(), null);
+    }
+
+    /**
+     * @param program
+     * @param args    the arguments given to the main method
+     * @param input   the text the program reads from the standard input, or null
+     * @return the output of running the main method of the program
+     */
+    public ProcessOutputAsString run(JasminResult program, List<String> args, String input) {
+        try {
+            return submit(program, args, input).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+
+            throw new RuntimeException("Could not run Jasmin program", e.getCause());
+        }
+    }
+
+    /**
+     * Runs the program once a thread of the pool is free.
+     *
+     * @param program
+     * @param args
+     * @param input
+     * @return the output of running the main method of the program, which completes exceptionally if the code could
+     * not be assembled
+     */
+    public CompletableFuture<ProcessOutputAsString> submit(JasminResult program, List<String> args, String input) {
+        var run = new Run(program.getJasminCode(), args, input);
+        workers.execute(run);
+        return run.result;
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+        watchdog.shutdownNow();
+
+        try {
+            libraries.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The program is run on the calling thread, without a timeout.
+     *
+     * @param program
+     * @return the program defined in its own class loader, whose main method can be run more than once
+     */
+    public LoadedProgram load(JasminResult program) {
+        return load(program.getJasminCode());
+    }
+
+    private LoadedProgram load(String jasminCode) {
+        var classFile = assemble(jasminCode);
+        return new LoadedProgram(classFile.getKey(), new ProgramLoader(classFile.getKey(), classFile.getValue()));
+    }
+
+    private ProcessOutputAsString execute(String jasminCode, List<String> args, String input) {
+        return load(jasminCode).run(args, input);
+    }
+
+    private static Method getMain(Class<?> programClass) {
+        try {
+            var main = programClass.getDeclaredMethod("main", String[].class);
+            if (!Modifier.isStatic(main.getModifiers())) {
+                return null;
+            }
+
+            main.setAccessible(true);
+            return main;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param jasminCode
+     * @return the binary name of the class and its class file
+     */
+    private static Map.Entry<String, byte[]> assemble(String jasminCode) {
+        var classFile = new ClassFile();
+        var bytes = new ByteArrayOutputStream();
+
+        synchronized (ASSEMBLER_LOCK) {
+            try {
+                classFile.readJasmin(new StringReader(jasminCode), "Jasmin", true);
+
+                if (classFile.errorCount() > 0) {
+                    throw new RuntimeException("Found " + classFile.errorCount()
+                            + " errors while compiling Jasmin code:\n" + jasminCode);
+                }
+
+                classFile.write(bytes);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException("Exception while assembling Jasmin code: " + e.getMessage()
+                        + "\nCode: " + jasminCode, e);
+            }
+        }
+
+        return Map.entry(classFile.getClassName().replace('/', '.'), bytes.toByteArray());
+    }
+
+    private byte[] getLibraryClass(String name) {
+        return libraryClasses.computeIfAbsent(name, this::readLibraryClass).orElse(null);
+    }
+
+    private Optional<byte[]> readLibraryClass(String name) {
+        try (var stream = libraries.getResourceAsStream(name.replace('.', '/') + ".class")) {
+            return stream == null ? Optional.empty() : Optional.of(stream.readAllBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read class " + name, e);
+        }
+    }
+
+    /**
+     * The pool lost a thread to a program that did not stop, so it gets one more.
+     */
+    private synchronized void addWorker() {
+        workers.setMaximumPoolSize(workers.getMaximumPoolSize() + 1);
+        workers.setCorePoolSize(workers.getCorePoolSize() + 1);
+    }
+
+    /**
+     * A program that timed out has finished after all, so its thread is no longer needed.
+     */
+    private synchronized void removeWorker() {
+        workers.setCorePoolSize(workers.getCorePoolSize() - 1);
+        workers.setMaximumPoolSize(workers.getMaximumPoolSize() - 1);
+    }
+
+    /**
+     * Replaces the standard streams with ones that go to the streams of the program the current thread runs. The
+     * check is repeated for each run, since test frameworks may replace the standard streams themselves.
+     */
+    private static synchronized void redirectSystemStreams() {
+        if (System.out != redirectedOut) {
+            redirectedOut = new PrintStream(new ThreadOutput(System.out, STDOUT), true);
+            System.setOut(redirectedOut);
+        }
+
+        if (System.err != redirectedErr) {
+            redirectedErr = new PrintStream(new ThreadOutput(System.err, STDERR), true);
+            System.setErr(redirectedErr);
+        }
+
+        if (System.in != redirectedIn) {
+            redirectedIn = new ThreadInput(System.in);
+            System.setIn(redirectedIn);
+        }
+    }
+
+    private static void printUncaught(Throwable exception, OutputStream err) {
+        var stream = new PrintStream(err, true);
+        stream.print("Exception in thread \"main\" ");
+        exception.printStackTrace(stream);
+    }
+
+    private static String toLines(ByteArrayOutputStream bytes) {
+        // Like the output of a process, every line ends with a line separator
+        return bytes.toString(Charset.defaultCharset()).lines()
+                .map(line -> line + NEW_LINE)
+                .collect(Collectors.joining());
+    }
+
+    private static URL[] toUrls(List<File> classpath) {
+        var urls = new URL[classpath.size()];
+
+        for (int i = 0; i < urls.length; i++) {
+            try {
+                urls[i] = classpath.get(i).toURI().toURL();
+            } catch (MalformedURLException e) {
+                throw new RuntimeException("Invalid classpath entry: " + classpath.get(i), e);
+            }
+        }
+
+        return urls;
+    }
+
+    private static ThreadFactory newThreadFactory(String name) {
+        var count = new AtomicInteger();
+
+        return runnable -> {
+            var thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class DefaultRunner {
+        private static final JasminRunner INSTANCE = new JasminRunner(
+                CompilerConfig.getClasspath(Collections.emptyMap()),
+                Runtime.getRuntime().availableProcessors(), DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * A program defined in its own class loader. Runs of the same program share the static state of its classes, so
+     * the classes are only loaded and initialized by the first run.
+     */
+    public static final class LoadedProgram {
+
+        private final String className;
+        private final ClassLoader loader;
+
+        private LoadedProgram(String className, ClassLoader loader) {
+            this.className = className;
+            this.loader = loader;
+        }
+
+        /**
+         * @param args  the arguments given to the main method
+         * @param input the text the program reads from the standard input, or null
+         * @return the output of running the main method of the program on the calling thread
+         */
+        public ProcessOutputAsString run(List<String> args, String input) {
+            var out = new ByteArrayOutputStream();
+            var err = new ByteArrayOutputStream();
+            var thread = Thread.currentThread();
+            var contextLoader = thread.getContextClassLoader();
+
+            redirectSystemStreams();
+            STDOUT.set(out);
+            STDERR.set(err);
+            STDIN.set(new LineInput(input == null ? "" : input));
+            thread.setContextClassLoader(loader);
+
+            int returnValue = 0;
+            try {
+                var main = getMain(loader.loadClass(className));
+                if (main == null) {
+                    returnValue = 1;
+                    err.writeBytes(("Error: Main method not found in class " + className
+                            + ", please define the main method as:" + NEW_LINE
+                            + "   public static void main(String[] args)" + NEW_LINE)
+                            .getBytes(Charset.defaultCharset()));
+                } else {
+                    main.invoke(null, (Object) args.toArray(String[]::new));
+                }
+            } catch (InvocationTargetException e) {
+                returnValue = 1;
+                printUncaught(e.getCause(), err);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                returnValue = 1;
+                printUncaught(e, err);
+            } finally {
+                System.out.flush();
+                System.err.flush();
+                thread.setContextClassLoader(contextLoader);
+                STDOUT.remove();
+                STDERR.remove();
+                STDIN.remove();
+            }
+
+            return new ProcessOutputAsString(returnValue, toLines(out), toLines(err));
+        }
+    }
+
+    /**
+     * One run of a program, completed either by the thread that runs it or by the watchdog when it times out.
+     */
+    private class Run implements Runnable {
+
+        private final String jasminCode;
+        private final List<String> args;
+        private final String input;
+        private final CompletableFuture<ProcessOutputAsString> result;
+
+        // The thread running the program, guarded by this
+        private Thread worker;
+
+        Run(String jasminCode, List<String> args, String input) {
+            this.jasminCode = jasminCode;
+            this.args = args;
+            this.input = input;
+            this.result = new CompletableFuture<>();
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                // Cancelled while waiting for a thread
+                if (result.isDone()) {
+                    return;
+                }
+
+                worker = Thread.currentThread();
+            }
+
+            var timer = watchdog.schedule(this::timeOut, timeout.toNanos(), TimeUnit.NANOSECONDS);
+
+            ProcessOutputAsString output = null;
+            Throwable error = null;
+            try {
+                output = execute(jasminCode, args, input);
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                timer.cancel(false);
+            }
+
+            synchronized (this) {
+                worker = null;
+
+                boolean completed = error == null ? result.complete(output) : result.completeExceptionally(error);
+
+                // The watchdog already gave up on this run and gave the pool a new thread
+                if (!completed) {
+                    Thread.interrupted();
+                    removeWorker();
+                }
+            }
+        }
+
+        private synchronized void timeOut() {
+            var output = new ProcessOutputAsString(TIMEOUT_RETURN_VALUE, "",
+                    "Program did not finish in " + timeout.toMillis() + " ms" + NEW_LINE);
+
+            if (worker != null && result.complete(output)) {
+                addWorker();
+                worker.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Defines the class of a program and the classes it imports, and leaves the classes of the platform to its
+     * parent, so the classes of the compiler are not visible to the program.
+     * <p>
+     * The imported classes are defined by the same loader as the program, since the methods of {@code io} are package
+     * private and a package is only shared by classes of the same loader.
+     */
+    private class ProgramLoader extends ClassLoader {
+
+        private final String className;
+        private final byte[] classFile;
+
+        ProgramLoader(String className, byte[] classFile) {
+            super("jmm-program", ClassLoader.getPlatformClassLoader());
+            this.className = className;
+            this.classFile = classFile;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            var bytes = name.equals(className) ? classFile : getLibraryClass(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Writes to the stream of the program the current thread runs, or to the original stream.
+     */
+    private static class ThreadOutput extends OutputStream {
+
+        private final OutputStream original;
+        private final ThreadLocal<OutputStream> current;
+
+        ThreadOutput(OutputStream original, ThreadLocal<OutputStream> current) {
+            this.original = original;
+            this.current = current;
+        }
+
+        private OutputStream getTarget() {
+            var target = current.get();
+            return target != null ? target : original;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            getTarget().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            getTarget().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            getTarget().flush();
+        }
+    }
+
+    /**
+     * Reads from the input of the program the current thread runs, or from the original stream.
+     */
+    private static class ThreadInput extends InputStream {
+
+        private final InputStream original;
+
+        ThreadInput(InputStream original) {
+            this.original = original;
+        }
+
+        private InputStream getSource() {
+            var source = STDIN.get();
+            return source != null ? source : original;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return getSource().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return getSource().read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return getSource().available();
+        }
+    }
+
+    /**
+     * Gives the input one line at a time, like a person typing it.
+     * <p>
+     * {@code io.read} opens a new reader on {@link System#in} for each number it reads, and a reader that received
+     * more than one line would keep the following lines in its buffer.
+     */
+    private static class LineInput extends InputStream {
+
+        private final byte[] bytes;
+        private int position;
+
+        LineInput(String input) {
+            this.bytes = input.getBytes(Charset.defaultCharset());
+            this.position = 0;
+        }
+
+        @Override
+        public int read() {
+            return position < bytes.length ? bytes[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= bytes.length) {
+                return -1;
+            }
+
+            int count = 0;
+            while (count < len && position < bytes.length) {
+                byte next = bytes[position++];
+                b[off + count++] = next;
+
+                if (next == '\n') {
+                    break;
+                }
+            }
+
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.ElementType;
+import pt.up.fe.specs.util.exceptions.NotImplementedException;
+
+/**
+ * Chooses the shortest Jasmin instructions that access local variables.
+ * <p>
+ * Registers 0 to 3 have their own one byte loads and stores, such as {@code iload_1}. Registers above 255 and
+ * increments outside of a byte need the {@code wide} prefix, which Jasmin adds by itself when the operands do not fit,
+ * so the instructions are written the same way for every register.
+ */
+final class LocalVariableEncoding {
+
+    private static final String NL = "\n";
+
+    private static final int MAX_SHORT_REGISTER = 3;
+
+    private LocalVariableEncoding() {
+    }
+
+    /**
+     * @param type
+     * @param reg
+     * @return the instruction that pushes the value of the register
+     */
+    static String load(ElementType type, int reg) {
+        return getPrefix(type) + "load" + getRegisterSuffix(reg) + NL;
+    }
+
+    /**
+     * @param type
+     * @param reg
+     * @return the instruction that pops a value into the register
+     */
+    static String store(ElementType type, int reg) {
+        return getPrefix(type) + "store" + getRegisterSuffix(reg) + NL;
+    }
+
+    /**
+     * @param value
+     * @return true if an {@code iinc} can add the value, possibly with the {@code wide} prefix
+     */
+    static boolean canIncrement(int value) {
+        return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+    }
+
+    /**
+     * @param reg
+     * @param value
+     * @return the instruction that adds the value to the integer in the register
+     */
+    static String increment(int reg, int value) {
+        return "iinc " + reg + " " + value + NL;
+    }
+
+    private static String getRegisterSuffix(int reg) {
+        return reg <= MAX_SHORT_REGISTER ? "_" + reg : " " + reg;
+    }
+
+    private static String getPrefix(ElementType type) {
+        return switch (type) {
+            case INT32, BOOLEAN -> "i";
+            case STRING, OBJECTREF, ARRAYREF, CLASS, THIS -> "a";
+            default -> throw new NotImplementedException("Unsupported local variable type: " + type);
+        };
+    }
+}
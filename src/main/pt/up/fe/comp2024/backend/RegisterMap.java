@@ -0,0 +1,75 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import pt.up.fe.comp2024.optimization.InstructionUtils;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The registers of the variables of a method, resolved once before its code is generated.
+ * <p>
+ * Each operand of the instructions is bound to its register by identity, so generating the code of an operand does
+ * not look up its name in the variable table. The number of reads of each variable is counted in the same pass.
+ */
+final class RegisterMap {
+
+    private final Method method;
+    private final Map<Operand, Integer> registers;
+    private final Map<String, Integer> reads;
+
+    RegisterMap(Method method) {
+        this.method = method;
+        this.registers = new IdentityHashMap<>();
+        this.reads = new HashMap<>();
+
+        var slots = new HashMap<String, Integer>();
+        for (var entry : method.getVarTable().entrySet()) {
+            slots.put(entry.getKey(), entry.getValue().getVirtualReg());
+        }
+
+        for (var inst : method.getInstructions()) {
+            if (inst instanceof AssignInstruction assign && assign.getDest() instanceof Operand dest) {
+                bind(dest, slots);
+            }
+
+            for (var operand : InstructionUtils.getUseOperands(inst)) {
+                bind(operand, slots);
+                reads.merge(operand.getName(), 1, Integer::sum);
+            }
+        }
+    }
+
+    private void bind(Operand operand, Map<String, Integer> slots) {
+        // Operands that are not variables, such as the class of a static call, have no register
+        var reg = slots.get(operand.getName());
+        if (reg != null) {
+            registers.put(operand, reg);
+        }
+    }
+
+    /**
+     * @param operand
+     * @return the register of the variable of the operand
+     */
+    int get(Operand operand) {
+        var reg = registers.get(operand);
+        if (reg != null) {
+            return reg;
+        }
+
+        // Operands created after the map, e.g. by the generator itself
+        return method.getVarTable().get(operand.getName()).getVirtualReg();
+    }
+
+    /**
+     * @param name
+     * @return the number of operands of the method that read the variable
+     */
+    int getReads(String name) {
+        return reads.getOrDefault(name, 0);
+    }
+}
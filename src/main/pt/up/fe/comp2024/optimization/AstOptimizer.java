@@ -0,0 +1,66 @@
+package pt.up.fe.comp2024.optimization;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.optimization.ast.BooleanSimplification;
+import pt.up.fe.comp2024.optimization.ast.ConstantBranchElimination;
+import pt.up.fe.comp2024.optimization.ast.ConstantFolding;
+
+import java.util.ArrayList;
+
+/**
+ * Simplifies the AST before it is lowered, so that the later stages have less code to go through.
+ * <p>
+ * Used by both pipelines, the one through OLLIR and the one straight to Jasmin.
+ */
+public class AstOptimizer {
+
+    private final PassManager<JmmNode> astPasses;
+
+    public AstOptimizer() {
+
+        // Folding a comparison can make a negation or a condition constant, and simplifying a negation can make a
+        // comparison between booleans constant
+        this.astPasses = new PassManager<JmmNode>()
+                .register("constant-folding", 1, new ConstantFolding()::optimize)
+                .register("boolean-simplification", 1, new BooleanSimplification()::optimize,
+                        "constant-folding")
+                .register("constant-branch-elimination", 1, new ConstantBranchElimination()::optimize,
+                        "boolean-simplification")
+                .invalidates("constant-folding", "boolean-simplification", "constant-branch-elimination")
+                .invalidates("boolean-simplification", "constant-folding", "constant-branch-elimination");
+
+    }
+
+    public JmmSemanticsResult optimize(JmmSemanticsResult semanticsResult) {
+
+        var level = CompilerConfig.getOptimizationLevel(semanticsResult.getConfig());
+        if (level == 0) {
+            return semanticsResult;
+        }
+
+        var reports = new ArrayList<>(semanticsResult.getReports());
+        var statistics = new PassStatistics();
+
+        try {
+            astPasses.run(semanticsResult.getRootNode(), level, statistics);
+        } catch (Exception e) {
+            reports.add(Report.newError(Stage.OPTIMIZATION,
+                    -1,
+                    -1,
+                    e.getMessage(),
+                    e)
+            );
+        }
+
+        if (CompilerConfig.getPassStatistics(semanticsResult.getConfig())) {
+            reports.addAll(statistics.toReports(Stage.OPTIMIZATION));
+        }
+
+        return new JmmSemanticsResult(semanticsResult.getRootNode(), semanticsResult.getSymbolTable(), reports,
+                semanticsResult.getConfig());
+    }
+}
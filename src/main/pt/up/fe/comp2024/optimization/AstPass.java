@@ -0,0 +1,18 @@
+package pt.up.fe.comp2024.optimization;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+/**
+ * Represents an optimization pass over the AST of a class, before it is lowered.
+ */
+public interface AstPass {
+
+    /**
+     * Optimizes the given tree in place.
+     *
+     * @param root the root of the tree to optimize
+     * @return true if the tree was changed, false otherwise
+     */
+    boolean optimize(JmmNode root);
+
+}
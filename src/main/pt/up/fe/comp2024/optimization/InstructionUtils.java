@@ -0,0 +1,426 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.tree.TreeNode;
+
+import java.util.*;
+import java.util.function.UnaryOperator;
+
+/**
+ * Utility methods to inspect and rewrite the instructions of an OLLIR {@link Method}.
+ */
+public class InstructionUtils {
+
+    /**
+     * @param inst
+     * @return the label the instruction jumps to, if it is a goto or a conditional branch
+     */
+    public static Optional<String> getJumpLabel(Instruction inst) {
+        if (inst instanceof GotoInstruction gotoInst) {
+            return Optional.of(gotoInst.getLabel());
+        }
+
+        if (inst instanceof CondBranchInstruction branch) {
+            return Optional.of(branch.getLabel());
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * @param method
+     * @return a map from each instruction of the method to its index in the instruction list
+     */
+    public static Map<Instruction, Integer> getIndexes(Method method) {
+        var instructions = method.getInstructions();
+        var indexes = new IdentityHashMap<Instruction, Integer>(instructions.size());
+
+        for (int i = 0; i < instructions.size(); i++) {
+            indexes.put(instructions.get(i), i);
+        }
+
+        return indexes;
+    }
+
+    /**
+     * Computes the successors of each instruction of the method, as indexes in the instruction list.
+     * <p>
+     * The CFG of the library is not used because it can only be built once per method, and fails when a jump
+     * targets a label that does not exist.
+     *
+     * @param method
+     * @return the successors of each instruction, or empty if some jump targets a label that does not exist
+     */
+    public static Optional<int[][]> getSuccessors(Method method) {
+        var instructions = method.getInstructions();
+        var indexes = getIndexes(method);
+        var successors = new int[instructions.size()][];
+
+        for (int i = 0; i < instructions.size(); i++) {
+            var inst = instructions.get(i);
+            boolean hasNext = i + 1 < instructions.size();
+
+            if (inst.getInstType() == InstructionType.RETURN) {
+                successors[i] = new int[0];
+                continue;
+            }
+
+            var label = getJumpLabel(inst);
+            if (label.isEmpty()) {
+                successors[i] = hasNext ? new int[]{i + 1} : new int[0];
+                continue;
+            }
+
+            var target = method.getLabels().get(label.get());
+            if (target == null || !indexes.containsKey(target)) {
+                return Optional.empty();
+            }
+
+            int targetIndex = indexes.get(target);
+            if (inst.getInstType() == InstructionType.GOTO || !hasNext) {
+                successors[i] = new int[]{targetIndex};
+            } else {
+                successors[i] = new int[]{targetIndex, i + 1};
+            }
+        }
+
+        return Optional.of(successors);
+    }
+
+    /**
+     * @param inst
+     * @return the name of the variable written by the instruction, if it assigns a whole variable
+     */
+    public static Optional<String> getDef(Instruction inst) {
+        if (inst instanceof AssignInstruction assign
+                && assign.getDest() instanceof Operand dest
+                && !(dest instanceof ArrayOperand)) {
+            return Optional.of(dest.getName());
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * @param inst
+     * @return the names of the variables read by the instruction
+     */
+    public static Set<String> getUses(Instruction inst) {
+        var uses = new HashSet<String>();
+
+        for (var operand : getUseOperands(inst)) {
+            uses.add(operand.getName());
+        }
+
+        return uses;
+    }
+
+    /**
+     * @param inst
+     * @return the operands of the instruction that read a variable
+     */
+    public static List<Operand> getUseOperands(Instruction inst) {
+        var operands = new ArrayList<Operand>();
+
+        if (inst instanceof AssignInstruction assign) {
+            // Storing to an array element reads the array reference and the indexes
+            if (assign.getDest() instanceof ArrayOperand arrayDest) {
+                addUseOperands(arrayDest, operands);
+            }
+
+            addUseOperands(assign.getRhs(), operands);
+            return operands;
+        }
+
+        addUseOperands(inst, operands);
+        return operands;
+    }
+
+    private static void addUseOperands(TreeNode node, List<Operand> operands) {
+        if (node instanceof FieldInstruction fieldInst) {
+            // The field operand is a name, not a read of a variable
+            for (var operand : fieldInst.getOperands()) {
+                if (operand != fieldInst.getField()) {
+                    addUseOperands(operand, operands);
+                }
+            }
+            return;
+        }
+
+        if (node instanceof Operand operand) {
+            operands.add(operand);
+        }
+
+        for (var child : node.getChildren()) {
+            addUseOperands(child, operands);
+        }
+    }
+
+    /**
+     * @param inst
+     * @return the call of an instruction that is a call or an assignment of the result of a call
+     */
+    public static Optional<CallInstruction> getCall(Instruction inst) {
+        if (inst instanceof CallInstruction call) {
+            return Optional.of(call);
+        }
+
+        if (inst instanceof AssignInstruction assign && assign.getRhs() instanceof CallInstruction call) {
+            return Optional.of(call);
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Tests if a call may change fields or array elements. Methods of objects, including the ones of this class, may
+     * write any field, while static methods of other classes can only write the objects and arrays they receive.
+     *
+     * @param call
+     * @param className the name of the class of the method with the call
+     * @return true if the call may write to memory
+     */
+    public static boolean mayWriteMemory(CallInstruction call, String className) {
+        return switch (call.getInvocationType()) {
+            case arraylength, NEW -> false;
+            case invokestatic -> call.getCaller() instanceof Operand caller && caller.getName().equals(className)
+                    || call.getArguments().stream().anyMatch(arg -> !isPrimitive(arg.getType()));
+            default -> true;
+        };
+    }
+
+    private static boolean isPrimitive(Type type) {
+        var elementType = type.getTypeOfElement();
+        return elementType == ElementType.INT32 || elementType == ElementType.BOOLEAN;
+    }
+
+    /**
+     * Tests if the right-hand side of an assignment can be removed without changing the behaviour of the program,
+     * i.e. it does not call methods, allocate objects or possibly throw.
+     *
+     * @param rhs
+     * @return true if evaluating the instruction has no effect besides its value
+     */
+    public static boolean isPure(Instruction rhs) {
+        if (rhs instanceof SingleOpInstruction singleOp) {
+            return !(singleOp.getSingleOperand() instanceof ArrayOperand);
+        }
+
+        if (rhs instanceof UnaryOpInstruction unaryOp) {
+            return !(unaryOp.getOperand() instanceof ArrayOperand);
+        }
+
+        if (rhs instanceof BinaryOpInstruction binaryOp) {
+            // Integer division throws when dividing by zero
+            return binaryOp.getOperation().getOpType() != OperationType.DIV
+                    && binaryOp.getOperands().stream().noneMatch(ArrayOperand.class::isInstance);
+        }
+
+        if (rhs instanceof GetFieldInstruction getField) {
+            return getField.getObject().getName().equals("this");
+        }
+
+        return false;
+    }
+
+    /**
+     * Adds a local variable to the method, in a register that is not used yet.
+     *
+     * @param method
+     * @param prefix the start of the name of the variable, which is followed by a number that makes it unique
+     * @param type
+     * @return the name of the new variable
+     */
+    public static String addVariable(Method method, String prefix, Type type) {
+        var varTable = method.getVarTable();
+
+        int id = 0;
+        while (varTable.containsKey(prefix + id)) {
+            id++;
+        }
+
+        int nextReg = 0;
+        for (var descriptor : varTable.values()) {
+            nextReg = Math.max(nextReg, descriptor.getVirtualReg() + 1);
+        }
+
+        varTable.put(prefix + id, new Descriptor(VarScope.LOCAL, nextReg, type));
+
+        return prefix + id;
+    }
+
+    /**
+     * Adds a label to the method, with a name that is not used yet.
+     *
+     * @param method
+     * @param prefix the start of the name of the label, which is followed by a number that makes it unique
+     * @param target the instruction the label points to
+     * @return the name of the new label
+     */
+    public static String addLabel(Method method, String prefix, Instruction target) {
+        var labels = method.getLabels();
+
+        int id = 0;
+        while (labels.containsKey(prefix + id)) {
+            id++;
+        }
+
+        labels.put(prefix + id, target);
+
+        return prefix + id;
+    }
+
+    /**
+     * Replaces the instruction at the given index, keeping its labels.
+     *
+     * @param method
+     * @param index
+     * @param newInst
+     */
+    public static void replaceInstruction(Method method, int index, Instruction newInst) {
+        var oldInst = method.getInstructions().set(index, newInst);
+
+        for (var label : method.getLabels().entrySet()) {
+            if (label.getValue() == oldInst) {
+                label.setValue(newInst);
+            }
+        }
+    }
+
+    /**
+     * Removes the given instructions from the method.
+     * <p>
+     * Labels of removed instructions are moved to the next instruction that is kept. Labels that would be left
+     * without instruction are removed.
+     *
+     * @param method
+     * @param removed which instructions should be removed, by index
+     */
+    public static void removeInstructions(Method method, boolean[] removed) {
+        var instructions = method.getInstructions();
+        var indexes = getIndexes(method);
+
+        var labelIterator = method.getLabels().entrySet().iterator();
+        while (labelIterator.hasNext()) {
+            var label = labelIterator.next();
+            var index = indexes.get(label.getValue());
+
+            if (index == null || !removed[index]) {
+                continue;
+            }
+
+            int next = index + 1;
+            while (next < instructions.size() && removed[next]) {
+                next++;
+            }
+
+            if (next < instructions.size()) {
+                label.setValue(instructions.get(next));
+            } else {
+                labelIterator.remove();
+            }
+        }
+
+        var kept = new ArrayList<Instruction>(instructions.size());
+        for (int i = 0; i < instructions.size(); i++) {
+            if (!removed[i]) {
+                kept.add(instructions.get(i));
+            }
+        }
+
+        instructions.clear();
+        instructions.addAll(kept);
+    }
+
+    /**
+     * Copies an instruction that does not jump, so that the copy can be placed in another method or another place of
+     * the same method.
+     *
+     * @param inst
+     * @param rename gives the name of each variable in the copy
+     * @return the copy, or empty if the instruction jumps or is not supported
+     */
+    public static Optional<Instruction> copyInstruction(Instruction inst, UnaryOperator<String> rename) {
+        if (inst instanceof AssignInstruction assign) {
+            return copyInstruction(assign.getRhs(), rename)
+                    .map(rhs -> new AssignInstruction(copyElement(assign.getDest(), rename),
+                            assign.getTypeOfAssign(), rhs));
+        }
+
+        if (inst instanceof SingleOpInstruction singleOp) {
+            return Optional.of(new SingleOpInstruction(copyElement(singleOp.getSingleOperand(), rename)));
+        }
+
+        if (inst instanceof UnaryOpInstruction unaryOp) {
+            return Optional.of(new UnaryOpInstruction(copyOperation(unaryOp.getOperation()),
+                    copyElement(unaryOp.getOperand(), rename)));
+        }
+
+        if (inst instanceof BinaryOpInstruction binaryOp) {
+            return Optional.of(new BinaryOpInstruction(copyElement(binaryOp.getLeftOperand(), rename),
+                    copyOperation(binaryOp.getOperation()), copyElement(binaryOp.getRightOperand(), rename)));
+        }
+
+        if (inst instanceof CallInstruction call) {
+            var arguments = new ArrayList<Element>(call.getArguments().size());
+            for (var argument : call.getArguments()) {
+                arguments.add(copyElement(argument, rename));
+            }
+
+            var methodName = call.getMethodNameTry().map(name -> copyElement(name, rename)).orElse(null);
+            return Optional.of(new CallInstruction(call.getInvocationType(), copyElement(call.getCaller(), rename),
+                    methodName, arguments, call.getReturnType(), call.isIsolated()));
+        }
+
+        // The field operand is a name, which is never renamed
+        if (inst instanceof GetFieldInstruction getField) {
+            return Optional.of(new GetFieldInstruction((Operand) copyElement(getField.getObject(), rename),
+                    (Operand) copyElement(getField.getField(), name -> name), getField.getFieldType()));
+        }
+
+        if (inst instanceof PutFieldInstruction putField) {
+            return Optional.of(new PutFieldInstruction((Operand) copyElement(putField.getObject(), rename),
+                    (Operand) copyElement(putField.getField(), name -> name),
+                    copyElement(putField.getValue(), rename), putField.getFieldType()));
+        }
+
+        if (inst instanceof ReturnInstruction ret) {
+            var copy = ret.hasReturnValue() ? new ReturnInstruction(copyElement(ret.getOperand(), rename))
+                    : new ReturnInstruction();
+            copy.setReturnType(ret.getReturnType());
+            return Optional.of(copy);
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * @param element
+     * @param rename gives the name of each variable in the copy
+     * @return a copy of the literal or variable
+     */
+    public static Element copyElement(Element element, UnaryOperator<String> rename) {
+        if (element instanceof LiteralElement literal) {
+            return new LiteralElement(literal.getLiteral(), literal.getType());
+        }
+
+        if (element instanceof ArrayOperand arrayOperand) {
+            var indexes = new ArrayList<Element>(arrayOperand.getIndexOperands().size());
+            for (var index : arrayOperand.getIndexOperands()) {
+                indexes.add(copyElement(index, rename));
+            }
+
+            return new ArrayOperand(rename.apply(arrayOperand.getName()), arrayOperand.getType(), indexes);
+        }
+
+        if (element instanceof Operand operand) {
+            return new Operand(rename.apply(operand.getName()), operand.getType());
+        }
+
+        return new Element(element.getType());
+    }
+
+    private static Operation copyOperation(Operation operation) {
+        return new Operation(operation.getOpType(), operation.getTypeInfo());
+    }
+}
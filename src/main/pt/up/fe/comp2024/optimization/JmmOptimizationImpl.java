@@ -1,20 +1,74 @@
 package pt.up.fe.comp2024.optimization;
 
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
-import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
-
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.optimization.passes.AlgebraicSimplification;
+import pt.up.fe.comp2024.optimization.passes.CopyPropagation;
+import pt.up.fe.comp2024.optimization.passes.DeadCodeElimination;
+import pt.up.fe.comp2024.optimization.passes.GlobalValueNumbering;
+import pt.up.fe.comp2024.optimization.passes.InductionVariableReduction;
+import pt.up.fe.comp2024.optimization.passes.Inlining;
+import pt.up.fe.comp2024.optimization.passes.LoopInvariantCodeMotion;
+import pt.up.fe.comp2024.optimization.passes.LoopUnrolling;
+import pt.up.fe.comp2024.optimization.passes.TailCallElimination;
 
 import java.util.Collections;
 
 public class JmmOptimizationImpl implements JmmOptimization {
 
+    private final AstOptimizer astOptimizer;
+
+    private final PassManager<Method> methodPasses;
+
+    public JmmOptimizationImpl() {
+
+        this.astOptimizer = new AstOptimizer();
+
+        // Each pass runs again after the passes that may leave work for it, such as the copies left by value
+        // numbering and by the reduction of induction variables, until the code of the method stops changing
+        this.methodPasses = new PassManager<Method>()
+                .register("copy-propagation", 1, new CopyPropagation()::optimize)
+                .register("algebraic-simplification", 1, new AlgebraicSimplification()::optimize,
+                        "copy-propagation")
+                .register("value-numbering", 2, new GlobalValueNumbering()::optimize,
+                        "algebraic-simplification")
+                .register("loop-invariant-code-motion", 2, new LoopInvariantCodeMotion()::optimize,
+                        "value-numbering")
+                .register("induction-variable-reduction", 2, new InductionVariableReduction()::optimize,
+                        "loop-invariant-code-motion")
+                .register("loop-unrolling", 2, new LoopUnrolling()::optimize, "induction-variable-reduction")
+                .register("dead-code-elimination", 1, new DeadCodeElimination()::optimize,
+                        "copy-propagation", "loop-unrolling")
+                .invalidates("copy-propagation", "algebraic-simplification", "value-numbering",
+                        "dead-code-elimination")
+                .invalidates("algebraic-simplification", "copy-propagation", "value-numbering",
+                        "dead-code-elimination")
+                .invalidates("value-numbering", "copy-propagation", "dead-code-elimination")
+                .invalidates("loop-invariant-code-motion", "induction-variable-reduction", "copy-propagation",
+                        "dead-code-elimination")
+                .invalidates("induction-variable-reduction", "copy-propagation", "dead-code-elimination")
+                .invalidates("loop-unrolling", "copy-propagation", "algebraic-simplification", "value-numbering",
+                        "dead-code-elimination")
+                .invalidates("dead-code-elimination", "copy-propagation");
+
+    }
+
+    @Override
+    public JmmSemanticsResult optimize(JmmSemanticsResult semanticsResult) {
+        return astOptimizer.optimize(semanticsResult);
+    }
+
     @Override
     public OllirResult toOllir(JmmSemanticsResult semanticsResult) {
 
-        var visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable());
+        var visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable(),
+                CompilerConfig.getParallel(semanticsResult.getConfig()));
         var ollirCode = visitor.visit(semanticsResult.getRootNode());
 
         return new OllirResult(semanticsResult, ollirCode, Collections.emptyList());
@@ -24,7 +78,52 @@ public class JmmOptimizationImpl implements JmmOptimization {
     @Override
     public OllirResult optimize(OllirResult ollirResult) {
 
-        //TODO: Do your OLLIR-based optimizations here
+        var level = CompilerConfig.getOptimizationLevel(ollirResult.getConfig());
+        if (level == 0) {
+            return ollirResult;
+        }
+
+        var statistics = new PassStatistics();
+
+        // The passes over the class come first, so that the passes of each method clean up the copies of the
+        // arguments they leave
+        var tailCalls = new TailCallElimination();
+        var inlining = new Inlining();
+        var classPasses = new PassManager<ClassUnit>()
+                .register("tail-call-elimination", 2, tailCalls::optimize)
+                .register("inlining", 2, inlining::optimize, "tail-call-elimination");
+
+        try {
+            classPasses.run(ollirResult.getOllirClass(), level, statistics);
+        } catch (Exception e) {
+            ollirResult.getReports().add(Report.newError(Stage.OPTIMIZATION,
+                    -1,
+                    -1,
+                    e.getMessage(),
+                    e)
+            );
+        }
+        ollirResult.getReports().addAll(tailCalls.getReports());
+        ollirResult.getReports().addAll(inlining.getReports());
+
+        for (var method : ollirResult.getOllirClass().getMethods()) {
+
+            try {
+                methodPasses.run(method, level, statistics);
+            } catch (Exception e) {
+                ollirResult.getReports().add(Report.newError(Stage.OPTIMIZATION,
+                        -1,
+                        -1,
+                        e.getMessage() + " on method '" + method.getMethodName() + "'",
+                        e)
+                );
+            }
+
+        }
+
+        if (CompilerConfig.getPassStatistics(ollirResult.getConfig())) {
+            ollirResult.getReports().addAll(statistics.toReports(Stage.OPTIMIZATION));
+        }
 
         return ollirResult;
     }
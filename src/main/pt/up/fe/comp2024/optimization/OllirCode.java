@@ -0,0 +1,121 @@
+package pt.up.fe.comp2024.optimization;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A piece of OLLIR code built from segments, which can be appended to another piece without copying its text.
+ * <p>
+ * Consecutive strings are gathered in a single segment, and appended pieces are kept by reference, so building the
+ * code of an expression takes time proportional to the number of appends instead of the size of the subexpressions.
+ * The text is only assembled when the code is written to a {@link StringBuilder}, usually once per method.
+ * <p>
+ * A piece of code must not be changed after it is appended to another one.
+ */
+public class OllirCode {
+
+    private final List<Object> segments;
+    private final StringBuilder tail;
+    private int length;
+    private String text;
+
+    public OllirCode() {
+        this.segments = new ArrayList<>();
+        this.tail = new StringBuilder();
+        this.length = 0;
+        this.text = null;
+    }
+
+    public OllirCode(String code) {
+        this();
+        append(code);
+    }
+
+    public OllirCode append(String code) {
+        if (!code.isEmpty()) {
+            tail.append(code);
+            length += code.length();
+            text = null;
+        }
+
+        return this;
+    }
+
+    public OllirCode append(OllirCode code) {
+        if (code.isEmpty()) {
+            return this;
+        }
+
+        flushTail();
+        segments.add(code);
+        length += code.length();
+        text = null;
+
+        return this;
+    }
+
+    private void flushTail() {
+        if (tail.length() > 0) {
+            segments.add(tail.toString());
+            tail.setLength(0);
+        }
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * Writes the text of the code at the end of the given builder.
+     *
+     * @param builder
+     */
+    public void appendTo(StringBuilder builder) {
+        if (text != null) {
+            builder.append(text);
+            return;
+        }
+
+        // Expressions can be deeply nested, so the segments are visited with an explicit stack
+        var stack = new ArrayDeque<Object>();
+        stack.push(this);
+
+        while (!stack.isEmpty()) {
+            var segment = stack.pop();
+
+            if (segment instanceof String string) {
+                builder.append(string);
+                continue;
+            }
+
+            var code = (OllirCode) segment;
+            if (code.text != null) {
+                builder.append(code.text);
+                continue;
+            }
+
+            if (code.tail.length() > 0) {
+                stack.push(code.tail.toString());
+            }
+            for (int i = code.segments.size() - 1; i >= 0; i--) {
+                stack.push(code.segments.get(i));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (text == null) {
+            var builder = new StringBuilder(length);
+            appendTo(builder);
+            text = builder.toString();
+        }
+
+        return text;
+    }
+}
@@ -3,15 +3,20 @@ package pt.up.fe.comp2024.optimization;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp2024.ast.KindDispatchTable;
 import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.ast.Types;
+
+import java.util.ArrayList;
+import java.util.function.BiFunction;
 
 import static pt.up.fe.comp2024.ast.Kind.*;
 
 /**
  * Generates OLLIR code from JmmNodes that are expressions.
  */
-public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExprResult> {
+public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult> {
 
     private static final String SPACE = " ";
     private static final String ASSIGN = ":=";
@@ -19,8 +24,14 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
     private final SymbolTable table;
 
+    // Temporaries and labels of the method being lowered
+    private final OllirNames names;
+
+    private final KindDispatchTable<Void, OllirExprResult> dispatchTable = new KindDispatchTable<>(super::getVisit);
+
     public OllirExprGeneratorVisitor(SymbolTable table) {
         this.table = table;
+        this.names = new OllirNames();
     }
 
     @Override
@@ -44,15 +55,19 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         addVisit(ARRAY_ACCESS, this::visitArrayAccess);
         addVisit(ARRAY_ASSIGN, this::visitArrayAssignmentStm);
         addVisit(BINARY_EXPR_AND, this::visitBinExprAnd);
-        addVisit("This", this::visitThis);
+        addVisit(THIS, this::visitThis);
         setDefaultVisit(this::defaultVisit);
     }
 
+    @Override
+    protected BiFunction<JmmNode, Void, OllirExprResult> getVisit(JmmNode node) {
+        return dispatchTable.get(node);
+    }
+
     private OllirExprResult visitInteger(JmmNode node, Void unused) {
-        var intType = new Type(TypeUtils.getIntTypeName(), false);
-        String ollirIntType = OptUtils.toOllirType(intType);
+        String ollirIntType = OptUtils.toOllirType(Types.INT);
         String code = node.get("value") + ollirIntType;
-        return new OllirExprResult(code);
+        return OllirExprResult.simple(code, ollirIntType);
     }
 
     private OllirExprResult visitBinExpr(JmmNode node, Void unused) {
@@ -63,35 +78,20 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
             rhs = visit(node.getJmmChild(1));
         }
 
-        StringBuilder computation = new StringBuilder();
+        var computation = new OllirCode();
 
         // code to compute the children
         computation.append(lhs.getComputation());
         computation.append(rhs.getComputation());
 
         // Generate temporary variables for complex expressions if necessary
-        String lhsCode = lhs.getCode();
-        if (lhsCode.contains("invokevirtual") || lhsCode.contains("invokestatic")) {
-            String lhsTemp = OptUtils.getTemp() + OptUtils.toOllirType(node.getJmmChild(0));
-            computation.append(lhsTemp).append(SPACE)
-                    .append(ASSIGN).append(OptUtils.toOllirType(node.getJmmChild(0))).append(SPACE)
-                    .append(lhsCode);
-            lhsCode = lhsTemp;
-        }
-
-        String rhsCode = rhs.getCode();
-        if (rhsCode.contains("invokevirtual") || rhsCode.contains("invokestatic")) {
-            String rhsTemp = OptUtils.getTemp() + OptUtils.toOllirType(table.getReturnType(node.getJmmChild(1).get("value")));
-            computation.append(rhsTemp).append(SPACE)
-                    .append(ASSIGN).append(OptUtils.toOllirType(table.getReturnType(node.getJmmChild(1).get("value")))).append(SPACE)
-                    .append(rhsCode);
-            rhsCode = rhsTemp;
-        }
+        String lhsCode = toOperand(lhs, computation);
+        String rhsCode = toOperand(rhs, computation);
 
         // code to compute self
         Type resType = TypeUtils.getExprType(node, table);
         String resOllirType = OptUtils.toOllirType(resType);
-        String code = OptUtils.getTemp() + resOllirType;
+        String code = names.getTemp() + resOllirType;
 
         computation.append(code).append(SPACE)
                 .append(ASSIGN).append(resOllirType).append(SPACE)
@@ -99,104 +99,76 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
                 .append(node.get("op")).append(OptUtils.toOllirType(resType)).append(SPACE)
                 .append(rhsCode).append(END_STMT);
 
-        return new OllirExprResult(code, computation);
+        return OllirExprResult.simple(code, computation, resOllirType);
     }
 
     private OllirExprResult visitBinExprAnd(JmmNode node, Void unused) {
         var lhs = visit(node.getJmmChild(0));
         var rhs = visit(node.getJmmChild(1));
 
-        StringBuilder computation = new StringBuilder();
+        var computation = new OllirCode();
         computation.append(lhs.getComputation());
         computation.append(rhs.getComputation());
 
-        String lhsCode = lhs.getCode();
-        if (lhsCode.contains("invokevirtual") || lhsCode.contains("invokestatic")) {
-            String lhsTemp = OptUtils.getTemp() + OptUtils.toOllirType(node.getJmmChild(0));
-            computation.append(lhsTemp).append(SPACE)
-                    .append(ASSIGN).append(OptUtils.toOllirType(node.getJmmChild(0))).append(SPACE)
-                    .append(lhsCode);
-            lhsCode = lhsTemp;
-        }
-
-        String rhsCode = rhs.getCode();
-        if (rhsCode.contains("invokevirtual") || rhsCode.contains("invokestatic")) {
-            String rhsTemp = OptUtils.getTemp() + OptUtils.toOllirType(table.getReturnType(node.getJmmChild(1).get("value")));
-            computation.append(rhsTemp).append(SPACE)
-                    .append(ASSIGN).append(OptUtils.toOllirType(table.getReturnType(node.getJmmChild(1).get("value")))).append(SPACE)
-                    .append(rhsCode);
-            rhsCode = rhsTemp;
-        }
+        String lhsCode = toOperand(lhs, computation);
+        String rhsCode = toOperand(rhs, computation);
 
-        String resultTemp = OptUtils.getTemp() + ".bool";
+        String resultTemp = names.getTemp() + ".bool";
 
-        StringBuilder ollirCode = new StringBuilder();
-        ollirCode.append("if (").append(lhsCode).append(") goto ").append(OptUtils.getAndTrue()).append(";\n");
+        var ollirCode = new OllirCode();
+        ollirCode.append("if (").append(lhsCode).append(") goto ").append(names.getAndTrue()).append(";\n");
         ollirCode.append(resultTemp).append(SPACE).append(ASSIGN).append(".bool 0.bool;\n");
-        ollirCode.append("goto ").append(OptUtils.getAndEnd()).append(";\n");
-        ollirCode.append(OptUtils.getCurrentAndTrue()).append(":\n");
+        ollirCode.append("goto ").append(names.getAndEnd()).append(";\n");
+        ollirCode.append(names.getCurrentAndTrue()).append(":\n");
         ollirCode.append(computation);
         ollirCode.append(resultTemp).append(SPACE).append(ASSIGN).append(OptUtils.toOllirType(table.getReturnType(node.getJmmChild(1).get("value")))).append(SPACE).append(rhsCode).append(END_STMT);
-        ollirCode.append(OptUtils.getCurrentAndEnd()).append(SPACE).append(":\n");
+        ollirCode.append(names.getCurrentAndEnd()).append(SPACE).append(":\n");
 
-        return new OllirExprResult(resultTemp, ollirCode.toString());
+        return OllirExprResult.simple(resultTemp, ollirCode, ".bool");
     }
 
     private OllirExprResult visitAssignStmt(JmmNode node, Void unused) {
         var lhs = visit(node.getJmmChild(0));
         var rhs = OllirExprResult.EMPTY;
-        String lhsCode = lhs.getCode();
+        String lhsCode = lhs.getCode().toString();
         if (node.getNumChildren() > 1) {
-            if (node.getJmmChild(1).getKind().equals("NewClass")) {
-                lhsCode = OptUtils.getTemp() + OptUtils.toOllirType(TypeUtils.getExprType(node.getJmmChild(0), table));
+            if (NEW_CLASS.check(node.getJmmChild(1))) {
+                lhsCode = names.getTemp() + OptUtils.toOllirType(TypeUtils.getExprType(node.getJmmChild(0), table));
                 rhs = visit(node.getJmmChild(1));
             } else {
                 rhs = visit(node.getJmmChild(1));
             }
         }
 
-        StringBuilder computation = new StringBuilder();
+        var computation = new OllirCode();
 
         computation.append(lhs.getComputation());
         computation.append(rhs.getComputation());
 
-        if (!node.getJmmChild(1).getKind().equals("NewClass")) {
-            lhsCode = lhs.getCode();
-        }
-        if (lhsCode.contains("invokevirtual") || lhsCode.contains("invokestatic")) {
-            String lhsTemp = OptUtils.getTemp() + OptUtils.toOllirType(node.getJmmChild(0));
-            computation.append(lhsTemp).append(SPACE)
-                    .append(ASSIGN).append(OptUtils.toOllirType(node.getJmmChild(0))).append(SPACE)
-                    .append(lhsCode).append(END_STMT);
-            lhsCode = lhsTemp;
-        }
-
-        String rhsCode = rhs.getCode();
-        if (rhsCode.contains("invokevirtual") || rhsCode.contains("invokestatic")) {
-            String rhsTemp = OptUtils.getTemp() + OptUtils.toOllirType(TypeUtils.getExprType(node.getJmmChild(0), table));
-            computation.append(rhsTemp).append(SPACE)
-                    .append(ASSIGN).append(OptUtils.toOllirType(TypeUtils.getExprType(node.getJmmChild(0), table))).append(SPACE)
-                    .append(rhsCode);
-            rhsCode = rhsTemp;
+        if (!NEW_CLASS.check(node.getJmmChild(1))) {
+            lhsCode = lhs.getCode().toString();
         }
+        String rhsCode = toOperand(rhs, computation);
 
         Type thisType = TypeUtils.getExprType(node.getJmmChild(0), table);
         String typeString = OptUtils.toOllirType(thisType);
 
-        StringBuilder code = new StringBuilder();
+        var code = new OllirCode();
         code.append(lhsCode).append(SPACE)
                 .append(ASSIGN).append(typeString).append(SPACE)
                 .append(rhsCode).append(END_STMT);
 
         computation.append(code);
 
-        return new OllirExprResult(code.toString(), computation);
+        return new OllirExprResult(code, computation);
     }
 
     private OllirExprResult visitMethodCall(JmmNode node, Void unused) {
         StringBuilder code = new StringBuilder();
         String functionName = node.get("value");
-        StringBuilder computation = new StringBuilder();
+        var computation = new OllirCode();
+        var argComputations = new ArrayList<OllirCode>();
+        var argSpills = new OllirCode();
 
         JmmNode receiverNode = node.getJmmChild(0);
         boolean isStatic = false;
@@ -218,14 +190,6 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
             }
         }
 
-        if (receiverCode.contains("invokevirtual") || receiverCode.contains("invokestatic")) {
-            String receiverTemp = OptUtils.getTemp() + OptUtils.toOllirType(receiverNode);
-            computation.append(receiverTemp).append(SPACE)
-                    .append(ASSIGN).append(OptUtils.toOllirType(receiverNode)).append(SPACE)
-                    .append(receiverCode).append(END_STMT);
-            receiverCode = receiverTemp;
-        }
-
         if (isStatic) {
             code.append("invokestatic(").append(receiverCode);
         } else {
@@ -241,32 +205,33 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
             var argResult = visit(argNode);
 
             // Generate temporary variables for complex arguments if necessary
-            String argCode = argResult.getCode();
-            if (argCode.contains("invokevirtual") || argCode.contains("invokestatic")) {
-                String argTemp = OptUtils.getTemp() + OptUtils.toOllirType(argNode);
-                computation.append(argTemp).append(SPACE)
-                        .append(ASSIGN).append(OptUtils.toOllirType(argNode)).append(SPACE)
-                        .append(argCode).append(END_STMT);
-                argCode = argTemp;
-            }
-            code.insert(0, argResult.getComputation());
+            String argCode = toOperand(argResult, argSpills);
+            argComputations.add(argResult.getComputation());
             code.append(argCode);
         }
 
-        // Determine the return type
-        Type returnType = TypeUtils.getExprType(node.getParent().getJmmChild(0), table);
-        if (returnType != null) {
-            code.append(")").append(OptUtils.toOllirType(returnType));
+        // Determine the return type. Methods of this class declare it, and methods of imported classes in the
+        // classpath have it in their class files. Otherwise, it is guessed from where the call is used
+        Type returnType;
+        if (!isStatic && isMethodOfThisClass(receiverNode, functionName)) {
+            returnType = table.getReturnType(functionName);
         } else {
-            code.append(").V");
+            returnType = TypeUtils.getImportedReturnType(node, table)
+                    .orElseGet(() -> TypeUtils.getExprType(node.getParent().getJmmChild(0), table));
         }
+        String ollirReturnType = returnType != null && !returnType.equals(Types.VOID) ?
+                OptUtils.toOllirType(returnType) : ".V";
+        code.append(")").append(ollirReturnType);
+
+        // The computations of the arguments, starting from the last argument, and then the temporaries that hold
+        // the arguments that are calls
+        for (int i = argComputations.size() - 1; i >= 0; i--) {
+            computation.append(argComputations.get(i));
+        }
+        computation.append(argSpills);
 
-        code.append(END_STMT);
-
-        // Prepend the computation for receiver and arguments
-        computation.append(code);
-
-        return new OllirExprResult(computation.toString());
+        return new OllirExprResult(new OllirCode(code.toString()), computation, OllirExprResult.ResultKind.CALL,
+                ollirReturnType);
     }
 
 
@@ -283,7 +248,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
         String code = id + ollirType;
 
-        return new OllirExprResult(code);
+        return OllirExprResult.simple(code, ollirType);
     }
 
     private OllirExprResult visitNewClass(JmmNode node, Void unused) {
@@ -295,12 +260,12 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         code.append(OptUtils.toOllirType(node)).append(END_STMT);
 
         code.append("invokespecial(");
-        code.append(OptUtils.getCurrentTemp()).append(".").append(node.get("value"));
+        code.append(names.getCurrentTemp()).append(".").append(node.get("value"));
         code.append(", \"<init>\")").append(".V").append(END_STMT);
 
         code.append(node.getParent().getJmmChild(0).get("name")).append(OptUtils.toOllirType(node)).append(" := ");
         code.append(OptUtils.toOllirType(node)).append(SPACE);
-        code.append(OptUtils.getCurrentTemp()).append(OptUtils.toOllirType(node));
+        code.append(names.getCurrentTemp()).append(OptUtils.toOllirType(node));
 
         return new OllirExprResult(code.toString());
     }
@@ -318,77 +283,86 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
 
     private OllirExprResult visitIntegerLiteral(JmmNode node, Void unused) {
-        var intType = new Type(TypeUtils.getIntTypeName(), false);
-        String ollirIntType = OptUtils.toOllirType(intType);
+        String ollirIntType = OptUtils.toOllirType(Types.INT);
         String code = node.get("value") + ollirIntType;
         return new OllirExprResult(code);
     }
 
     private OllirExprResult visitIfStmt(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
-        code.append(visit(node.getJmmChild(0)).getComputation());
+        var code = new OllirCode();
 
+        // The labels are taken before the branches are visited, so that nested statements get their own
+        var thenLabel = names.getIfLabel();
+        var endLabel = names.getEndIfLabel();
 
-        if (node.getJmmChild(1).getKind().equals("BRACKETS")) {
-            if (node.getNumChildren() == 3) {
-                code.append("if(");
-                code.append(visit(node.getJmmChild(0)).getCode());
-                code.append(") goto ").append(OptUtils.getIfLabel()).append(";\n");
-                code.append(visit(node.getJmmChild(2).getJmmChild(0)).getCode());
-                code.append("goto ").append(OptUtils.getEndIfLabel()).append(";\n");
+        // The condition is visited once, since each visit creates new temporaries
+        var condition = visit(node.getJmmChild(0));
+        code.append(condition.getComputation());
 
-                code.append(OptUtils.getCurrentIfLabel()).append(":\n");
-                code.append(visit(node.getJmmChild(1).getJmmChild(0)).getCode());
-                code.append(OptUtils.getCurrentEndIfLabel()).append(":\n");
+        code.append("if(");
+        code.append(condition.getCode());
+        code.append(") goto ").append(thenLabel).append(END_STMT);
+        code.append(visitStatement(node.getJmmChild(2)));
+        code.append("goto ").append(endLabel).append(END_STMT);
 
-            } else {
-                code.append("if(");
-                code.append(visit(node.getJmmChild(0)).getCode());
-                code.append(") goto ").append(OptUtils.getIfLabel()).append(";\n");
-                var stmt = visit(node.getJmmChild(1)).getCode();
-                code.append(visit(node.getJmmChild(1)).getCode());
-                code.append(OptUtils.getTemp()).append(":\n");
-            }
-        }
+        code.append(thenLabel).append(":\n");
+        code.append(visitStatement(node.getJmmChild(1)));
+        code.append(endLabel).append(":\n");
 
-        return new OllirExprResult(code.toString());
+        return new OllirExprResult(code);
     }
 
     private OllirExprResult visitBrackets(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
-        code.append(visit(node.getJmmChild(0)).getCode());
-        return new OllirExprResult(code.toString());
+        var code = new OllirCode();
+
+        // A block may be empty, for example after the optimizations remove a loop that never runs
+        for (var statement : node.getChildren()) {
+            code.append(visitStatement(statement));
+        }
+
+        return new OllirExprResult(code);
+    }
+
+    /**
+     * @param statement
+     * @return the code of the statement, which is the computation of the result for assignments
+     */
+    private OllirCode visitStatement(JmmNode statement) {
+        var result = visit(statement);
+
+        return ASSIGN_STMT.check(statement) ? result.getComputation() : result.getCode();
     }
 
     private OllirExprResult visitWhileStmt(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
-        code.append(OptUtils.getWhileCondLabel()).append(":\n");
-        var aux2 = visit(node.getJmmChild(0));
-        code.append(aux2.getComputation());
-        code.append("if(");
-        code.append(aux2.getCode());
-        code.append(") goto ").append(OptUtils.getWhileLoopLabel()).append(";\n");
-        code.append("goto ").append(OptUtils.getWhileEndLabel()).append(";\n");
+        var code = new OllirCode();
 
-        code.append(OptUtils.getCurrentWhileLoopLabel()).append(":\n");
-        if (node.getJmmChild(1).getKind().equals("BRACKETS")) {
-            code.append(visit(node.getJmmChild(1).getJmmChild(0)).getCode());
-        } else {
-            code.append(visit(node.getJmmChild(1)).getCode());
-        }
-        code.append("goto ").append(OptUtils.getCurrentWhileLoopLabel()).append(";\n");
+        var condLabel = names.getWhileCondLabel();
+        var loopLabel = names.getWhileLoopLabel();
+        var endLabel = names.getWhileEndLabel();
 
+        code.append(condLabel).append(":\n");
+        var condition = visit(node.getJmmChild(0));
+        code.append(condition.getComputation());
+        code.append("if(");
+        code.append(condition.getCode());
+        code.append(") goto ").append(loopLabel).append(END_STMT);
+        code.append("goto ").append(endLabel).append(END_STMT);
 
-        return new OllirExprResult(code.toString());
+        code.append(loopLabel).append(":\n");
+        code.append(visitStatement(node.getJmmChild(1)));
+        code.append("goto ").append(condLabel).append(END_STMT);
+        code.append(endLabel).append(":\n");
+
+        return new OllirExprResult(code);
     }
 
     private OllirExprResult visitForStmt(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
+        var code = new OllirCode();
         code.append(visit(node.getJmmChild(0)).getCode());
         code.append(visit(node.getJmmChild(1)).getCode());
         code.append(visit(node.getJmmChild(2)).getCode());
         code.append(visit(node.getJmmChild(3)).getCode());
-        return new OllirExprResult(code.toString());
+        return new OllirExprResult(code);
     }
 
     private OllirExprResult visitIdentifier(JmmNode node, Void unused) {
@@ -413,19 +387,25 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
     }
 
     private OllirExprResult visitExprStmt(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
+        var code = new OllirCode();
         var aux = visit(node.getJmmChild(0));
+        code.append(aux.getComputation());
         code.append(aux.getCode());
-        return new OllirExprResult(code.toString());
+        if (aux.getKind() == OllirExprResult.ResultKind.CALL) {
+            code.append(END_STMT);
+        }
+        return new OllirExprResult(code);
     }
 
     private OllirExprResult visitArrayLength(JmmNode node, Void unused) {
         // Assuming you have this method for array length handling
-        String arrayCode = visit(node.getJmmChild(0)).getCode();
-        String temp = OptUtils.getTemp() + ".i32";
-        StringBuilder computation = new StringBuilder();
+        var arrayExpr = visit(node.getJmmChild(0));
+        var computation = new OllirCode();
+        computation.append(arrayExpr.getComputation());
+        String arrayCode = toOperand(arrayExpr, computation);
+        String temp = names.getTemp() + ".i32";
         computation.append(temp).append(" :=.i32 arraylength(").append(arrayCode).append(").i32;\n");
-        return new OllirExprResult(temp, computation.toString());
+        return OllirExprResult.simple(temp, computation, ".i32");
     }
 
 
@@ -433,31 +413,16 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         var arrayExpr = visit(node.getJmmChild(0));
         var indexExpr = visit(node.getJmmChild(1));
 
-        StringBuilder computation = new StringBuilder();
+        var computation = new OllirCode();
         computation.append(arrayExpr.getComputation());
         computation.append(indexExpr.getComputation());
 
-        String arrayCode = arrayExpr.getCode();
-        if (arrayCode.contains("invokevirtual") || arrayCode.contains("invokestatic")) {
-            String arrayTemp = OptUtils.getTemp() + OptUtils.toOllirType(node.getJmmChild(0));
-            computation.append(arrayTemp).append(SPACE)
-                    .append(ASSIGN).append(OptUtils.toOllirType(node.getJmmChild(0))).append(SPACE)
-                    .append(arrayCode);
-            arrayCode = arrayTemp;
-        }
-
-        String indexCode = indexExpr.getCode();
-        if (indexCode.contains("invokevirtual") || indexCode.contains("invokestatic")) {
-            String indexTemp = OptUtils.getTemp() + OptUtils.toOllirType(node.getJmmChild(1));
-            computation.append(indexTemp).append(SPACE)
-                    .append(ASSIGN).append(OptUtils.toOllirType(node.getJmmChild(1))).append(SPACE)
-                    .append(indexCode);
-            indexCode = indexTemp;
-        }
+        String arrayCode = toOperand(arrayExpr, computation);
+        String indexCode = toOperand(indexExpr, computation);
         String resultTemp = new String();
         StringBuilder ollirCode = new StringBuilder();
-        if (!node.getJmmChild(1).getKind().equals("BinaryExpr")) {
-            resultTemp = OptUtils.getTemp() + "." + OptUtils.toOllirType(node.getJmmChild(1));
+        if (!BINARY_EXPR.check(node.getJmmChild(1))) {
+            resultTemp = names.getTemp() + "." + OptUtils.toOllirType(node.getJmmChild(1));
 
             ollirCode = new StringBuilder();
             ollirCode.append(resultTemp).append(SPACE).append(ASSIGN).append(SPACE).append(".")
@@ -465,9 +430,9 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
                     .append(arrayCode).append("[").append(indexCode).append("]").append(".i32").append(END_STMT);
 
         }
-        computation.append(ollirCode);
+        computation.append(ollirCode.toString());
 
-        return new OllirExprResult(resultTemp, computation.toString());
+        return new OllirExprResult(resultTemp, computation);
     }
 
     private OllirExprResult visitArrayAssignmentStm(JmmNode node, Void unused) {
@@ -486,7 +451,36 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
     private OllirExprResult visitThis(JmmNode node, Void unused) {
         StringBuilder code = new StringBuilder();
         code.append("this.").append(table.getClassName());
-        return new OllirExprResult(code.toString());
+        return OllirExprResult.simple(code.toString(), "." + table.getClassName());
+    }
+
+    /**
+     * Returns the code of an operand that holds the value of the given result. The value of a call cannot be used
+     * directly as an operand, so it is first assigned to a new temporary, whose assignment is added to the
+     * computation.
+     *
+     * @param result
+     * @param computation
+     * @return
+     */
+    private String toOperand(OllirExprResult result, OllirCode computation) {
+        if (result.getKind() != OllirExprResult.ResultKind.CALL) {
+            return result.getCode().toString();
+        }
+
+        String temp = names.getTemp() + result.getType();
+        computation.append(temp).append(SPACE)
+                .append(ASSIGN).append(result.getType()).append(SPACE)
+                .append(result.getCode()).append(END_STMT);
+
+        return temp;
+    }
+
+    private boolean isMethodOfThisClass(JmmNode receiverNode, String methodName) {
+        var receiverType = TypeUtils.getExprType(receiverNode, table);
+
+        return receiverType != null && receiverType.getName().equals(table.getClassName())
+                && table.getMethods().contains(methodName);
     }
 
     private boolean checkIfImport(String name) {
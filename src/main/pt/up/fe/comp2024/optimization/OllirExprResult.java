@@ -2,38 +2,101 @@ package pt.up.fe.comp2024.optimization;
 
 public class OllirExprResult {
 
+    /**
+     * What the code of a result is, which decides how it can be used by the expression that contains it.
+     */
+    public enum ResultKind {
+        /**
+         * A variable or literal, which can be used directly as an operand.
+         */
+        SIMPLE,
+        /**
+         * A method call, which must be assigned to a temporary before being used as an operand.
+         */
+        CALL,
+        /**
+         * Any other code, such as statements.
+         */
+        COMPLEX
+    }
+
     public static final OllirExprResult EMPTY = new OllirExprResult("", "");
 
-    private final String computation;
-    private final String code;
+    private final OllirCode computation;
+    private final OllirCode code;
+    private final ResultKind kind;
+    private final String type;
 
-    public OllirExprResult(String code, String computation) {
+    public OllirExprResult(OllirCode code, OllirCode computation, ResultKind kind, String type) {
         this.code = code;
         this.computation = computation;
+        this.kind = kind;
+        this.type = type;
+    }
+
+    public OllirExprResult(OllirCode code, OllirCode computation) {
+        this(code, computation, ResultKind.COMPLEX, "");
+    }
+
+    public OllirExprResult(String code, String computation) {
+        this(new OllirCode(code), new OllirCode(computation));
     }
 
     public OllirExprResult(String code) {
         this(code, "");
     }
 
-    public OllirExprResult(String code, StringBuilder computation) {
-        this(code, computation.toString());
+    public OllirExprResult(OllirCode code) {
+        this(code, new OllirCode());
+    }
+
+    public OllirExprResult(String code, OllirCode computation) {
+        this(new OllirCode(code), computation);
+    }
+
+    /**
+     * Creates the result of an expression whose value is in a variable or literal.
+     *
+     * @param operand     the variable or literal, with its type
+     * @param computation the code that must run before the operand is used
+     * @param type        the OLLIR type of the operand, e.g. ".i32"
+     * @return
+     */
+    public static OllirExprResult simple(String operand, OllirCode computation, String type) {
+        return new OllirExprResult(new OllirCode(operand), computation, ResultKind.SIMPLE, type);
+    }
+
+    public static OllirExprResult simple(String operand, String type) {
+        return simple(operand, new OllirCode(), type);
     }
 
 
-    public String getComputation() {
+    public OllirCode getComputation() {
         return computation;
     }
 
-    public String getCode() {
+    public OllirCode getCode() {
         return code;
     }
 
+    public ResultKind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the OLLIR type of the value of the result, e.g. ".i32", or an empty string if it has no value
+     */
+    public String getType() {
+        return type;
+    }
+
     @Override
     public String toString() {
         return "OllirNodeResult{" +
                 "computation='" + computation + '\'' +
                 ", code='" + code + '\'' +
+                ", kind=" + kind +
+                ", type='" + type + '\'' +
                 '}';
     }
 }
@@ -5,11 +5,13 @@ import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.KindDispatchTable;
 import pt.up.fe.comp2024.ast.NodeUtils;
 import pt.up.fe.comp2024.ast.TypeUtils;
 import pt.up.fe.specs.util.SpecsCheck;
 
 import java.util.List;
+import java.util.function.BiFunction;
 
 import static pt.up.fe.comp2024.ast.Kind.*;
 
@@ -30,8 +32,18 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
     private final OllirExprGeneratorVisitor exprVisitor;
 
+    // If the methods are lowered in parallel
+    private final boolean parallel;
+
+    private final KindDispatchTable<Void, String> dispatchTable = new KindDispatchTable<>(super::getVisit);
+
     public OllirGeneratorVisitor(SymbolTable table) {
+        this(table, false);
+    }
+
+    public OllirGeneratorVisitor(SymbolTable table, boolean parallel) {
         this.table = table;
+        this.parallel = parallel;
         exprVisitor = new OllirExprGeneratorVisitor(table);
     }
 
@@ -49,6 +61,11 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         setDefaultVisit(this::defaultVisit);
     }
 
+    @Override
+    protected BiFunction<JmmNode, Void, String> getVisit(JmmNode node) {
+        return dispatchTable.get(node);
+    }
+
     private String visitImportDecl(JmmNode node, Void unused) {
         StringBuilder code = new StringBuilder();
         String importList = node.get("importValue");
@@ -87,7 +104,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
             expr = exprVisitor.visit(node.getJmmChild(0));
         }
 
-        code.append(expr.getComputation());
+        expr.getComputation().appendTo(code);
         code.append("ret");
         if(methodName.equals("main")){
             code.append(" args.array.String");
@@ -196,33 +213,33 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         // rest of its children stmts
         for (int i = 0; i < node.getNumChildren(); i++) {
             var child = node.getJmmChild(i);
-            if (child.getKind().equals("VarDeclaration")) {
+            if (VAR_DECLARATION.check(child)) {
                 continue;
             }
-            if (child.getKind().equals("AssignStmt")) {
+            if (ASSIGN_STMT.check(child)) {
                 var x = exprVisitor.visit(child);
-                code.append(x.getComputation());
+                x.getComputation().appendTo(code);
             }
-            if (child.getKind().equals("ReturnStmt")) {
+            if (RETURN_STMT.check(child)) {
                 var childCode = visit(child);
                 code.append(childCode);
             }
-            if (child.getKind().equals("ExprStmt")) {
+            if (EXPR_STMT.check(child)) {
                 var x = exprVisitor.visit(child);
-                code.append(x.getCode());
+                x.getCode().appendTo(code);
             }
-            if(child.getKind().equals("NewClass")) {
+            if (NEW_CLASS.check(child)) {
                 exprVisitor.visit(child);
             }
-            if (child.getKind().equals("IfStm")) {
+            if (IF_STM.check(child)) {
                 var x = exprVisitor.visit(child);
-                code.append(x.getCode());
-            } else if (child.getKind().equals("WhileStm")) {
+                x.getCode().appendTo(code);
+            } else if (WHILE_STM.check(child)) {
                 var x = exprVisitor.visit(child);
-                code.append(x.getCode());
-            } else if (child.getKind().equals("ArrayAssign")) {
+                x.getCode().appendTo(code);
+            } else if (ARRAY_ASSIGN.check(child)) {
                 var x = exprVisitor.visit(child);
-                code.append(x.getCode());
+                x.getCode().appendTo(code);
             }
         }
 
@@ -258,8 +275,11 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         code.append(NL);
         var needNl = true;
 
+        var methodCodes = lowerMethods(node.getChildren().stream().filter(METHOD_DECLARATION::check).toList())
+                .iterator();
+
         for (var child : node.getChildren()) {
-            var result = visit(child);
+            var result = METHOD_DECLARATION.check(child) ? methodCodes.next() : visit(child);
 
             if (METHOD_DECLARATION.check(child) && needNl) {
                 code.append(NL);
@@ -276,6 +296,19 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     }
 
 
+    /**
+     * Each method is lowered by visitors of its own, so its temporaries and labels are numbered from zero whatever the
+     * order the methods are lowered in, which makes the code the same when they are lowered in parallel.
+     *
+     * @param methods
+     * @return the code of each method, in the same order
+     */
+    private List<String> lowerMethods(List<JmmNode> methods) {
+        var stream = parallel ? methods.parallelStream() : methods.stream();
+
+        return stream.map(method -> new OllirGeneratorVisitor(table).visit(method)).toList();
+    }
+
     private String buildConstructor() {
 
         return ".construct " + table.getClassName() + "().V {\n" +
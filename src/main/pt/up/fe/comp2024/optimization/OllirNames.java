@@ -0,0 +1,77 @@
+package pt.up.fe.comp2024.optimization;
+
+/**
+ * The names of the temporaries and labels created while lowering one method to OLLIR.
+ * <p>
+ * Temporaries and labels only need to be unique inside their method, so each method has its own numbering, which
+ * does not depend on the methods lowered before it.
+ */
+class OllirNames {
+
+    private int tempNumber = -1;
+
+    private int ifLabel = -1;
+
+    private int endIfLabel = -1;
+
+    private int whileCondLabel = -1;
+    private int whileLoopLabel = -1;
+
+    private int whileEndLabel = -1;
+
+    private int andTrue = -1;
+
+    private int andEnd = -1;
+
+    public String getTemp() {
+        tempNumber += 1;
+        return "tmp" + tempNumber;
+    }
+
+    public String getIfLabel() {
+        ifLabel += 1;
+        return "if" + ifLabel;
+    }
+
+    public String getEndIfLabel() {
+        endIfLabel += 1;
+        return "endif" + endIfLabel;
+    }
+
+    public String getWhileCondLabel() {
+        whileCondLabel += 1;
+        return "whileCond" + whileCondLabel;
+    }
+
+    public String getWhileLoopLabel() {
+        whileLoopLabel += 1;
+        return "whileLoop" + whileLoopLabel;
+    }
+
+    public String getWhileEndLabel() {
+        whileEndLabel += 1;
+        return "whileEnd" + whileEndLabel;
+    }
+
+    public String getAndTrue() {
+        andTrue += 1;
+        return "true_" + andTrue;
+    }
+
+    public String getAndEnd() {
+        andEnd += 1;
+        return "end_" + andEnd;
+    }
+
+    public String getCurrentTemp() {
+        return "tmp" + tempNumber;
+    }
+
+    public String getCurrentAndTrue() {
+        return "true_" + andTrue;
+    }
+
+    public String getCurrentAndEnd() {
+        return "end_" + andEnd;
+    }
+}
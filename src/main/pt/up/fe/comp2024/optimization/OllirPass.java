@@ -0,0 +1,18 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.Method;
+
+/**
+ * Represents an optimization pass over the OLLIR of a method.
+ */
+public interface OllirPass {
+
+    /**
+     * Optimizes the given method in place.
+     *
+     * @param method the method to optimize
+     * @return true if the method was changed, false otherwise
+     */
+    boolean optimize(Method method);
+
+}
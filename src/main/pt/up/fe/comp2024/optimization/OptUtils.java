@@ -3,177 +3,26 @@ package pt.up.fe.comp2024.optimization;
 import org.specs.comp.ollir.Instruction;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static pt.up.fe.comp2024.ast.Kind.TYPE;
 
 public class OptUtils {
-    private static int tempNumber = -1;
+    private static final Map<Type, String> OLLIR_TYPES = new ConcurrentHashMap<>();
+    private static final Map<String, String> OLLIR_TYPE_NAMES = new ConcurrentHashMap<>();
 
-    private static int ifLabel = -1;
-
-    private static int endIfLabel = -1;
-
-    private static int whileCondLabel = -1;
-    private static int whileLoopLabel = -1;
-
-    private static int whileEndLabel = -1;
-
-    private static int and_true = -1;
-
-    private static int and_end = -1;
-
-    public static String getTemp() {
-
-        return getTemp("tmp");
-    }
-
-    public static String getIfLabel() {
-        return getIfLabel("if");
-    }
-    public static String getEndIfLabel() {
-        return getEndIfLabel("endif");
-    }
-
-    public static String getWhileCondLabel() {
-        return getWhileCondLabel("whileCond");
-    }
-
-    public static String getWhileLoopLabel() {
-        return getWhileLoopLabel("whileLoop");
-    }
-
-    public static String getWhileEndLabel() {
-        return getWhileEndLabel("whileEnd");
-    }
-
-    public static String getAndTrue() {
-        return getAndTrue("true_");
-    }
-
-    public static String getAndEnd() {
-        return getAndEnd("end_");
-    }
-
-    public static String getTemp(String prefix) {
-
-        return prefix + getNextTempNum();
-    }
-
-    public static String getIfLabel(String prefix) {
-
-        return prefix + getNextIfLabel();
-    }
-
-    public static String getEndIfLabel(String prefix) {
-        return prefix + getNextEndIfLabel();
-    }
-
-    public static String getWhileCondLabel(String prefix) {
-        return prefix + getNextWhileCondLabel();
-    }
-
-    public static String getWhileLoopLabel(String prefix) {
-        return prefix + getNextWhileLoopLabel();
-    }
-
-    public static String getWhileEndLabel(String prefix) {
-        return prefix + getNextWhileEndLabel();
-    }
-
-
-    public static String getAndTrue(String prefix) {
-        return prefix + getNextAndTrue();
-    }
-
-    public static String getAndEnd(String prefix) {
-        return prefix + getNextAndEnd();
-    }
-    public static int getNextTempNum() {
-
-        tempNumber += 1;
-        return tempNumber;
-    }
-
-    public static int getNextIfLabel() {
-
-        ifLabel += 1;
-        return ifLabel;
-    }
-
-    public static int getNextEndIfLabel() {
-        endIfLabel += 1;
-        return endIfLabel;
-    }
-
-    public static int getNextWhileCondLabel() {
-        whileCondLabel += 1;
-        return whileCondLabel;
-    }
-
-    public static int getNextWhileLoopLabel() {
-        whileLoopLabel += 1;
-        return whileLoopLabel;
-    }
-
-    public static int getNextWhileEndLabel() {
-        whileEndLabel += 1;
-        return whileEndLabel;
-    }
-
-
-    public static int getNextAndTrue() {
-        and_true += 1;
-        return and_true;
-    }
-
-    public static int getNextAndEnd() {
-        and_end += 1;
-        return and_end;
-    }
-    public static String getCurrentTemp() {
-
-        return "tmp" + tempNumber;
-    }
-
-    public static String getCurrentIfLabel() {
-
-        return "if" + ifLabel;
-    }
-
-    public static String getCurrentEndIfLabel() {
-        return "endif" + endIfLabel;
-    }
-
-    public static String getCurrentWhileCondLabel() {
-        return "whileCond" + whileCondLabel;
-    }
-
-    public static String getCurrentWhileLoopLabel() {
-        return "whileLoop" + whileLoopLabel;
-    }
-
-    public static String getCurrentWhileEndLabel() {
-        return "whileEnd" + whileEndLabel;
-    }
-
-
-    public static String getCurrentAndTrue() {
-        return "true_" + and_true;
-    }
-
-    public static String getCurrentAndEnd() {
-        return "end_" + and_end;
-    }
     public static String toOllirType(JmmNode typeNode) {
 
-        if (typeNode.getKind().equals("IntegerLiteral")) {
+        if (Kind.INTEGER_LITERAL.check(typeNode)) {
             return "i32";
-        } else if (typeNode.getKind().equals("VarRefExpr")) {
+        } else if (Kind.VAR_REF_EXPR.check(typeNode)) {
             return "i32";
         }
         // check if it has
@@ -181,7 +30,7 @@ public class OptUtils {
             if (typeNode.get("isArray").equals("true")) {
                 return ".array" + toOllirType(typeNode.get("value"));
             }
-        } else if (typeNode.getKind().equals("ArrayDeclaration")) {
+        } else if (Kind.ARRAY_DECLARATION.check(typeNode)) {
             return toOllirType(typeNode.getChildren().get(0));
         }
 
@@ -192,13 +41,23 @@ public class OptUtils {
 
 
     public static String toOllirType(Type type) {
-        if (type.isArray()) {
-            return ".array" + toOllirType(type.getName());
+        // Types are compared by name, so the suffix of each one is only built once
+        var ollirType = OLLIR_TYPES.get(type);
+        if (ollirType != null) {
+            return ollirType;
         }
-        return toOllirType(type.getName());
+
+        ollirType = type.isArray() ? ".array" + toOllirType(type.getName()) : toOllirType(type.getName());
+        OLLIR_TYPES.putIfAbsent(type, ollirType);
+
+        return ollirType;
     }
 
     private static String toOllirType(String typeName) {
+        var ollirType = OLLIR_TYPE_NAMES.get(typeName);
+        if (ollirType != null) {
+            return ollirType;
+        }
 
         String type = "." + switch (typeName) {
             case "int" -> "i32";
@@ -207,6 +66,7 @@ public class OptUtils {
             case "IntegerLiteral" -> "i32";
             default -> typeName;
         };
+        OLLIR_TYPE_NAMES.putIfAbsent(typeName, type);
 
         return type;
     }
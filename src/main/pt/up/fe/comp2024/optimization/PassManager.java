@@ -0,0 +1,165 @@
+package pt.up.fe.comp2024.optimization;
+
+import java.util.*;
+
+/**
+ * Runs the passes of a stage of the compiler that are enabled at the optimization level of the build.
+ * <p>
+ * Each pass is registered with the lowest level that enables it and with the passes that must run before it. A pass
+ * can also invalidate other passes: when it changes the code, the passes it invalidates run again, because it may
+ * have left work for them. The passes run in the order of their dependencies until none is left to run, and each
+ * pass runs at most {@link #MAX_RUNS} times on the same unit, so that passes that keep undoing each other stop.
+ *
+ * @param <T> the unit the passes transform, such as the OLLIR of a method
+ */
+public class PassManager<T> {
+
+    public static final int MAX_RUNS = 8;
+
+    /**
+     * A pass that transforms a unit in place.
+     *
+     * @param <T>
+     */
+    @FunctionalInterface
+    public interface Pass<T> {
+
+        /**
+         * @param unit
+         * @return true if the unit was changed
+         */
+        boolean run(T unit);
+    }
+
+    private record Entry<T>(String name, int level, Pass<T> pass, Set<String> invalidated) {
+    }
+
+    private final Map<String, Entry<T>> passes = new LinkedHashMap<>();
+
+    /**
+     * Registers a pass, after the passes it depends on.
+     *
+     * @param name
+     * @param level the lowest optimization level that runs the pass
+     * @param pass
+     * @param dependencies the passes that run before this one, when they are enabled
+     * @return this manager
+     */
+    public PassManager<T> register(String name, int level, Pass<T> pass, String... dependencies) {
+        if (passes.containsKey(name)) {
+            throw new RuntimeException("Pass '" + name + "' is already registered");
+        }
+
+        for (var dependency : dependencies) {
+            if (!passes.containsKey(dependency)) {
+                throw new RuntimeException("Pass '" + name + "' depends on '" + dependency
+                        + "', which is not registered");
+            }
+        }
+
+        passes.put(name, new Entry<>(name, level, pass, new LinkedHashSet<>()));
+
+        return this;
+    }
+
+    /**
+     * Makes the given passes run again each time the pass changes the unit.
+     *
+     * @param name
+     * @param invalidated
+     * @return this manager
+     */
+    public PassManager<T> invalidates(String name, String... invalidated) {
+        var entry = getEntry(name);
+
+        for (var other : invalidated) {
+            getEntry(other);
+            entry.invalidated().add(other);
+        }
+
+        return this;
+    }
+
+    /**
+     * @param level
+     * @return the names of the passes that run at the given level, in the order they run first
+     */
+    public List<String> getSchedule(int level) {
+        return schedule(level).stream().map(Entry::name).toList();
+    }
+
+    /**
+     * Runs the passes enabled at the given level on the unit, until none of them is left to run.
+     *
+     * @param unit
+     * @param level
+     * @param statistics where the runs of each pass are recorded
+     * @return true if any pass changed the unit
+     */
+    public boolean run(T unit, int level, PassStatistics statistics) {
+        var schedule = schedule(level);
+
+        var positions = new HashMap<String, Integer>();
+        for (int i = 0; i < schedule.size(); i++) {
+            positions.put(schedule.get(i).name(), i);
+        }
+
+        // The earliest pass that is pending always runs next, so a pass that was invalidated runs again before the
+        // passes that come after it
+        var pending = new BitSet(schedule.size());
+        pending.set(0, schedule.size());
+        var runs = new int[schedule.size()];
+
+        boolean changed = false;
+        for (int next = pending.nextSetBit(0); next >= 0; next = pending.nextSetBit(0)) {
+            pending.clear(next);
+
+            if (runs[next] == MAX_RUNS) {
+                continue;
+            }
+            runs[next]++;
+
+            var entry = schedule.get(next);
+            long start = System.nanoTime();
+            boolean passChanged;
+            try {
+                passChanged = entry.pass().run(unit);
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Problem while executing optimization pass '" + entry.name() + "'", e);
+            }
+            statistics.record(entry.name(), passChanged, System.nanoTime() - start);
+
+            if (!passChanged) {
+                continue;
+            }
+
+            changed = true;
+            for (var invalidated : entry.invalidated()) {
+                var position = positions.get(invalidated);
+                if (position != null) {
+                    pending.set(position);
+                }
+            }
+        }
+
+        return changed;
+    }
+
+    private Entry<T> getEntry(String name) {
+        var entry = passes.get(name);
+        if (entry == null) {
+            throw new RuntimeException("Pass '" + name + "' is not registered");
+        }
+
+        return entry;
+    }
+
+    private List<Entry<T>> schedule(int level) {
+
+        // Passes can only depend on passes registered before them, so the order of registration already respects
+        // the dependencies
+        return passes.values().stream()
+                .filter(entry -> entry.level() <= level)
+                .toList();
+    }
+}
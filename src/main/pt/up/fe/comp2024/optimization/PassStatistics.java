@@ -0,0 +1,55 @@
+package pt.up.fe.comp2024.optimization;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How many times each pass ran, how many of those runs changed the code, and how long they took.
+ */
+public class PassStatistics {
+
+    private static final class Counters {
+        private int runs;
+        private int changes;
+        private long nanos;
+    }
+
+    private final Map<String, Counters> counters = new LinkedHashMap<>();
+
+    public synchronized void record(String pass, boolean changed, long nanos) {
+        var passCounters = counters.computeIfAbsent(pass, name -> new Counters());
+
+        passCounters.runs++;
+        if (changed) {
+            passCounters.changes++;
+        }
+        passCounters.nanos += nanos;
+    }
+
+    public synchronized int getRuns(String pass) {
+        var passCounters = counters.get(pass);
+        return passCounters == null ? 0 : passCounters.runs;
+    }
+
+    public synchronized int getChanges(String pass) {
+        var passCounters = counters.get(pass);
+        return passCounters == null ? 0 : passCounters.changes;
+    }
+
+    /**
+     * @param stage
+     * @return a debug report for each pass that ran, in the order they first ran
+     */
+    public synchronized List<Report> toReports(Stage stage) {
+        return counters.entrySet().stream()
+                .map(entry -> new Report(ReportType.DEBUG, stage, -1, -1, String.format(
+                        "Pass '%s' ran %d times, changed the code %d times, took %.3f ms", entry.getKey(),
+                        entry.getValue().runs, entry.getValue().changes, entry.getValue().nanos / 1_000_000.0)))
+                .toList();
+    }
+}
@@ -0,0 +1,69 @@
+package pt.up.fe.comp2024.optimization.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A maximal sequence of instructions of a method that is always executed from the first to the last.
+ */
+public class BasicBlock {
+
+    private final int id;
+    private final int start;
+    private final int end;
+    private final List<BasicBlock> predecessors;
+    private final List<BasicBlock> successors;
+
+    BasicBlock(int id, int start, int end) {
+        this.id = id;
+        this.start = start;
+        this.end = end;
+        this.predecessors = new ArrayList<>();
+        this.successors = new ArrayList<>();
+    }
+
+    /**
+     * @return the index of the block in {@link ControlFlowGraph#getBlocks()}
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the index of the first instruction of the block
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return the index of the last instruction of the block
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    public List<BasicBlock> getPredecessors() {
+        return Collections.unmodifiableList(predecessors);
+    }
+
+    public List<BasicBlock> getSuccessors() {
+        return Collections.unmodifiableList(successors);
+    }
+
+    void addSuccessor(BasicBlock successor) {
+        // A conditional branch to the next instruction leads twice to the same block
+        if (successors.contains(successor)) {
+            return;
+        }
+
+        successors.add(successor);
+        successor.predecessors.add(this);
+    }
+
+    @Override
+    public String toString() {
+        return "B" + id + "[" + start + ".." + end + "]";
+    }
+}
@@ -0,0 +1,177 @@
+package pt.up.fe.comp2024.optimization.analysis;
+
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp2024.optimization.InstructionUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The basic blocks of a method and the jumps between them.
+ * <p>
+ * The graph is a snapshot of the instructions of the method when it was built, and must be built again after the
+ * instructions change.
+ */
+public class ControlFlowGraph {
+
+    private final Method method;
+    private final List<BasicBlock> blocks;
+    private final int[] blockOf;
+    private final List<BasicBlock> reversePostorder;
+    private final boolean[] reachable;
+    private final Variables variables;
+
+    private ControlFlowGraph(Method method, int[][] successors) {
+        this.method = method;
+        var instructions = method.getInstructions();
+        int size = instructions.size();
+
+        // A block starts at the beginning of the method, at the target of a jump, and after any instruction that
+        // does not simply fall through to the next one
+        var leaders = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            if (i == 0) {
+                leaders[i] = true;
+            }
+
+            boolean fallsThrough = successors[i].length == 1 && successors[i][0] == i + 1;
+            if (!fallsThrough) {
+                for (var succ : successors[i]) {
+                    leaders[succ] = true;
+                }
+
+                if (i + 1 < size) {
+                    leaders[i + 1] = true;
+                }
+            }
+        }
+
+        this.blocks = new ArrayList<>();
+        this.blockOf = new int[size];
+        for (int start = 0; start < size; ) {
+            int end = start;
+            while (end + 1 < size && !leaders[end + 1]) {
+                end++;
+            }
+
+            var block = new BasicBlock(blocks.size(), start, end);
+            for (int i = start; i <= end; i++) {
+                blockOf[i] = block.getId();
+            }
+            blocks.add(block);
+
+            start = end + 1;
+        }
+
+        for (var block : blocks) {
+            for (var succ : successors[block.getEnd()]) {
+                block.addSuccessor(blocks.get(blockOf[succ]));
+            }
+        }
+
+        this.reachable = new boolean[blocks.size()];
+        this.reversePostorder = computeReversePostorder();
+        this.variables = new Variables(instructions);
+    }
+
+    /**
+     * Builds the control flow graph of the method.
+     *
+     * @param method
+     * @return the graph, or empty if some jump of the method targets a label that does not exist
+     */
+    public static Optional<ControlFlowGraph> build(Method method) {
+        return InstructionUtils.getSuccessors(method).map(successors -> new ControlFlowGraph(method, successors));
+    }
+
+    private List<BasicBlock> computeReversePostorder() {
+        var postorder = new ArrayList<BasicBlock>(blocks.size());
+        if (blocks.isEmpty()) {
+            return postorder;
+        }
+
+        // Iterative depth-first search, each stack entry keeps the next successor to visit
+        var stack = new ArrayList<BasicBlock>();
+        var nextSucc = new int[blocks.size()];
+
+        stack.add(getEntry());
+        reachable[0] = true;
+
+        while (!stack.isEmpty()) {
+            var block = stack.get(stack.size() - 1);
+            var successors = block.getSuccessors();
+
+            if (nextSucc[block.getId()] < successors.size()) {
+                var succ = successors.get(nextSucc[block.getId()]++);
+                if (!reachable[succ.getId()]) {
+                    reachable[succ.getId()] = true;
+                    stack.add(succ);
+                }
+                continue;
+            }
+
+            postorder.add(stack.remove(stack.size() - 1));
+        }
+
+        Collections.reverse(postorder);
+        return postorder;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public List<Instruction> getInstructions() {
+        return method.getInstructions();
+    }
+
+    public List<BasicBlock> getBlocks() {
+        return Collections.unmodifiableList(blocks);
+    }
+
+    /**
+     * @return the block where the method starts, or null if the method has no instructions
+     */
+    public BasicBlock getEntry() {
+        return blocks.isEmpty() ? null : blocks.get(0);
+    }
+
+    /**
+     * @param instIndex
+     * @return the block that contains the instruction
+     */
+    public BasicBlock getBlockOf(int instIndex) {
+        return blocks.get(blockOf[instIndex]);
+    }
+
+    /**
+     * @param instIndex
+     * @return true if the instruction is the first of its block
+     */
+    public boolean isBlockStart(int instIndex) {
+        return getBlockOf(instIndex).getStart() == instIndex;
+    }
+
+    /**
+     * @return the blocks reachable from the entry, in reverse postorder, i.e. each block comes before its successors
+     * except along back edges
+     */
+    public List<BasicBlock> getReversePostorder() {
+        return Collections.unmodifiableList(reversePostorder);
+    }
+
+    /**
+     * @param block
+     * @return true if the block can be reached from the entry of the method
+     */
+    public boolean isReachable(BasicBlock block) {
+        return reachable[block.getId()];
+    }
+
+    public Variables getVariables() {
+        return variables;
+    }
+}
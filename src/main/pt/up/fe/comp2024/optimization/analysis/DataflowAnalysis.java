@@ -0,0 +1,134 @@
+package pt.up.fe.comp2024.optimization.analysis;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A dataflow analysis over the basic blocks of a method, where facts are sets represented as bitsets, the sets of
+ * the predecessors (or successors, for backward analyses) are joined by union and each block transforms its input
+ * set as {@code gen + (input - kill)}.
+ * <p>
+ * The analysis is solved with a worklist, so only the blocks whose inputs changed are visited again.
+ */
+public abstract class DataflowAnalysis {
+
+    protected final ControlFlowGraph cfg;
+    private final boolean forward;
+    private final BitSet[] in;
+    private final BitSet[] out;
+
+    protected DataflowAnalysis(ControlFlowGraph cfg, boolean forward) {
+        this.cfg = cfg;
+        this.forward = forward;
+
+        int size = cfg.getBlocks().size();
+        this.in = new BitSet[size];
+        this.out = new BitSet[size];
+    }
+
+    /**
+     * @param block
+     * @return the facts created by the block
+     */
+    protected abstract BitSet gen(BasicBlock block);
+
+    /**
+     * @param block
+     * @return the facts invalidated by the block
+     */
+    protected abstract BitSet kill(BasicBlock block);
+
+    /**
+     * Computes the sets at the start and end of every block. Must be called by subclasses once the information
+     * needed by {@link #gen(BasicBlock)} and {@link #kill(BasicBlock)} is available.
+     */
+    protected void solve() {
+        var blocks = cfg.getBlocks();
+        int size = blocks.size();
+
+        var gens = new BitSet[size];
+        var kills = new BitSet[size];
+        for (var block : blocks) {
+            gens[block.getId()] = gen(block);
+            kills[block.getId()] = kill(block);
+            in[block.getId()] = new BitSet();
+            out[block.getId()] = new BitSet();
+        }
+
+        // Visiting blocks in the direction of the flow makes most of them final on the first visit
+        var worklist = new ArrayDeque<BasicBlock>(size);
+        var queued = new boolean[size];
+        for (var block : getInitialOrder()) {
+            worklist.add(block);
+            queued[block.getId()] = true;
+        }
+
+        while (!worklist.isEmpty()) {
+            var block = worklist.poll();
+            int id = block.getId();
+            queued[id] = false;
+
+            var input = forward ? in[id] : out[id];
+            var output = forward ? out[id] : in[id];
+
+            input.clear();
+            for (var neighbour : forward ? block.getPredecessors() : block.getSuccessors()) {
+                input.or(forward ? out[neighbour.getId()] : in[neighbour.getId()]);
+            }
+
+            var newOutput = (BitSet) input.clone();
+            newOutput.andNot(kills[id]);
+            newOutput.or(gens[id]);
+
+            if (newOutput.equals(output)) {
+                continue;
+            }
+
+            output.clear();
+            output.or(newOutput);
+
+            for (var neighbour : forward ? block.getSuccessors() : block.getPredecessors()) {
+                if (!queued[neighbour.getId()]) {
+                    worklist.add(neighbour);
+                    queued[neighbour.getId()] = true;
+                }
+            }
+        }
+    }
+
+    private List<BasicBlock> getInitialOrder() {
+        var order = new ArrayList<>(cfg.getReversePostorder());
+
+        // Unreachable blocks are not in the reverse postorder, but still get their sets computed
+        for (var block : cfg.getBlocks()) {
+            if (!cfg.isReachable(block)) {
+                order.add(block);
+            }
+        }
+
+        if (!forward) {
+            Collections.reverse(order);
+        }
+
+        return order;
+    }
+
+    /**
+     * @param block
+     * @return the set at the start of the block, which must not be modified
+     */
+    public BitSet getIn(BasicBlock block) {
+        return in[block.getId()];
+    }
+
+    /**
+     * @param block
+     * @return the set at the end of the block, which must not be modified
+     */
+    public BitSet getOut(BasicBlock block) {
+        return out[block.getId()];
+    }
+}
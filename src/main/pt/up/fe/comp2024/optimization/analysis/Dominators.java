@@ -0,0 +1,177 @@
+package pt.up.fe.comp2024.optimization.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Computes the dominator tree and dominance frontiers of the reachable blocks of a method.
+ * <p>
+ * Uses the iterative algorithm of Cooper, Harvey and Kennedy, which intersects the dominators of the predecessors
+ * following the reverse postorder and usually converges in two passes.
+ */
+public class Dominators {
+
+    private static final int UNDEFINED = -1;
+
+    private final ControlFlowGraph cfg;
+    private final int[] idom;
+    private final int[] rpoNumber;
+    private final List<List<BasicBlock>> children;
+    private final List<List<BasicBlock>> frontiers;
+
+    public Dominators(ControlFlowGraph cfg) {
+        this.cfg = cfg;
+
+        int size = cfg.getBlocks().size();
+        this.idom = new int[size];
+        this.rpoNumber = new int[size];
+        Arrays.fill(idom, UNDEFINED);
+        Arrays.fill(rpoNumber, UNDEFINED);
+
+        var rpo = cfg.getReversePostorder();
+        for (int i = 0; i < rpo.size(); i++) {
+            rpoNumber[rpo.get(i).getId()] = i;
+        }
+
+        computeIdoms(rpo);
+
+        this.children = new ArrayList<>(size);
+        this.frontiers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            children.add(new ArrayList<>());
+            frontiers.add(new ArrayList<>());
+        }
+
+        for (var block : rpo) {
+            var parent = getImmediateDominator(block);
+            if (parent != null) {
+                children.get(parent.getId()).add(block);
+            }
+        }
+
+        computeFrontiers(rpo);
+    }
+
+    private void computeIdoms(List<BasicBlock> rpo) {
+        if (rpo.isEmpty()) {
+            return;
+        }
+
+        int entry = rpo.get(0).getId();
+        idom[entry] = entry;
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (var block : rpo.subList(1, rpo.size())) {
+                int newIdom = UNDEFINED;
+
+                for (var pred : block.getPredecessors()) {
+                    if (idom[pred.getId()] == UNDEFINED) {
+                        continue;
+                    }
+
+                    newIdom = newIdom == UNDEFINED ? pred.getId() : intersect(pred.getId(), newIdom);
+                }
+
+                if (idom[block.getId()] != newIdom) {
+                    idom[block.getId()] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private int intersect(int block1, int block2) {
+        while (block1 != block2) {
+            while (rpoNumber[block1] > rpoNumber[block2]) {
+                block1 = idom[block1];
+            }
+            while (rpoNumber[block2] > rpoNumber[block1]) {
+                block2 = idom[block2];
+            }
+        }
+
+        return block1;
+    }
+
+    private void computeFrontiers(List<BasicBlock> rpo) {
+        // Only join points can be in a frontier: walk up from each predecessor until reaching the dominator of the
+        // join point
+        for (var block : rpo) {
+            if (block.getPredecessors().size() < 2) {
+                continue;
+            }
+
+            for (var pred : block.getPredecessors()) {
+                if (!cfg.isReachable(pred)) {
+                    continue;
+                }
+
+                int runner = pred.getId();
+                while (runner != idom[block.getId()]) {
+                    var frontier = frontiers.get(runner);
+                    if (!frontier.contains(block)) {
+                        frontier.add(block);
+                    }
+                    runner = idom[runner];
+                }
+            }
+        }
+    }
+
+    /**
+     * @param block
+     * @return the closest block that dominates the given block, or null for the entry and unreachable blocks
+     */
+    public BasicBlock getImmediateDominator(BasicBlock block) {
+        int parent = idom[block.getId()];
+        if (parent == UNDEFINED || parent == block.getId()) {
+            return null;
+        }
+
+        return cfg.getBlocks().get(parent);
+    }
+
+    /**
+     * @param block
+     * @return the blocks immediately dominated by the given block
+     */
+    public List<BasicBlock> getChildren(BasicBlock block) {
+        return Collections.unmodifiableList(children.get(block.getId()));
+    }
+
+    /**
+     * @param block
+     * @return the blocks where the dominance of the given block ends, i.e. that have a predecessor dominated by the
+     * block without being strictly dominated by it
+     */
+    public List<BasicBlock> getFrontier(BasicBlock block) {
+        return Collections.unmodifiableList(frontiers.get(block.getId()));
+    }
+
+    /**
+     * @param dominator
+     * @param block
+     * @return true if every path from the entry to the block goes through the dominator
+     */
+    public boolean dominates(BasicBlock dominator, BasicBlock block) {
+        if (idom[block.getId()] == UNDEFINED) {
+            return false;
+        }
+
+        int current = block.getId();
+        while (current != dominator.getId()) {
+            int parent = idom[current];
+            if (parent == current) {
+                return false;
+            }
+            current = parent;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,87 @@
+package pt.up.fe.comp2024.optimization.analysis;
+
+import java.util.BitSet;
+
+/**
+ * Computes which variables may still be read after each point of a method, as bitsets indexed by the ids of
+ * {@link Variables}.
+ */
+public class Liveness extends DataflowAnalysis {
+
+    private final Variables variables;
+
+    public Liveness(ControlFlowGraph cfg) {
+        super(cfg, false);
+        this.variables = cfg.getVariables();
+
+        solve();
+    }
+
+    @Override
+    protected BitSet gen(BasicBlock block) {
+        // Variables read before being written in the block
+        var gen = new BitSet(variables.size());
+
+        for (int i = block.getEnd(); i >= block.getStart(); i--) {
+            transfer(i, gen);
+        }
+
+        return gen;
+    }
+
+    @Override
+    protected BitSet kill(BasicBlock block) {
+        var kill = new BitSet(variables.size());
+
+        for (int i = block.getStart(); i <= block.getEnd(); i++) {
+            if (variables.getDef(i) != -1) {
+                kill.set(variables.getDef(i));
+            }
+        }
+
+        return kill;
+    }
+
+    private void transfer(int instIndex, BitSet live) {
+        if (variables.getDef(instIndex) != -1) {
+            live.clear(variables.getDef(instIndex));
+        }
+
+        for (var use : variables.getUses(instIndex)) {
+            live.set(use);
+        }
+    }
+
+    /**
+     * @return the variables live after each instruction of the method
+     */
+    public BitSet[] getLiveOutPerInstruction() {
+        var liveOut = new BitSet[cfg.getInstructions().size()];
+
+        for (var block : cfg.getBlocks()) {
+            var live = (BitSet) getOut(block).clone();
+
+            for (int i = block.getEnd(); i >= block.getStart(); i--) {
+                liveOut[i] = (BitSet) live.clone();
+                transfer(i, live);
+            }
+        }
+
+        return liveOut;
+    }
+
+    /**
+     * @param instIndex
+     * @return the variables live after the instruction
+     */
+    public BitSet getLiveOut(int instIndex) {
+        var block = cfg.getBlockOf(instIndex);
+        var live = (BitSet) getOut(block).clone();
+
+        for (int i = block.getEnd(); i > instIndex; i--) {
+            transfer(i, live);
+        }
+
+        return live;
+    }
+}
@@ -0,0 +1,161 @@
+package pt.up.fe.comp2024.optimization.analysis;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds the loops of a method from its back edges, i.e. the edges to a block that dominates their source.
+ * <p>
+ * The loop of a back edge is its target, the header, and every block that can reach the source without going
+ * through the header. Back edges to the same header belong to the same loop.
+ */
+public class NaturalLoops {
+
+    /**
+     * A loop of the method, which is only entered through its header.
+     */
+    public static class Loop {
+
+        private final ControlFlowGraph cfg;
+        private final BasicBlock header;
+        private final BitSet blocks;
+
+        private Loop(ControlFlowGraph cfg, BasicBlock header) {
+            this.cfg = cfg;
+            this.header = header;
+            this.blocks = new BitSet(cfg.getBlocks().size());
+            blocks.set(header.getId());
+        }
+
+        public BasicBlock getHeader() {
+            return header;
+        }
+
+        /**
+         * @return the blocks of the loop, in the order of the instructions
+         */
+        public List<BasicBlock> getBlocks() {
+            var loopBlocks = new ArrayList<BasicBlock>(blocks.cardinality());
+            for (int id = blocks.nextSetBit(0); id != -1; id = blocks.nextSetBit(id + 1)) {
+                loopBlocks.add(cfg.getBlocks().get(id));
+            }
+            loopBlocks.sort(Comparator.comparingInt(BasicBlock::getStart));
+
+            return loopBlocks;
+        }
+
+        public int size() {
+            return blocks.cardinality();
+        }
+
+        public boolean contains(BasicBlock block) {
+            return blocks.get(block.getId());
+        }
+
+        /**
+         * @param instIndex
+         * @return true if the instruction is in a block of the loop
+         */
+        public boolean containsInstruction(int instIndex) {
+            return contains(cfg.getBlockOf(instIndex));
+        }
+
+        /**
+         * @return the blocks of the loop with a successor outside of it
+         */
+        public List<BasicBlock> getExits() {
+            var exits = new ArrayList<BasicBlock>();
+            for (var block : getBlocks()) {
+                if (block.getSuccessors().stream().anyMatch(succ -> !contains(succ))) {
+                    exits.add(block);
+                }
+            }
+
+            return exits;
+        }
+
+        /**
+         * @return the blocks outside of the loop that are entered when leaving it
+         */
+        public List<BasicBlock> getExitTargets() {
+            var targets = new ArrayList<BasicBlock>();
+            for (var block : getBlocks()) {
+                for (var succ : block.getSuccessors()) {
+                    if (!contains(succ) && !targets.contains(succ)) {
+                        targets.add(succ);
+                    }
+                }
+            }
+
+            return targets;
+        }
+
+        /**
+         * @return the blocks outside of the loop that jump or fall through to the header
+         */
+        public List<BasicBlock> getEntries() {
+            var entries = new ArrayList<BasicBlock>();
+            for (var pred : header.getPredecessors()) {
+                if (!contains(pred)) {
+                    entries.add(pred);
+                }
+            }
+
+            return entries;
+        }
+    }
+
+    private final List<Loop> loops;
+
+    public NaturalLoops(ControlFlowGraph cfg, Dominators dominators) {
+        this.loops = new ArrayList<>();
+
+        var loopOfHeader = new Loop[cfg.getBlocks().size()];
+        for (var block : cfg.getReversePostorder()) {
+            for (var succ : block.getSuccessors()) {
+                if (!dominators.dominates(succ, block)) {
+                    continue;
+                }
+
+                var loop = loopOfHeader[succ.getId()];
+                if (loop == null) {
+                    loop = new Loop(cfg, succ);
+                    loopOfHeader[succ.getId()] = loop;
+                    loops.add(loop);
+                }
+                addBody(loop, block);
+            }
+        }
+
+        // Inner loops have fewer blocks than the loops that contain them
+        loops.sort(Comparator.comparingInt(Loop::size));
+    }
+
+    private static void addBody(Loop loop, BasicBlock source) {
+        var pending = new ArrayList<BasicBlock>();
+        if (!loop.blocks.get(source.getId())) {
+            loop.blocks.set(source.getId());
+            pending.add(source);
+        }
+
+        while (!pending.isEmpty()) {
+            var block = pending.remove(pending.size() - 1);
+            for (var pred : block.getPredecessors()) {
+                if (!loop.blocks.get(pred.getId()) && loop.cfg.isReachable(pred)) {
+                    loop.blocks.set(pred.getId());
+                    pending.add(pred);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the loops of the method, inner loops first
+     */
+    public List<Loop> getLoops() {
+        return Collections.unmodifiableList(loops);
+    }
+}
@@ -0,0 +1,102 @@
+package pt.up.fe.comp2024.optimization.analysis;
+
+import java.util.BitSet;
+
+/**
+ * Computes which assignments may have written the current value of each variable at each point of a method.
+ * <p>
+ * Definitions are identified by the index of the assigning instruction, so the bitsets are indexed by instruction.
+ * Variables that are read before any assignment, such as parameters, have no reaching definition on that path.
+ */
+public class ReachingDefinitions extends DataflowAnalysis {
+
+    private final Variables variables;
+    private final BitSet[] defsOfVariable;
+
+    public ReachingDefinitions(ControlFlowGraph cfg) {
+        super(cfg, true);
+        this.variables = cfg.getVariables();
+        this.defsOfVariable = new BitSet[variables.size()];
+
+        for (int var = 0; var < variables.size(); var++) {
+            defsOfVariable[var] = new BitSet();
+        }
+
+        for (int i = 0; i < cfg.getInstructions().size(); i++) {
+            if (variables.getDef(i) != -1) {
+                defsOfVariable[variables.getDef(i)].set(i);
+            }
+        }
+
+        solve();
+    }
+
+    @Override
+    protected BitSet gen(BasicBlock block) {
+        var gen = new BitSet();
+
+        for (int i = block.getStart(); i <= block.getEnd(); i++) {
+            transfer(i, gen);
+        }
+
+        return gen;
+    }
+
+    @Override
+    protected BitSet kill(BasicBlock block) {
+        var kill = new BitSet();
+
+        for (int i = block.getStart(); i <= block.getEnd(); i++) {
+            if (variables.getDef(i) != -1) {
+                kill.or(defsOfVariable[variables.getDef(i)]);
+            }
+        }
+
+        return kill;
+    }
+
+    private void transfer(int instIndex, BitSet reaching) {
+        int def = variables.getDef(instIndex);
+        if (def == -1) {
+            return;
+        }
+
+        reaching.andNot(defsOfVariable[def]);
+        reaching.set(instIndex);
+    }
+
+    /**
+     * @param var the id of the variable
+     * @return the indexes of the instructions that assign the variable
+     */
+    public BitSet getDefinitions(int var) {
+        return (BitSet) defsOfVariable[var].clone();
+    }
+
+    /**
+     * @param instIndex
+     * @return the definitions that reach the instruction, before it executes
+     */
+    public BitSet getReachingIn(int instIndex) {
+        var block = cfg.getBlockOf(instIndex);
+        var reaching = (BitSet) getIn(block).clone();
+
+        for (int i = block.getStart(); i < instIndex; i++) {
+            transfer(i, reaching);
+        }
+
+        return reaching;
+    }
+
+    /**
+     * @param instIndex
+     * @param var       the id of the variable
+     * @return the definitions of the variable that reach the instruction, before it executes
+     */
+    public BitSet getReachingIn(int instIndex, int var) {
+        var reaching = getReachingIn(instIndex);
+        reaching.and(defsOfVariable[var]);
+
+        return reaching;
+    }
+}
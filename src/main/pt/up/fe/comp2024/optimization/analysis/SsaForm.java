@@ -0,0 +1,226 @@
+package pt.up.fe.comp2024.optimization.analysis;
+
+import org.specs.comp.ollir.Operand;
+import pt.up.fe.comp2024.optimization.InstructionUtils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Static single assignment view of a method.
+ * <p>
+ * OLLIR has no phi instruction, so the method is not rewritten. Instead, each assignment gets a new version of its
+ * variable, each read is mapped to the version it sees, and the phi functions are kept beside the blocks where the
+ * versions of a variable meet. Phis are only placed where the variable is live (pruned SSA). Since the names of the
+ * method are never changed, leaving SSA needs no copies: every version is still stored in its original variable.
+ * <p>
+ * Version 0 of a variable is the value it has when the method starts, such as a parameter.
+ */
+public class SsaForm {
+
+    /**
+     * A phi function at the start of a block, which selects the version of a variable depending on the predecessor
+     * the block was entered from.
+     */
+    public static class Phi {
+
+        private final int variable;
+        private final int version;
+        private final int[] operands;
+
+        private Phi(int variable, int version, int numPredecessors) {
+            this.variable = variable;
+            this.version = version;
+            this.operands = new int[numPredecessors];
+        }
+
+        /**
+         * @return the id of the variable
+         */
+        public int getVariable() {
+            return variable;
+        }
+
+        /**
+         * @return the version defined by the phi
+         */
+        public int getVersion() {
+            return version;
+        }
+
+        /**
+         * @param predIndex the index of the predecessor in {@link BasicBlock#getPredecessors()}
+         * @return the version of the variable at the end of that predecessor
+         */
+        public int getOperand(int predIndex) {
+            return operands[predIndex];
+        }
+    }
+
+    private final ControlFlowGraph cfg;
+    private final Variables variables;
+    private final List<List<Phi>> phis;
+    private final int[] defVersions;
+    private final Map<Operand, Integer> useVersions;
+    private final int[] versionCounts;
+
+    public SsaForm(ControlFlowGraph cfg, Dominators dominators, Liveness liveness) {
+        this.cfg = cfg;
+        this.variables = cfg.getVariables();
+        this.phis = new ArrayList<>(cfg.getBlocks().size());
+        this.defVersions = new int[cfg.getInstructions().size()];
+        this.useVersions = new IdentityHashMap<>();
+        this.versionCounts = new int[variables.size()];
+
+        for (int i = 0; i < cfg.getBlocks().size(); i++) {
+            phis.add(new ArrayList<>());
+        }
+
+        placePhis(dominators, liveness);
+        rename(dominators);
+    }
+
+    private void placePhis(Dominators dominators, Liveness liveness) {
+        var blocks = cfg.getBlocks();
+
+        // Blocks that assign each variable
+        var defBlocks = new ArrayList<BitSet>(variables.size());
+        for (int var = 0; var < variables.size(); var++) {
+            defBlocks.add(new BitSet(blocks.size()));
+        }
+        for (var block : cfg.getReversePostorder()) {
+            for (int i = block.getStart(); i <= block.getEnd(); i++) {
+                if (variables.getDef(i) != -1) {
+                    defBlocks.get(variables.getDef(i)).set(block.getId());
+                }
+            }
+        }
+
+        // A phi is needed in the iterated dominance frontier of the assignments, and itself assigns the variable
+        var hasPhi = new BitSet(blocks.size());
+        var pending = new BitSet(blocks.size());
+        for (int var = 0; var < variables.size(); var++) {
+            hasPhi.clear();
+            pending.clear();
+            pending.or(defBlocks.get(var));
+
+            for (int id = pending.nextSetBit(0); id != -1; id = pending.nextSetBit(0)) {
+                pending.clear(id);
+
+                for (var frontierBlock : dominators.getFrontier(blocks.get(id))) {
+                    int frontierId = frontierBlock.getId();
+                    if (hasPhi.get(frontierId) || !liveness.getIn(frontierBlock).get(var)) {
+                        continue;
+                    }
+
+                    hasPhi.set(frontierId);
+                    phis.get(frontierId).add(new Phi(var, ++versionCounts[var],
+                            frontierBlock.getPredecessors().size()));
+
+                    if (!defBlocks.get(var).get(frontierId)) {
+                        pending.set(frontierId);
+                    }
+                }
+            }
+        }
+    }
+
+    private void rename(Dominators dominators) {
+        var entry = cfg.getEntry();
+        if (entry == null) {
+            return;
+        }
+
+        var current = new int[variables.size()];
+
+        // Walk the dominator tree without recursion. A negative entry means leaving the block, which restores the
+        // versions it changed from the log
+        var stack = new ArrayList<Integer>();
+        var log = new ArrayList<int[]>();
+        var logSizes = new int[cfg.getBlocks().size()];
+        stack.add(entry.getId());
+
+        while (!stack.isEmpty()) {
+            int top = stack.remove(stack.size() - 1);
+
+            if (top < 0) {
+                int id = -top - 1;
+                while (log.size() > logSizes[id]) {
+                    var saved = log.remove(log.size() - 1);
+                    current[saved[0]] = saved[1];
+                }
+                continue;
+            }
+
+            var block = cfg.getBlocks().get(top);
+            logSizes[top] = log.size();
+            stack.add(-top - 1);
+
+            for (var phi : phis.get(top)) {
+                log.add(new int[]{phi.variable, current[phi.variable]});
+                current[phi.variable] = phi.version;
+            }
+
+            for (int i = block.getStart(); i <= block.getEnd(); i++) {
+                for (var operand : InstructionUtils.getUseOperands(cfg.getInstructions().get(i))) {
+                    useVersions.put(operand, current[variables.getId(operand.getName())]);
+                }
+
+                int def = variables.getDef(i);
+                if (def != -1) {
+                    log.add(new int[]{def, current[def]});
+                    current[def] = ++versionCounts[def];
+                    defVersions[i] = current[def];
+                }
+            }
+
+            for (var succ : block.getSuccessors()) {
+                int predIndex = succ.getPredecessors().indexOf(block);
+                for (var phi : phis.get(succ.getId())) {
+                    phi.operands[predIndex] = current[phi.variable];
+                }
+            }
+
+            for (var child : dominators.getChildren(block)) {
+                stack.add(child.getId());
+            }
+        }
+    }
+
+    /**
+     * @param block
+     * @return the phis at the start of the block
+     */
+    public List<Phi> getPhis(BasicBlock block) {
+        return Collections.unmodifiableList(phis.get(block.getId()));
+    }
+
+    /**
+     * @param instIndex
+     * @return the version assigned by the instruction, or 0 if it does not assign a variable
+     */
+    public int getDefVersion(int instIndex) {
+        return defVersions[instIndex];
+    }
+
+    /**
+     * @param operand an operand read by an instruction of the method
+     * @return the version of the variable read by the operand, or -1 if the operand is not a read of a reachable
+     * instruction
+     */
+    public int getUseVersion(Operand operand) {
+        return useVersions.getOrDefault(operand, -1);
+    }
+
+    /**
+     * @param var the id of the variable
+     * @return the number of versions of the variable, besides version 0
+     */
+    public int getVersionCount(int var) {
+        return versionCounts[var];
+    }
+}
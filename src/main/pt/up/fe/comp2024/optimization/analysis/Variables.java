@@ -0,0 +1,85 @@
+package pt.up.fe.comp2024.optimization.analysis;
+
+import org.specs.comp.ollir.Instruction;
+import pt.up.fe.comp2024.optimization.InstructionUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Numbers the variables of a method, and records which variables each instruction writes and reads, so that
+ * dataflow analyses can work with bitsets indexed by variable.
+ */
+public class Variables {
+
+    private static final int[] NO_USES = new int[0];
+
+    private final List<String> names;
+    private final Map<String, Integer> ids;
+    private final int[] defs;
+    private final int[][] uses;
+
+    Variables(List<Instruction> instructions) {
+        this.names = new ArrayList<>();
+        this.ids = new HashMap<>();
+        this.defs = new int[instructions.size()];
+        this.uses = new int[instructions.size()][];
+
+        for (int i = 0; i < instructions.size(); i++) {
+            var inst = instructions.get(i);
+
+            var useNames = InstructionUtils.getUses(inst);
+            uses[i] = useNames.isEmpty() ? NO_USES : new int[useNames.size()];
+            int useIndex = 0;
+            for (var name : useNames) {
+                uses[i][useIndex++] = getOrAddId(name);
+            }
+
+            defs[i] = InstructionUtils.getDef(inst).map(this::getOrAddId).orElse(-1);
+        }
+    }
+
+    private int getOrAddId(String name) {
+        return ids.computeIfAbsent(name, key -> {
+            names.add(key);
+            return names.size() - 1;
+        });
+    }
+
+    /**
+     * @return the number of variables
+     */
+    public int size() {
+        return names.size();
+    }
+
+    public String getName(int id) {
+        return names.get(id);
+    }
+
+    /**
+     * @param name
+     * @return the id of the variable, or -1 if it does not appear in the method
+     */
+    public int getId(String name) {
+        return ids.getOrDefault(name, -1);
+    }
+
+    /**
+     * @param instIndex
+     * @return the id of the variable written by the instruction, or -1 if it does not assign a whole variable
+     */
+    public int getDef(int instIndex) {
+        return defs[instIndex];
+    }
+
+    /**
+     * @param instIndex
+     * @return the ids of the variables read by the instruction, without repetitions
+     */
+    public int[] getUses(int instIndex) {
+        return uses[instIndex];
+    }
+}
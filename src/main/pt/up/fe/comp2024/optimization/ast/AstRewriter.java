@@ -0,0 +1,170 @@
+package pt.up.fe.comp2024.optimization.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.PostorderJmmVisitor;
+import pt.up.fe.comp2024.ast.CompactJmmNode;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.KindDispatchTable;
+import pt.up.fe.comp2024.optimization.AstPass;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiFunction;
+
+/**
+ * Base of the passes that rewrite the AST bottom-up.
+ * <p>
+ * The children of a node are rewritten before the node, so a node only sees children that were already simplified.
+ * Visit methods replace the node they visit with {@link #replace(JmmNode, JmmNode)}.
+ */
+public abstract class AstRewriter extends PostorderJmmVisitor<Void, Void> implements AstPass {
+
+    private static final List<String> BLOCK_HIERARCHY = List.of(Kind.BRACKETS.getNodeName(), "Statement");
+
+    private final KindDispatchTable<Void, Void> dispatchTable = new KindDispatchTable<>(super::getVisit);
+
+    private boolean changed;
+
+    public AstRewriter() {
+        setDefaultValue(() -> null);
+    }
+
+    @Override
+    protected BiFunction<JmmNode, Void, Void> getVisit(JmmNode node) {
+        return dispatchTable.get(node);
+    }
+
+    @Override
+    public boolean optimize(JmmNode root) {
+        changed = false;
+        visit(root);
+
+        return changed;
+    }
+
+    /**
+     * Puts the replacement in the place of the node, which is removed from the tree.
+     *
+     * @param node
+     * @param replacement a new node, or a node of the tree, such as a child of the node
+     */
+    protected void replace(JmmNode node, JmmNode replacement) {
+        replace(node, List.of(replacement));
+    }
+
+    /**
+     * Puts the replacements in the place of the node, in order, which removes the node when there are none.
+     *
+     * @param node
+     * @param replacements
+     */
+    protected void replace(JmmNode node, List<JmmNode> replacements) {
+        var parent = node.getParent();
+
+        // Replacements that are in the tree, such as the children of the node, are moved
+        for (var replacement : replacements) {
+            if (replacement.getParent() != null) {
+                replacement.detach();
+            }
+        }
+
+        var index = parent.removeChild(node);
+        for (int i = 0; i < replacements.size(); i++) {
+            parent.add(replacements.get(i), index + i);
+        }
+
+        changed = true;
+    }
+
+    /**
+     * @param node
+     * @return true if the node is a block of statements
+     */
+    protected static boolean isBlock(JmmNode node) {
+        return Kind.BRACKETS.check(node);
+    }
+
+    /**
+     * @param statements nodes that are moved to the block, if they are in the tree
+     * @param position   the node whose position in the source the block takes
+     * @return a new block with the given statements
+     */
+    protected static JmmNode newBlock(List<JmmNode> statements, JmmNode position) {
+        var block = new CompactJmmNode(Kind.BRACKETS.getNodeName(), Kind.BRACKETS, BLOCK_HIERARCHY, new String[0], statements.size());
+        setPosition(block, position);
+
+        for (var statement : statements) {
+            if (statement.getParent() != null) {
+                statement.detach();
+            }
+            block.add(statement, block.getNumChildren());
+        }
+
+        return block;
+    }
+
+    /**
+     * @param value
+     * @param position the node whose position in the source the literal takes
+     * @return a new integer literal
+     */
+    protected static JmmNode newInteger(int value, JmmNode position) {
+        return newLiteral(Kind.INTEGER_LITERAL, String.valueOf(value), position);
+    }
+
+    /**
+     * @param value
+     * @param position the node whose position in the source the literal takes
+     * @return a new boolean literal
+     */
+    protected static JmmNode newBoolean(boolean value, JmmNode position) {
+        return newLiteral(Kind.IDENTIFIER, String.valueOf(value), position);
+    }
+
+    private static JmmNode newLiteral(Kind kind, String value, JmmNode position) {
+        var literal = new CompactJmmNode(kind);
+        literal.put("value", value);
+        setPosition(literal, position);
+
+        return literal;
+    }
+
+    private static void setPosition(CompactJmmNode node, JmmNode position) {
+        if (position instanceof CompactJmmNode compactPosition) {
+            node.setPosition(compactPosition.getLineStart(), compactPosition.getColStart(),
+                    compactPosition.getLineEnd(), compactPosition.getColEnd());
+        }
+    }
+
+    /**
+     * @param node
+     * @return the value of the node, if it is an integer literal that fits in an int
+     */
+    protected static Optional<Integer> getInteger(JmmNode node) {
+        if (!Kind.INTEGER_LITERAL.check(node)) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(Integer.parseInt(node.get("value")));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param node
+     * @return the value of the node, if it is the literal true or false
+     */
+    protected static Optional<Boolean> getBoolean(JmmNode node) {
+        if (!Kind.IDENTIFIER.check(node)) {
+            return Optional.empty();
+        }
+
+        return switch (node.get("value")) {
+            case "true" -> Optional.of(true);
+            case "false" -> Optional.of(false);
+            default -> Optional.empty();
+        };
+    }
+}
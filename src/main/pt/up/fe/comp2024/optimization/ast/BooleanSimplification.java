@@ -0,0 +1,77 @@
+package pt.up.fe.comp2024.optimization.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.Kind;
+
+import java.util.Set;
+
+import static pt.up.fe.comp2024.ast.Kind.*;
+
+/**
+ * Simplifies negations and conjunctions with the literals true and false, and double negations.
+ * <p>
+ * An operand is only dropped when evaluating it has no effect, such as {@code x} in {@code x && false}.
+ */
+public class BooleanSimplification extends AstRewriter {
+
+    // Divisions may throw, and compound assignments change variables
+    private static final Set<String> PURE_OPERATORS = Set.of("+", "-", "*", "<", ">", "<=", ">=", "==", "!=");
+
+    @Override
+    protected void buildVisitor() {
+        addVisit(NEGATION, this::visitNegation);
+        addVisit(BINARY_EXPR_AND, this::visitBinaryExprAnd);
+    }
+
+    private Void visitNegation(JmmNode node, Void unused) {
+        var operand = node.getJmmChild(0);
+
+        var value = getBoolean(operand);
+        if (value.isPresent()) {
+            replace(node, newBoolean(!value.get(), node));
+        } else if (NEGATION.check(operand)) {
+            replace(node, operand.getJmmChild(0));
+        }
+
+        return null;
+    }
+
+    private Void visitBinaryExprAnd(JmmNode node, Void unused) {
+        var lhs = node.getJmmChild(0);
+        var rhs = node.getJmmChild(1);
+
+        // The right operand is not evaluated when the left one is false
+        var lhsValue = getBoolean(lhs);
+        if (lhsValue.isPresent()) {
+            replace(node, lhsValue.get() ? rhs : lhs);
+            return null;
+        }
+
+        var rhsValue = getBoolean(rhs);
+        if (rhsValue.isPresent()) {
+            if (rhsValue.get()) {
+                replace(node, lhs);
+            } else if (hasNoEffects(lhs)) {
+                replace(node, rhs);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param expr
+     * @return true if evaluating the expression cannot call methods, allocate, or throw
+     */
+    private static boolean hasNoEffects(JmmNode expr) {
+        var kind = Kind.fromNode(expr);
+
+        var safe = switch (kind) {
+            case INTEGER_LITERAL, IDENTIFIER, VAR_REF_EXPR, THIS, NEGATION, BINARY_EXPR_AND, PARENTESIS -> true;
+            case BINARY_EXPR -> PURE_OPERATORS.contains(expr.get("op"));
+            default -> false;
+        };
+
+        return safe && expr.getChildren().stream().allMatch(BooleanSimplification::hasNoEffects);
+    }
+}
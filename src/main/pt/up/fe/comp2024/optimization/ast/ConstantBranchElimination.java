@@ -0,0 +1,62 @@
+package pt.up.fe.comp2024.optimization.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.List;
+
+import static pt.up.fe.comp2024.ast.Kind.*;
+
+/**
+ * Replaces the if statements whose condition is a literal with the branch that runs, and removes the while loops
+ * whose condition is false.
+ * <p>
+ * The statements of the branch that runs take the place of the if statement, so they are lowered as the statements
+ * around it. When the statement is the body of another if or while statement, which has a fixed number of children,
+ * it is replaced by a block with those statements instead, which is empty for a removed loop.
+ */
+public class ConstantBranchElimination extends AstRewriter {
+
+    @Override
+    protected void buildVisitor() {
+        addVisit(IF_STM, this::visitIfStm);
+        addVisit(WHILE_STM, this::visitWhileStm);
+    }
+
+    private Void visitIfStm(JmmNode node, Void unused) {
+        var condition = getBoolean(node.getJmmChild(0));
+        if (condition.isEmpty()) {
+            return null;
+        }
+
+        var branch = node.getJmmChild(condition.get() ? 1 : 2);
+        replaceStatement(node, getStatements(branch));
+
+        return null;
+    }
+
+    private Void visitWhileStm(JmmNode node, Void unused) {
+        var condition = getBoolean(node.getJmmChild(0));
+        if (condition.isPresent() && !condition.get()) {
+            replaceStatement(node, List.of());
+        }
+
+        return null;
+    }
+
+    private void replaceStatement(JmmNode node, List<JmmNode> statements) {
+        var parent = node.getParent();
+        if (IF_STM.check(parent) || WHILE_STM.check(parent)) {
+            replace(node, newBlock(statements, node));
+        } else {
+            replace(node, statements);
+        }
+    }
+
+    private static List<JmmNode> getStatements(JmmNode statement) {
+        if (isBlock(statement)) {
+            return statement.getChildren();
+        }
+
+        return List.of(statement);
+    }
+}
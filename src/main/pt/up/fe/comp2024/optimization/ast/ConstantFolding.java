@@ -0,0 +1,81 @@
+package pt.up.fe.comp2024.optimization.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import static pt.up.fe.comp2024.ast.Kind.BINARY_EXPR;
+import static pt.up.fe.comp2024.ast.Kind.PARENTESIS;
+
+/**
+ * Computes the binary expressions whose operands are literals, such as {@code 2 * 3 + 1} or {@code 1 < 2}.
+ * <p>
+ * Integer operations wrap around as in Java. Divisions by zero are kept, since they throw when the program runs.
+ */
+public class ConstantFolding extends AstRewriter {
+
+    @Override
+    protected void buildVisitor() {
+        addVisit(BINARY_EXPR, this::visitBinaryExpr);
+        addVisit(PARENTESIS, this::visitParentesis);
+    }
+
+    private Void visitBinaryExpr(JmmNode node, Void unused) {
+        var lhs = node.getJmmChild(0);
+        var rhs = node.getJmmChild(1);
+        var op = node.get("op");
+
+        var lhsInteger = getInteger(lhs);
+        var rhsInteger = getInteger(rhs);
+        if (lhsInteger.isPresent() && rhsInteger.isPresent()) {
+            foldIntegers(node, op, lhsInteger.get(), rhsInteger.get());
+            return null;
+        }
+
+        var lhsBoolean = getBoolean(lhs);
+        var rhsBoolean = getBoolean(rhs);
+        if (lhsBoolean.isPresent() && rhsBoolean.isPresent()) {
+            switch (op) {
+                case "==" -> replace(node, newBoolean(lhsBoolean.get() == rhsBoolean.get(), node));
+                case "!=" -> replace(node, newBoolean(lhsBoolean.get() != rhsBoolean.get(), node));
+                default -> {
+                    // Not an operation over booleans
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private void foldIntegers(JmmNode node, String op, int lhs, int rhs) {
+        switch (op) {
+            case "+" -> replace(node, newInteger(lhs + rhs, node));
+            case "-" -> replace(node, newInteger(lhs - rhs, node));
+            case "*" -> replace(node, newInteger(lhs * rhs, node));
+            case "/" -> {
+                if (rhs != 0) {
+                    replace(node, newInteger(lhs / rhs, node));
+                }
+            }
+            case "<" -> replace(node, newBoolean(lhs < rhs, node));
+            case ">" -> replace(node, newBoolean(lhs > rhs, node));
+            case "<=" -> replace(node, newBoolean(lhs <= rhs, node));
+            case ">=" -> replace(node, newBoolean(lhs >= rhs, node));
+            case "==" -> replace(node, newBoolean(lhs == rhs, node));
+            case "!=" -> replace(node, newBoolean(lhs != rhs, node));
+            default -> {
+                // Compound assignments are not values that can be folded
+            }
+        }
+    }
+
+    private Void visitParentesis(JmmNode node, Void unused) {
+
+        // The tree already groups the operands, so the parentheses around a literal can go, which lets the
+        // expression around them be folded
+        var child = node.getJmmChild(0);
+        if (getInteger(child).isPresent() || getBoolean(child).isPresent()) {
+            replace(node, child);
+        }
+
+        return null;
+    }
+}
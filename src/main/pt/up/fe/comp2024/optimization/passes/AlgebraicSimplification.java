@@ -0,0 +1,227 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2024.optimization.InstructionUtils;
+import pt.up.fe.comp2024.optimization.OllirPass;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Simplifies the operations of assignments using algebraic identities, and replaces multiplications and divisions by
+ * powers of two with shifts.
+ * <p>
+ * Identities such as {@code x + 0}, {@code x * 1} or {@code x && true} become copies, and operations that always give
+ * the same value, such as {@code x * 0} or {@code x - x}, become literals, as do operations between two literals.
+ * Divisions by a power of two round towards zero, so the shift is preceded by the addition of {@code 2^k - 1} to
+ * negative numbers.
+ */
+public class AlgebraicSimplification implements OllirPass {
+
+    private static final String TEMP_PREFIX = "shift";
+
+    @Override
+    public boolean optimize(Method method) {
+        var instructions = method.getInstructions();
+        boolean changed = false;
+
+        for (int i = 0; i < instructions.size(); i++) {
+            if (!(instructions.get(i) instanceof AssignInstruction assign)
+                    || !(assign.getRhs() instanceof BinaryOpInstruction binaryOp)
+                    || binaryOp.getOperands().stream().anyMatch(ArrayOperand.class::isInstance)) {
+                continue;
+            }
+
+            var replacement = simplify(binaryOp, assign.getTypeOfAssign())
+                    .map(rhs -> List.<Instruction>of(new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(),
+                            rhs)))
+                    .or(() -> divideByShifts(method, assign, binaryOp))
+                    .orElse(null);
+            if (replacement == null) {
+                continue;
+            }
+
+            InstructionUtils.replaceInstruction(method, i, replacement.get(0));
+            instructions.addAll(i + 1, replacement.subList(1, replacement.size()));
+            i += replacement.size() - 1;
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return the instruction that computes the same value with less work, if any
+     */
+    private Optional<Instruction> simplify(BinaryOpInstruction binaryOp, Type type) {
+        var left = binaryOp.getLeftOperand();
+        var right = binaryOp.getRightOperand();
+
+        var leftValue = getIntValue(left);
+        var rightValue = getIntValue(right);
+
+        return switch (binaryOp.getOperation().getOpType()) {
+            case ADD -> {
+                if (leftValue.isPresent() && rightValue.isPresent()) {
+                    yield literal(leftValue.get() + rightValue.get(), type);
+                }
+                if (isValue(leftValue, 0)) {
+                    yield copy(right);
+                }
+                yield isValue(rightValue, 0) ? copy(left) : Optional.empty();
+            }
+            case SUB -> {
+                if (leftValue.isPresent() && rightValue.isPresent()) {
+                    yield literal(leftValue.get() - rightValue.get(), type);
+                }
+                if (isSameVariable(left, right)) {
+                    yield literal(0, type);
+                }
+                yield isValue(rightValue, 0) ? copy(left) : Optional.empty();
+            }
+            case MUL -> {
+                if (leftValue.isPresent() && rightValue.isPresent()) {
+                    yield literal(leftValue.get() * rightValue.get(), type);
+                }
+                if (isValue(leftValue, 0) || isValue(rightValue, 0)) {
+                    yield literal(0, type);
+                }
+                if (isValue(leftValue, 1)) {
+                    yield copy(right);
+                }
+                if (isValue(rightValue, 1)) {
+                    yield copy(left);
+                }
+
+                // Multiplication is commutative, so a power of two on the left also becomes a shift
+                if (rightValue.filter(AlgebraicSimplification::isPowerOfTwo).isPresent()) {
+                    yield shiftLeft(left, rightValue.get(), type);
+                }
+                yield leftValue.filter(AlgebraicSimplification::isPowerOfTwo).isPresent()
+                        ? shiftLeft(right, leftValue.get(), type) : Optional.empty();
+            }
+            case DIV -> {
+                // Dividing by zero must still throw
+                if (leftValue.isPresent() && rightValue.isPresent() && rightValue.get() != 0) {
+                    yield literal(leftValue.get() / rightValue.get(), type);
+                }
+                yield isValue(rightValue, 1) ? copy(left) : Optional.empty();
+            }
+            case ANDB -> {
+                if (isValue(leftValue, 0) || isValue(rightValue, 0)) {
+                    yield literal(0, type);
+                }
+                if (isValue(leftValue, 1)) {
+                    yield copy(right);
+                }
+                yield isValue(rightValue, 1) ? copy(left) : Optional.empty();
+            }
+            case ORB -> {
+                if (isValue(leftValue, 1) || isValue(rightValue, 1)) {
+                    yield literal(1, type);
+                }
+                if (isValue(leftValue, 0)) {
+                    yield copy(right);
+                }
+                yield isValue(rightValue, 0) ? copy(left) : Optional.empty();
+            }
+            default -> Optional.empty();
+        };
+    }
+
+    /**
+     * Replaces {@code x / 2^k} by {@code (x + ((x >> 31) >>> (32 - k))) >> k}, which rounds towards zero like the
+     * division. The intermediate values are kept in the destination, or in a new variable if the destination is the
+     * dividend.
+     *
+     * @return the instructions that replace the assignment, if the divisor is a power of two larger than one
+     */
+    private Optional<List<Instruction>> divideByShifts(Method method, AssignInstruction assign,
+                                                       BinaryOpInstruction binaryOp) {
+        var divisor = getIntValue(binaryOp.getRightOperand()).orElse(0);
+        if (binaryOp.getOperation().getOpType() != OperationType.DIV || divisor <= 1 || !isPowerOfTwo(divisor)
+                || InstructionUtils.getDef(assign).isEmpty()) {
+            return Optional.empty();
+        }
+
+        var type = assign.getTypeOfAssign();
+        var dest = (Operand) assign.getDest();
+        var dividend = binaryOp.getLeftOperand();
+
+        var tempName = isSameVariable(dest, dividend) ? InstructionUtils.addVariable(method, TEMP_PREFIX, type)
+                : dest.getName();
+        int shift = Integer.numberOfTrailingZeros(divisor);
+
+        var code = new ArrayList<Instruction>();
+        code.add(assignTemp(tempName, type, new BinaryOpInstruction(copyOf(dividend),
+                new Operation(OperationType.SHR, type), intLiteral(31, type))));
+        code.add(assignTemp(tempName, type, new BinaryOpInstruction(new Operand(tempName, type),
+                new Operation(OperationType.SHRR, type), intLiteral(32 - shift, type))));
+        code.add(assignTemp(tempName, type, new BinaryOpInstruction(copyOf(dividend),
+                new Operation(OperationType.ADD, type), new Operand(tempName, type))));
+        code.add(new AssignInstruction(dest, assign.getTypeOfAssign(), new BinaryOpInstruction(
+                new Operand(tempName, type), new Operation(OperationType.SHR, type), intLiteral(shift, type))));
+
+        return Optional.of(code);
+    }
+
+    private static Instruction assignTemp(String name, Type type, Instruction rhs) {
+        return new AssignInstruction(new Operand(name, type), type, rhs);
+    }
+
+    private static Optional<Instruction> shiftLeft(Element operand, int factor, Type type) {
+        return Optional.of(new BinaryOpInstruction(operand, new Operation(OperationType.SHL, type),
+                intLiteral(Integer.numberOfTrailingZeros(factor), type)));
+    }
+
+    private static Optional<Instruction> copy(Element operand) {
+        return Optional.of(new SingleOpInstruction(operand));
+    }
+
+    private static Element copyOf(Element operand) {
+        return InstructionUtils.copyElement(operand, name -> name);
+    }
+
+    private static Optional<Instruction> literal(int value, Type type) {
+        return Optional.of(new SingleOpInstruction(intLiteral(value, type)));
+    }
+
+    private static LiteralElement intLiteral(int value, Type type) {
+        return new LiteralElement(String.valueOf(value), type);
+    }
+
+    /**
+     * @return the value of an integer or boolean literal, booleans being 0 or 1
+     */
+    private static Optional<Integer> getIntValue(Element element) {
+        if (!(element instanceof LiteralElement literal)) {
+            return Optional.empty();
+        }
+
+        var elementType = literal.getType().getTypeOfElement();
+        if (elementType != ElementType.INT32 && elementType != ElementType.BOOLEAN) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(Integer.parseInt(literal.getLiteral()));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static boolean isValue(Optional<Integer> value, int expected) {
+        return value.isPresent() && value.get() == expected;
+    }
+
+    private static boolean isSameVariable(Element first, Element second) {
+        return first instanceof Operand firstOperand && second instanceof Operand secondOperand
+                && Objects.equals(firstOperand.getName(), secondOperand.getName());
+    }
+
+    private static boolean isPowerOfTwo(int value) {
+        return value > 0 && (value & (value - 1)) == 0;
+    }
+}
@@ -0,0 +1,190 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2024.optimization.InstructionUtils;
+import pt.up.fe.comp2024.optimization.OllirPass;
+import pt.up.fe.comp2024.optimization.analysis.ControlFlowGraph;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Removes copies between variables.
+ * <p>
+ * A temporary that is only read by a copy into another variable is coalesced with it, i.e. {@code t := a + b;
+ * x := t} becomes {@code x := a + b}. Other copies are propagated inside their basic block, so that the copy becomes
+ * dead and can be removed by {@link DeadCodeElimination}.
+ */
+public class CopyPropagation implements OllirPass {
+
+    @Override
+    public boolean optimize(Method method) {
+        boolean coalesced = coalesceTemporaries(method);
+        boolean propagated = propagateCopies(method);
+
+        return coalesced || propagated;
+    }
+
+    private boolean coalesceTemporaries(Method method) {
+        var cfg = ControlFlowGraph.build(method).orElse(null);
+        if (cfg == null) {
+            return false;
+        }
+
+        var instructions = method.getInstructions();
+        var useCounts = countUses(method);
+        var removed = new boolean[instructions.size()];
+        boolean changed = false;
+
+        for (int copyIndex = 0; copyIndex < instructions.size(); copyIndex++) {
+            // A copy that can be reached by a jump may see a value of the temporary from another block
+            if (cfg.isBlockStart(copyIndex)) {
+                continue;
+            }
+
+            var copy = instructions.get(copyIndex);
+            var temp = getCopySource(copy).orElse(null);
+            var dest = InstructionUtils.getDef(copy).orElse(null);
+            if (temp == null || dest == null || temp.getName().equals(dest)
+                    || useCounts.getOrDefault(temp.getName(), 0) != 1) {
+                continue;
+            }
+
+            int defIndex = findCoalescableDef(cfg, removed, copyIndex, temp.getName(), dest);
+            if (defIndex == -1) {
+                continue;
+            }
+
+            var def = (AssignInstruction) instructions.get(defIndex);
+            var copyAssign = (AssignInstruction) copy;
+            var merged = new AssignInstruction(copyAssign.getDest(), copyAssign.getTypeOfAssign(), def.getRhs());
+
+            InstructionUtils.replaceInstruction(method, defIndex, merged);
+            removed[copyIndex] = true;
+            changed = true;
+        }
+
+        if (changed) {
+            InstructionUtils.removeInstructions(method, removed);
+        }
+
+        return changed;
+    }
+
+    /**
+     * Looks for the assignment of the temporary in the same block as the copy. The destination of the copy must not
+     * be read or written between both instructions, since it will now be written at the assignment.
+     *
+     * @return the index of the assignment, or -1 if the copy cannot be coalesced
+     */
+    private int findCoalescableDef(ControlFlowGraph cfg, boolean[] removed, int copyIndex, String temp,
+                                   String dest) {
+        var instructions = cfg.getInstructions();
+
+        for (int i = copyIndex - 1; i >= 0; i--) {
+            // Copies already coalesced are only removed at the end
+            if (removed[i]) {
+                continue;
+            }
+
+            var inst = instructions.get(i);
+            var def = InstructionUtils.getDef(inst).orElse(null);
+
+            if (temp.equals(def)) {
+                return i;
+            }
+
+            if (dest.equals(def) || InstructionUtils.getUses(inst).contains(dest) || cfg.isBlockStart(i)) {
+                return -1;
+            }
+        }
+
+        return -1;
+    }
+
+    private boolean propagateCopies(Method method) {
+        var cfg = ControlFlowGraph.build(method).orElse(null);
+        if (cfg == null) {
+            return false;
+        }
+
+        var instructions = method.getInstructions();
+        Map<String, Operand> copies = new HashMap<>();
+        boolean changed = false;
+
+        for (int i = 0; i < instructions.size(); i++) {
+            var inst = instructions.get(i);
+
+            if (cfg.isBlockStart(i)) {
+                copies.clear();
+            }
+
+            for (var operand : InstructionUtils.getUseOperands(inst)) {
+                var source = copies.get(operand.getName());
+                if (source != null) {
+                    operand.setName(source.getName());
+                    changed = true;
+                }
+            }
+
+            var def = InstructionUtils.getDef(inst).orElse(null);
+            if (def == null) {
+                continue;
+            }
+
+            // The variable now has a new value, copies from or to it are no longer valid
+            copies.remove(def);
+            copies.values().removeIf(source -> source.getName().equals(def));
+
+            var source = getCopySource(inst).orElse(null);
+            var dest = ((AssignInstruction) inst).getDest();
+            if (source != null && !source.getName().equals(def) && !source.getName().equals("this")
+                    && isSameType(source.getType(), dest.getType())) {
+                copies.put(def, source);
+            }
+        }
+
+        return changed;
+    }
+
+    private Optional<Operand> getCopySource(Instruction inst) {
+        if (inst instanceof AssignInstruction assign
+                && assign.getRhs() instanceof SingleOpInstruction singleOp
+                && singleOp.getSingleOperand() instanceof Operand operand
+                && !(operand instanceof ArrayOperand)) {
+            return Optional.of(operand);
+        }
+
+        return Optional.empty();
+    }
+
+    private Map<String, Integer> countUses(Method method) {
+        var useCounts = new HashMap<String, Integer>();
+
+        for (var inst : method.getInstructions()) {
+            for (var operand : InstructionUtils.getUseOperands(inst)) {
+                useCounts.merge(operand.getName(), 1, Integer::sum);
+            }
+        }
+
+        return useCounts;
+    }
+
+    private boolean isSameType(Type type1, Type type2) {
+        if (type1.getTypeOfElement() != type2.getTypeOfElement()) {
+            return false;
+        }
+
+        if (type1 instanceof ClassType classType1 && type2 instanceof ClassType classType2) {
+            return Objects.equals(classType1.getName(), classType2.getName());
+        }
+
+        if (type1 instanceof ArrayType arrayType1 && type2 instanceof ArrayType arrayType2) {
+            return isSameType(arrayType1.getElementType(), arrayType2.getElementType());
+        }
+
+        return true;
+    }
+}
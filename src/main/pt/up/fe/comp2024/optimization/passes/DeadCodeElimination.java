@@ -0,0 +1,111 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.InstructionType;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp2024.optimization.InstructionUtils;
+import pt.up.fe.comp2024.optimization.OllirPass;
+import pt.up.fe.comp2024.optimization.analysis.ControlFlowGraph;
+import pt.up.fe.comp2024.optimization.analysis.Liveness;
+
+/**
+ * Removes instructions that cannot be reached from the start of the method, jumps to the next instruction and
+ * assignments to variables that are not live afterwards.
+ */
+public class DeadCodeElimination implements OllirPass {
+
+    @Override
+    public boolean optimize(Method method) {
+        boolean changed = false;
+
+        // Removing a dead store can make the stores of its operands dead
+        while (true) {
+            boolean removedUnreachable = removeUnreachable(method);
+            boolean removedDeadStores = removeDeadStores(method);
+
+            if (!removedUnreachable && !removedDeadStores) {
+                return changed;
+            }
+
+            changed = true;
+        }
+    }
+
+    private boolean removeUnreachable(Method method) {
+        var cfg = ControlFlowGraph.build(method).orElse(null);
+        if (cfg == null) {
+            return false;
+        }
+
+        var instructions = method.getInstructions();
+        var removed = new boolean[instructions.size()];
+        boolean changed = false;
+
+        for (var block : cfg.getBlocks()) {
+            if (cfg.isReachable(block)) {
+                continue;
+            }
+
+            for (int i = block.getStart(); i <= block.getEnd(); i++) {
+                removed[i] = true;
+            }
+            changed = true;
+        }
+
+        // A goto to the next instruction that is kept does nothing
+        for (var block : cfg.getBlocks()) {
+            int end = block.getEnd();
+            if (removed[end] || instructions.get(end).getInstType() != InstructionType.GOTO) {
+                continue;
+            }
+
+            int next = end + 1;
+            while (next < instructions.size() && removed[next]) {
+                next++;
+            }
+
+            if (next < instructions.size() && block.getSuccessors().get(0).getStart() == next) {
+                removed[end] = true;
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            InstructionUtils.removeInstructions(method, removed);
+        }
+
+        return changed;
+    }
+
+    private boolean removeDeadStores(Method method) {
+        var cfg = ControlFlowGraph.build(method).orElse(null);
+        if (cfg == null) {
+            return false;
+        }
+
+        var instructions = method.getInstructions();
+        var variables = cfg.getVariables();
+        var liveOut = new Liveness(cfg).getLiveOutPerInstruction();
+        var removed = new boolean[instructions.size()];
+        boolean changed = false;
+
+        // The last instruction is kept, so that labels always have an instruction to move to
+        for (int i = 0; i < instructions.size() - 1; i++) {
+            int def = variables.getDef(i);
+            if (def == -1 || variables.getName(def).equals("this") || liveOut[i].get(def)) {
+                continue;
+            }
+
+            if (InstructionUtils.isPure(((AssignInstruction) instructions.get(i)).getRhs())) {
+                removed[i] = true;
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            InstructionUtils.removeInstructions(method, removed);
+        }
+
+        return changed;
+    }
+}
@@ -0,0 +1,294 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2024.optimization.InstructionUtils;
+import pt.up.fe.comp2024.optimization.OllirPass;
+import pt.up.fe.comp2024.optimization.analysis.ControlFlowGraph;
+import pt.up.fe.comp2024.optimization.analysis.Dominators;
+import pt.up.fe.comp2024.optimization.analysis.Liveness;
+import pt.up.fe.comp2024.optimization.analysis.SsaForm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Removes computations of values that were already computed, by copying the variable that holds them instead.
+ * <p>
+ * Values are numbered over the SSA versions of the variables, so copies of a value get the same number, and each
+ * expression is identified by its operation and the numbers of its operands. The dominator tree is walked once,
+ * keeping the expressions computed in the blocks that dominate the current one, so an expression is reused in every
+ * block dominated by the first computation. Only variables assigned once in the method can hold a reused value, since
+ * other variables may have been changed on some path.
+ * <p>
+ * Reads of fields and array elements are numbered with the state of the memory, which changes with every store and
+ * call that may write to memory. Blocks with more than one predecessor start with a new state, unless the method
+ * never writes to memory.
+ */
+public class GlobalValueNumbering implements OllirPass {
+
+    /**
+     * The number of a value and the variable that holds it, or null if no variable can be reused.
+     */
+    private record Value(int number, Operand holder) {
+    }
+
+    private ControlFlowGraph cfg;
+    private SsaForm ssa;
+    private int[] defCounts;
+    private Map<String, Integer> versionNumbers;
+    private int nextNumber;
+
+    @Override
+    public boolean optimize(Method method) {
+        cfg = ControlFlowGraph.build(method).orElse(null);
+        if (cfg == null || cfg.getEntry() == null) {
+            return false;
+        }
+
+        var dominators = new Dominators(cfg);
+        ssa = new SsaForm(cfg, dominators, new Liveness(cfg));
+
+        var variables = cfg.getVariables();
+        defCounts = new int[variables.size()];
+        for (int i = 0; i < cfg.getInstructions().size(); i++) {
+            if (variables.getDef(i) != -1) {
+                defCounts[variables.getDef(i)]++;
+            }
+        }
+
+        versionNumbers = new HashMap<>();
+        nextNumber = 0;
+
+        return numberValues(method, dominators);
+    }
+
+    private boolean numberValues(Method method, Dominators dominators) {
+        var instructions = cfg.getInstructions();
+        var className = method.getOllirClass().getClassName();
+        boolean writesMemory = instructions.stream().anyMatch(inst -> writesMemory(inst, className));
+
+        var expressions = new HashMap<String, Value>();
+        var memoryAtEnd = new int[cfg.getBlocks().size()];
+        boolean changed = false;
+
+        // Walk the dominator tree without recursion. A negative entry means leaving the block, which removes the
+        // expressions it added, restoring the ones they hid, from the log
+        var stack = new ArrayList<Integer>();
+        var log = new ArrayList<Map.Entry<String, Value>>();
+        var logSizes = new int[cfg.getBlocks().size()];
+        stack.add(cfg.getEntry().getId());
+
+        while (!stack.isEmpty()) {
+            int top = stack.remove(stack.size() - 1);
+
+            if (top < 0) {
+                int id = -top - 1;
+                while (log.size() > logSizes[id]) {
+                    var saved = log.remove(log.size() - 1);
+                    if (saved.getValue() == null) {
+                        expressions.remove(saved.getKey());
+                    } else {
+                        expressions.put(saved.getKey(), saved.getValue());
+                    }
+                }
+                continue;
+            }
+
+            var block = cfg.getBlocks().get(top);
+            logSizes[top] = log.size();
+            stack.add(-top - 1);
+
+            for (var phi : ssa.getPhis(block)) {
+                versionNumbers.put(versionKey(phi.getVariable(), phi.getVersion()), nextNumber++);
+            }
+
+            // The memory is only known to be the same as in the immediate dominator if it is the only way in
+            int memory = 0;
+            if (writesMemory) {
+                var idom = dominators.getImmediateDominator(block);
+                boolean onlyFromIdom = idom != null && block.getPredecessors().size() == 1
+                        && block.getPredecessors().get(0) == idom;
+                memory = onlyFromIdom ? memoryAtEnd[idom.getId()] : nextNumber++;
+            }
+
+            for (int i = block.getStart(); i <= block.getEnd(); i++) {
+                var inst = instructions.get(i);
+
+                if (writesMemory && writesMemory(inst, className)) {
+                    memory = nextNumber++;
+                }
+
+                int def = cfg.getVariables().getDef(i);
+                if (def == -1) {
+                    continue;
+                }
+
+                var assign = (AssignInstruction) inst;
+                var dest = (Operand) assign.getDest();
+                var defKey = versionKey(def, ssa.getDefVersion(i));
+                boolean canHold = defCounts[def] == 1 && !dest.getName().equals("this");
+
+                var key = getExpressionKey(assign.getRhs(), memory).orElse(null);
+                if (key == null) {
+                    // Copies have the value of their operand, other instructions have a new value
+                    int number = getCopiedNumber(assign.getRhs()).orElseGet(() -> nextNumber++);
+                    versionNumbers.put(defKey, number);
+                    continue;
+                }
+
+                var value = expressions.get(key);
+                if (value != null && value.holder() != null) {
+                    var copy = new SingleOpInstruction(new Operand(value.holder().getName(), value.holder().getType()));
+                    InstructionUtils.replaceInstruction(method, i, new AssignInstruction(dest,
+                            assign.getTypeOfAssign(), copy));
+                    versionNumbers.put(defKey, value.number());
+                    changed = true;
+                    continue;
+                }
+
+                int number = value != null ? value.number() : nextNumber++;
+                versionNumbers.put(defKey, number);
+
+                if (value == null || canHold) {
+                    log.add(new HashMap.SimpleEntry<>(key, value));
+                    expressions.put(key, new Value(number, canHold ? dest : null));
+                }
+            }
+
+            memoryAtEnd[top] = memory;
+
+            for (var child : dominators.getChildren(block)) {
+                stack.add(child.getId());
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return a key that is the same for instructions that compute the same value, or empty if the instruction is a
+     * copy, or its value cannot be known to be the same as of other instructions
+     */
+    private Optional<String> getExpressionKey(Instruction rhs, int memory) {
+        if (rhs instanceof BinaryOpInstruction binaryOp) {
+            var opType = binaryOp.getOperation().getOpType();
+            var left = getNumber(binaryOp.getLeftOperand());
+            var right = getNumber(binaryOp.getRightOperand());
+            if (left.isEmpty() || right.isEmpty()) {
+                return Optional.empty();
+            }
+
+            // The operands of commutative operations are sorted, so that a + b and b + a are the same
+            int first = left.get();
+            int second = right.get();
+            if (isCommutative(opType) && first > second) {
+                first = right.get();
+                second = left.get();
+            }
+
+            return Optional.of(opType + " " + first + " " + second);
+        }
+
+        if (rhs instanceof UnaryOpInstruction unaryOp) {
+            return getNumber(unaryOp.getOperand())
+                    .map(operand -> unaryOp.getOperation().getOpType() + " " + operand);
+        }
+
+        if (rhs instanceof SingleOpInstruction singleOp && singleOp.getSingleOperand() instanceof ArrayOperand array) {
+            return getArrayKey(array).map(key -> key + " @" + memory);
+        }
+
+        if (rhs instanceof GetFieldInstruction getField) {
+            return getNumber(getField.getObject())
+                    .map(object -> "getfield " + object + " " + getField.getField().getName() + " @" + memory);
+        }
+
+        if (rhs instanceof CallInstruction call && call.getInvocationType() == CallType.arraylength) {
+            return getNumber(call.getCaller()).map(array -> "arraylength " + array);
+        }
+
+        return Optional.empty();
+    }
+
+    private Optional<String> getArrayKey(ArrayOperand array) {
+        var arrayNumber = getVariableNumber(array);
+        if (arrayNumber.isEmpty()) {
+            return Optional.empty();
+        }
+
+        var key = new StringBuilder("load ").append(arrayNumber.get());
+        for (var index : array.getIndexOperands()) {
+            var number = getNumber(index);
+            if (number.isEmpty()) {
+                return Optional.empty();
+            }
+            key.append(' ').append(number.get());
+        }
+
+        return Optional.of(key.toString());
+    }
+
+    /**
+     * @return the number of the value of a copy of a variable or a literal
+     */
+    private Optional<Integer> getCopiedNumber(Instruction rhs) {
+        if (rhs instanceof SingleOpInstruction singleOp && !(singleOp.getSingleOperand() instanceof ArrayOperand)) {
+            return getNumber(singleOp.getSingleOperand());
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * @return the number of the value of a literal or of the version of a variable that is read
+     */
+    private Optional<Integer> getNumber(Element element) {
+        if (element instanceof LiteralElement literal) {
+            var key = "literal " + literal.getLiteral() + " " + literal.getType().getTypeOfElement();
+            return Optional.of(versionNumbers.computeIfAbsent(key, k -> nextNumber++));
+        }
+
+        if (element instanceof Operand operand && !(operand instanceof ArrayOperand)) {
+            return getVariableNumber(operand);
+        }
+
+        return Optional.empty();
+    }
+
+    private Optional<Integer> getVariableNumber(Operand operand) {
+        int var = cfg.getVariables().getId(operand.getName());
+        int version = ssa.getUseVersion(operand);
+        if (var == -1 || version == -1) {
+            return Optional.empty();
+        }
+
+        // Versions that were not assigned in the blocks visited so far, such as parameters, get a new number
+        return Optional.of(versionNumbers.computeIfAbsent(versionKey(var, version), key -> nextNumber++));
+    }
+
+    private static String versionKey(int var, int version) {
+        return var + "#" + version;
+    }
+
+    private static boolean writesMemory(Instruction inst, String className) {
+        if (inst instanceof PutFieldInstruction) {
+            return true;
+        }
+
+        if (inst instanceof AssignInstruction assign && assign.getDest() instanceof ArrayOperand) {
+            return true;
+        }
+
+        return InstructionUtils.getCall(inst).filter(call -> InstructionUtils.mayWriteMemory(call, className))
+                .isPresent();
+    }
+
+    private static boolean isCommutative(OperationType opType) {
+        return switch (opType) {
+            case ADD, MUL, AND, OR, XOR, ANDB, ORB, EQ, NEQ -> true;
+            default -> false;
+        };
+    }
+}
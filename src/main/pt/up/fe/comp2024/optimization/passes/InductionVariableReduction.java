@@ -0,0 +1,255 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2024.optimization.InstructionUtils;
+import pt.up.fe.comp2024.optimization.OllirPass;
+import pt.up.fe.comp2024.optimization.analysis.ControlFlowGraph;
+import pt.up.fe.comp2024.optimization.analysis.Dominators;
+import pt.up.fe.comp2024.optimization.analysis.Liveness;
+import pt.up.fe.comp2024.optimization.analysis.NaturalLoops;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Replaces multiplications of induction variables by constants with additions.
+ * <p>
+ * An induction variable is only assigned once in the loop, by adding or subtracting a constant to itself, as in
+ * {@code i := i + c}. For each product {@code j := i * k} in the loop, a new variable {@code s} is set to {@code i * k}
+ * in the {@link LoopPreheader} and incremented by {@code c * k} right after each increment of {@code i}, so it always
+ * holds the product, and the multiplication becomes the copy {@code j := s}.
+ */
+public class InductionVariableReduction implements OllirPass {
+
+    private static final String VARIABLE_PREFIX = "stride";
+
+    /**
+     * An induction variable and the constant it is incremented by.
+     */
+    private record InductionVariable(Operand variable, int step, int defIndex) {
+    }
+
+    /**
+     * A multiplication of an induction variable by a constant.
+     */
+    private record Product(Operand variable, int factor) {
+    }
+
+    @Override
+    public boolean optimize(Method method) {
+        boolean changed = false;
+
+        // The analyses are computed again after each loop is changed, inner loops are visited first
+        while (reduceSomeLoop(method)) {
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    private boolean reduceSomeLoop(Method method) {
+        var cfg = ControlFlowGraph.build(method).orElse(null);
+        if (cfg == null || cfg.getEntry() == null) {
+            return false;
+        }
+
+        var loops = new NaturalLoops(cfg, new Dominators(cfg));
+        if (loops.getLoops().isEmpty()) {
+            return false;
+        }
+
+        var liveness = new Liveness(cfg);
+
+        for (var loop : loops.getLoops()) {
+            var preheader = LoopPreheader.find(cfg, loop).orElse(null);
+            if (preheader == null) {
+                continue;
+            }
+
+            var inductionVariables = findInductionVariables(cfg, liveness, loop);
+            if (!inductionVariables.isEmpty() && reduce(method, cfg, loop, inductionVariables, preheader)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the induction variables of the loop, by name. Only variables with a value when the loop is entered are
+     * considered, since the preheader reads them
+     */
+    private Map<String, InductionVariable> findInductionVariables(ControlFlowGraph cfg, Liveness liveness,
+                                                                  NaturalLoops.Loop loop) {
+        var instructions = cfg.getInstructions();
+        var variables = cfg.getVariables();
+        var defCounts = new int[variables.size()];
+
+        for (var block : loop.getBlocks()) {
+            for (int i = block.getStart(); i <= block.getEnd(); i++) {
+                if (variables.getDef(i) != -1) {
+                    defCounts[variables.getDef(i)]++;
+                }
+            }
+        }
+
+        var headerLiveIn = liveness.getIn(loop.getHeader());
+        var inductionVariables = new HashMap<String, InductionVariable>();
+
+        for (var block : loop.getBlocks()) {
+            for (int i = block.getStart(); i <= block.getEnd(); i++) {
+                int def = variables.getDef(i);
+                if (def == -1 || defCounts[def] != 1 || !headerLiveIn.get(def)) {
+                    continue;
+                }
+
+                int index = i;
+                var assign = (AssignInstruction) instructions.get(i);
+                getStep(assign).ifPresent(step -> inductionVariables.put(variables.getName(def),
+                        new InductionVariable((Operand) assign.getDest(), step, index)));
+            }
+        }
+
+        return inductionVariables;
+    }
+
+    /**
+     * @return the constant added to the variable, if the assignment is {@code i := i + c}, {@code i := c + i} or
+     * {@code i := i - c}
+     */
+    private Optional<Integer> getStep(AssignInstruction assign) {
+        if (!(assign.getRhs() instanceof BinaryOpInstruction binaryOp)
+                || assign.getDest().getType().getTypeOfElement() != ElementType.INT32) {
+            return Optional.empty();
+        }
+
+        var name = ((Operand) assign.getDest()).getName();
+        var left = binaryOp.getLeftOperand();
+        var right = binaryOp.getRightOperand();
+
+        return switch (binaryOp.getOperation().getOpType()) {
+            case ADD -> {
+                if (isVariable(left, name)) {
+                    yield getIntValue(right);
+                }
+                yield isVariable(right, name) ? getIntValue(left) : Optional.empty();
+            }
+            case SUB -> isVariable(left, name) ? getIntValue(right).map(value -> -value) : Optional.empty();
+            default -> Optional.empty();
+        };
+    }
+
+    private boolean reduce(Method method, ControlFlowGraph cfg, NaturalLoops.Loop loop,
+                           Map<String, InductionVariable> inductionVariables, LoopPreheader preheader) {
+        var instructions = cfg.getInstructions();
+
+        // The products of each induction variable by each factor share the same new variable
+        var strides = new HashMap<String, Map<Integer, String>>();
+        var updates = new HashMap<Integer, List<Instruction>>();
+        var initializations = new ArrayList<Instruction>();
+
+        for (var block : loop.getBlocks()) {
+            for (int i = block.getStart(); i <= block.getEnd(); i++) {
+                if (!(instructions.get(i) instanceof AssignInstruction assign)
+                        || InstructionUtils.getDef(assign).isEmpty()
+                        || !(assign.getRhs() instanceof BinaryOpInstruction binaryOp)
+                        || binaryOp.getOperation().getOpType() != OperationType.MUL) {
+                    continue;
+                }
+
+                var product = getProduct(binaryOp, inductionVariables).orElse(null);
+                if (product == null) {
+                    continue;
+                }
+
+                var inductionVariable = inductionVariables.get(product.variable().getName());
+                var type = assign.getTypeOfAssign();
+                var stride = strides.computeIfAbsent(product.variable().getName(), key -> new HashMap<>())
+                        .computeIfAbsent(product.factor(), factor -> {
+                            var name = InstructionUtils.addVariable(method, VARIABLE_PREFIX, type);
+                            initializations.add(new AssignInstruction(new Operand(name, type), type,
+                                    new BinaryOpInstruction(copyOf(inductionVariable.variable()),
+                                            new Operation(OperationType.MUL, type), intLiteral(factor, type))));
+                            updates.computeIfAbsent(inductionVariable.defIndex(), key -> new ArrayList<>())
+                                    .add(new AssignInstruction(new Operand(name, type), type,
+                                            new BinaryOpInstruction(new Operand(name, type),
+                                                    new Operation(OperationType.ADD, type),
+                                                    intLiteral(inductionVariable.step() * factor, type))));
+                            return name;
+                        });
+
+                InstructionUtils.replaceInstruction(method, i, new AssignInstruction(assign.getDest(), type,
+                        new SingleOpInstruction(new Operand(stride, type))));
+            }
+        }
+
+        if (initializations.isEmpty()) {
+            return false;
+        }
+
+        // From the last index, so that the indexes of the earlier updates are not moved
+        var defIndexes = new ArrayList<>(updates.keySet());
+        defIndexes.sort(null);
+        for (int j = defIndexes.size() - 1; j >= 0; j--) {
+            int defIndex = defIndexes.get(j);
+            instructions.addAll(defIndex + 1, updates.get(defIndex));
+        }
+
+        preheader.insert(method, initializations);
+
+        return true;
+    }
+
+    /**
+     * @return the induction variable and the constant of a multiplication between them, in any order
+     */
+    private Optional<Product> getProduct(BinaryOpInstruction binaryOp,
+                                         Map<String, InductionVariable> inductionVariables) {
+        var left = binaryOp.getLeftOperand();
+        var right = binaryOp.getRightOperand();
+
+        if (isInductionVariable(left, inductionVariables)) {
+            return getIntValue(right).map(factor -> new Product((Operand) left, factor));
+        }
+
+        if (isInductionVariable(right, inductionVariables)) {
+            return getIntValue(left).map(factor -> new Product((Operand) right, factor));
+        }
+
+        return Optional.empty();
+    }
+
+    private boolean isInductionVariable(Element element, Map<String, InductionVariable> inductionVariables) {
+        return element instanceof Operand operand && !(operand instanceof ArrayOperand)
+                && inductionVariables.containsKey(operand.getName());
+    }
+
+    private boolean isVariable(Element element, String name) {
+        return element instanceof Operand operand && !(operand instanceof ArrayOperand)
+                && operand.getName().equals(name);
+    }
+
+    private Optional<Integer> getIntValue(Element element) {
+        if (!(element instanceof LiteralElement literal)
+                || literal.getType().getTypeOfElement() != ElementType.INT32) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(Integer.parseInt(literal.getLiteral()));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Element copyOf(Element element) {
+        return InstructionUtils.copyElement(element, name -> name);
+    }
+
+    private static LiteralElement intLiteral(int value, Type type) {
+        return new LiteralElement(String.valueOf(value), type);
+    }
+}
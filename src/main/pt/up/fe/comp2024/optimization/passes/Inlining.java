@@ -0,0 +1,272 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.optimization.InstructionUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Replaces calls to small methods of the class by the body of the method.
+ * <p>
+ * Only methods without branches are inlined, i.e. their only return is their last instruction, and only if they
+ * cannot call themselves, directly or through other methods of the class. The parameters and variables of the
+ * inlined method are renamed so that they do not clash with the ones of the caller, and the parameters are assigned
+ * the arguments of the call, which {@link CopyPropagation} usually removes afterwards.
+ * <p>
+ * A virtual call is only inlined when its receiver is {@code this}, which is never null. As in the rest of the
+ * compiler, the class is assumed to be the only one with the methods it declares, i.e. subclasses compiled
+ * separately do not override them.
+ */
+public class Inlining {
+
+    /**
+     * Methods with more instructions than this, counting the return, are not inlined.
+     */
+    public static final int MAX_INLINED_SIZE = 8;
+
+    /**
+     * Methods are not made longer than this number of instructions by inlining.
+     */
+    public static final int MAX_METHOD_SIZE = 500;
+
+    private final List<Report> reports;
+    private int numInlined;
+
+    public Inlining() {
+        this.reports = new ArrayList<>();
+        this.numInlined = 0;
+    }
+
+    /**
+     * Inlines calls in every method of the class.
+     *
+     * @param classUnit
+     * @return true if some call was inlined
+     */
+    public boolean optimize(ClassUnit classUnit) {
+        var methods = new HashMap<String, Method>();
+        for (var method : classUnit.getMethods()) {
+            if (!method.isConstructMethod()) {
+                methods.put(method.getMethodName(), method);
+            }
+        }
+
+        var recursive = findRecursiveMethods(classUnit, methods);
+        boolean changed = false;
+
+        for (var method : classUnit.getMethods()) {
+            changed |= inlineCalls(classUnit, method, methods, recursive);
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return a log report for each call that was inlined
+     */
+    public List<Report> getReports() {
+        return Collections.unmodifiableList(reports);
+    }
+
+    private boolean inlineCalls(ClassUnit classUnit, Method caller, Map<String, Method> methods,
+                                Set<String> recursive) {
+        var instructions = caller.getInstructions();
+        boolean changed = false;
+
+        for (int i = 0; i < instructions.size(); i++) {
+            var inst = instructions.get(i);
+            var call = InstructionUtils.getCall(inst).orElse(null);
+            if (call == null) {
+                continue;
+            }
+
+            var callee = getCallee(classUnit, call, methods).orElse(null);
+            if (callee == null || callee == caller || recursive.contains(callee.getMethodName())
+                    || !isInlinable(callee)
+                    || instructions.size() - 1 + callee.getInstructions().size() + callee.getParams().size()
+                    > MAX_METHOD_SIZE) {
+                continue;
+            }
+
+            var body = inline(caller, callee, call, inst);
+            if (body.isEmpty()) {
+                continue;
+            }
+
+            // The labels of the call go to the first instruction that replaces it
+            InstructionUtils.replaceInstruction(caller, i, body.get(0));
+            instructions.addAll(i + 1, body.subList(1, body.size()));
+            i += body.size() - 1;
+
+            reports.add(Report.newLog(Stage.OPTIMIZATION, -1, -1,
+                    "Inlined call to '" + callee.getMethodName() + "' in method '" + caller.getMethodName() + "'",
+                    null));
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return the method of the class that is called, if it can be known when compiling
+     */
+    private Optional<Method> getCallee(ClassUnit classUnit, CallInstruction call, Map<String, Method> methods) {
+        if (!(call.getCaller() instanceof Operand caller)
+                || !(call.getMethodNameTry().orElse(null) instanceof LiteralElement methodName)) {
+            return Optional.empty();
+        }
+
+        var callee = methods.get(methodName.getLiteral().replace("\"", ""));
+        if (callee == null || callee.isVarargs() || callee.getParams().size() != call.getArguments().size()) {
+            return Optional.empty();
+        }
+
+        boolean isThisCall = call.getInvocationType() == CallType.invokevirtual && caller.getName().equals("this")
+                && !callee.isStaticMethod();
+        boolean isStaticCall = call.getInvocationType() == CallType.invokestatic
+                && caller.getName().equals(classUnit.getClassName()) && callee.isStaticMethod();
+
+        return isThisCall || isStaticCall ? Optional.of(callee) : Optional.empty();
+    }
+
+    private boolean isInlinable(Method callee) {
+        var instructions = callee.getInstructions();
+        if (instructions.isEmpty() || instructions.size() > MAX_INLINED_SIZE || !callee.getLabels().isEmpty()) {
+            return false;
+        }
+
+        for (int i = 0; i < instructions.size(); i++) {
+            boolean isReturn = instructions.get(i).getInstType() == InstructionType.RETURN;
+            if (isReturn != (i == instructions.size() - 1)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Builds the instructions that replace the call: the assignment of the arguments to the parameters, the body of
+     * the callee and the assignment of the returned value.
+     *
+     * @return the instructions, or empty if some instruction of the callee cannot be copied
+     */
+    private List<Instruction> inline(Method caller, Method callee, CallInstruction call, Instruction callInst) {
+        var names = renameVariables(caller, callee);
+        var body = new ArrayList<Instruction>();
+
+        for (int i = 0; i < callee.getParams().size(); i++) {
+            var param = (Operand) callee.getParams().get(i);
+            var argument = InstructionUtils.copyElement(call.getArguments().get(i), name -> name);
+            var paramCopy = new Operand(names.get(param.getName()), param.getType());
+            body.add(new AssignInstruction(paramCopy, param.getType(), new SingleOpInstruction(argument)));
+        }
+
+        var instructions = callee.getInstructions();
+        for (int i = 0; i < instructions.size() - 1; i++) {
+            var copy = InstructionUtils.copyInstruction(instructions.get(i),
+                    name -> names.getOrDefault(name, name));
+            if (copy.isEmpty()) {
+                return List.of();
+            }
+            body.add(copy.get());
+        }
+
+        var ret = (ReturnInstruction) instructions.get(instructions.size() - 1);
+        if (callInst instanceof AssignInstruction assign && ret.hasReturnValue()) {
+            var value = InstructionUtils.copyElement(ret.getOperand(), name -> names.getOrDefault(name, name));
+            body.add(new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(), new SingleOpInstruction(value)));
+        }
+
+        // A call to a method that does nothing can leave no instruction, but the call may have labels
+        if (body.isEmpty()) {
+            return List.of();
+        }
+
+        addVariables(caller, callee, names);
+
+        return body;
+    }
+
+    /**
+     * Gives a new name, not used in the caller, to each parameter and local variable of the callee.
+     */
+    private Map<String, String> renameVariables(Method caller, Method callee) {
+        var names = new HashMap<String, String>();
+        var callerNames = new HashSet<>(caller.getVarTable().keySet());
+
+        for (var variable : callee.getVarTable().entrySet()) {
+            if (variable.getKey().equals("this") || variable.getValue().getScope() == VarScope.FIELD) {
+                continue;
+            }
+
+            String newName;
+            do {
+                newName = variable.getKey() + "_inline" + numInlined++;
+            } while (callerNames.contains(newName));
+
+            names.put(variable.getKey(), newName);
+            callerNames.add(newName);
+        }
+
+        return names;
+    }
+
+    private void addVariables(Method caller, Method callee, Map<String, String> names) {
+        var varTable = caller.getVarTable();
+        int nextReg = 0;
+        for (var descriptor : varTable.values()) {
+            nextReg = Math.max(nextReg, descriptor.getVirtualReg() + 1);
+        }
+
+        for (var variable : callee.getVarTable().entrySet()) {
+            var newName = names.get(variable.getKey());
+            if (newName != null) {
+                varTable.put(newName, new Descriptor(VarScope.LOCAL, nextReg++, variable.getValue().getVarType()));
+            }
+        }
+    }
+
+    /**
+     * @return the names of the methods that can call themselves, directly or through other methods of the class
+     */
+    private Set<String> findRecursiveMethods(ClassUnit classUnit, Map<String, Method> methods) {
+        var callees = new HashMap<String, Set<String>>();
+        for (var method : methods.values()) {
+            var names = new HashSet<String>();
+            for (var inst : method.getInstructions()) {
+                InstructionUtils.getCall(inst).flatMap(call -> getCallee(classUnit, call, methods))
+                        .ifPresent(callee -> names.add(callee.getMethodName()));
+            }
+            callees.put(method.getMethodName(), names);
+        }
+
+        var recursive = new HashSet<String>();
+        for (var method : methods.keySet()) {
+            // Depth-first search from the methods it calls
+            var visited = new HashSet<String>();
+            var pending = new ArrayList<>(callees.get(method));
+            while (!pending.isEmpty()) {
+                var current = pending.remove(pending.size() - 1);
+                if (current.equals(method)) {
+                    recursive.add(method);
+                    break;
+                }
+                if (visited.add(current)) {
+                    pending.addAll(callees.get(current));
+                }
+            }
+        }
+
+        return recursive;
+    }
+}
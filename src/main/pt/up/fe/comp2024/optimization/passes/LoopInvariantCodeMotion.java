@@ -0,0 +1,251 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2024.optimization.InstructionUtils;
+import pt.up.fe.comp2024.optimization.OllirPass;
+import pt.up.fe.comp2024.optimization.analysis.BasicBlock;
+import pt.up.fe.comp2024.optimization.analysis.ControlFlowGraph;
+import pt.up.fe.comp2024.optimization.analysis.Dominators;
+import pt.up.fe.comp2024.optimization.analysis.Liveness;
+import pt.up.fe.comp2024.optimization.analysis.NaturalLoops;
+import pt.up.fe.comp2024.optimization.analysis.ReachingDefinitions;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Moves assignments whose value is the same in every iteration of a loop to its {@link LoopPreheader}, so that they
+ * are computed once before the loop.
+ * <p>
+ * An assignment is invariant if its operands are only written outside of the loop, or by a single invariant
+ * assignment of the loop. Besides pure expressions, the length of an array and the fields of {@code this} that the
+ * loop does not write are also hoisted. Instructions that can throw, the length of an array or a division, are only
+ * hoisted from the header, before any instruction with side effects, since the header always runs when the loop is
+ * entered.
+ * <p>
+ * The assigned variable must have no other assignment in the loop and must not be read in the loop before the
+ * assignment. Since the hoisted assignment runs even when the loop exits before reaching it, the variable must also
+ * not be read after the loop, unless the assignment runs in every iteration that exits.
+ */
+public class LoopInvariantCodeMotion implements OllirPass {
+
+    @Override
+    public boolean optimize(Method method) {
+        boolean changed = false;
+
+        // The analyses are computed again after each loop is changed, inner loops are visited first
+        while (hoistFromSomeLoop(method)) {
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    private boolean hoistFromSomeLoop(Method method) {
+        var cfg = ControlFlowGraph.build(method).orElse(null);
+        if (cfg == null || cfg.getEntry() == null) {
+            return false;
+        }
+
+        var dominators = new Dominators(cfg);
+        var loops = new NaturalLoops(cfg, dominators);
+        if (loops.getLoops().isEmpty()) {
+            return false;
+        }
+
+        var liveness = new Liveness(cfg);
+        var reaching = new ReachingDefinitions(cfg);
+
+        for (var loop : loops.getLoops()) {
+            var preheader = LoopPreheader.find(cfg, loop).orElse(null);
+            if (preheader == null) {
+                continue;
+            }
+
+            var invariants = findInvariants(cfg, dominators, liveness, reaching, loop);
+            if (!invariants.isEmpty()) {
+                hoist(method, invariants, preheader);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the indexes of the invariant assignments that can be hoisted, in an order where each one comes after
+     * the assignments of the variables it reads
+     */
+    private List<Integer> findInvariants(ControlFlowGraph cfg, Dominators dominators, Liveness liveness,
+                                         ReachingDefinitions reaching, NaturalLoops.Loop loop) {
+        var instructions = cfg.getInstructions();
+        var variables = cfg.getVariables();
+        var blocks = loop.getBlocks();
+
+        var defCounts = new int[variables.size()];
+        var className = cfg.getMethod().getOllirClass().getClassName();
+        var writtenFields = new HashSet<String>();
+        boolean writesAnyField = false;
+
+        for (var block : blocks) {
+            for (int i = block.getStart(); i <= block.getEnd(); i++) {
+                var inst = instructions.get(i);
+                if (variables.getDef(i) != -1) {
+                    defCounts[variables.getDef(i)]++;
+                }
+
+                if (inst instanceof PutFieldInstruction putField) {
+                    writtenFields.add(putField.getField().getName());
+                }
+                writesAnyField |= InstructionUtils.getCall(inst)
+                        .filter(call -> InstructionUtils.mayWriteMemory(call, className)).isPresent();
+            }
+        }
+
+        var headerLiveIn = liveness.getIn(loop.getHeader());
+        var exits = loop.getExits();
+        var exitTargets = loop.getExitTargets();
+
+        var marked = new boolean[instructions.size()];
+        var order = new ArrayList<Integer>();
+
+        // Marking an assignment can make the ones that read its variable invariant
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (var block : blocks) {
+                for (int i = block.getStart(); i <= block.getEnd(); i++) {
+                    if (marked[i]) {
+                        continue;
+                    }
+
+                    var inst = instructions.get(i);
+                    int def = variables.getDef(i);
+                    if (def == -1 || variables.getName(def).equals("this") || defCounts[def] != 1
+                            || headerLiveIn.get(def)) {
+                        continue;
+                    }
+
+                    var rhs = ((AssignInstruction) inst).getRhs();
+                    if (!isHoistableExpression(rhs, writesAnyField, writtenFields)
+                            || !areOperandsInvariant(cfg, reaching, loop, marked, i)) {
+                        continue;
+                    }
+
+                    if (mayThrow(rhs) ? !isSafeToThrowEarly(cfg, loop, marked, i)
+                            : !isSafeToRunAlways(liveness, dominators, exits, exitTargets, block, def)) {
+                        continue;
+                    }
+
+                    marked[i] = true;
+                    order.add(i);
+                    changed = true;
+                }
+            }
+        }
+
+        return order;
+    }
+
+    private boolean isHoistableExpression(Instruction rhs, boolean writesAnyField, Set<String> writtenFields) {
+        if (rhs instanceof GetFieldInstruction getField) {
+            return getField.getObject().getName().equals("this") && !writesAnyField
+                    && !writtenFields.contains(getField.getField().getName());
+        }
+
+        if (rhs instanceof CallInstruction call) {
+            return isArrayLength(call);
+        }
+
+        return InstructionUtils.isPure(rhs) || isDivision(rhs);
+    }
+
+    /**
+     * Each variable read by the instruction must only have values from outside of the loop, or the value of a
+     * single assignment that was already marked as invariant.
+     */
+    private boolean areOperandsInvariant(ControlFlowGraph cfg, ReachingDefinitions reaching,
+                                         NaturalLoops.Loop loop, boolean[] marked, int instIndex) {
+        for (int use : cfg.getVariables().getUses(instIndex)) {
+            var defs = reaching.getReachingIn(instIndex, use);
+
+            boolean hasLoopDef = false;
+            for (int def = defs.nextSetBit(0); def != -1; def = defs.nextSetBit(def + 1)) {
+                hasLoopDef |= loop.containsInstruction(def);
+            }
+
+            if (hasLoopDef && (defs.cardinality() != 1 || !marked[defs.nextSetBit(0)])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * An instruction that can throw must already run before anything else is done in the loop, so it must be in the
+     * header and only come after pure assignments or other hoisted instructions.
+     */
+    private boolean isSafeToThrowEarly(ControlFlowGraph cfg, NaturalLoops.Loop loop, boolean[] marked,
+                                       int instIndex) {
+        var header = loop.getHeader();
+        if (cfg.getBlockOf(instIndex) != header) {
+            return false;
+        }
+
+        for (int i = header.getStart(); i < instIndex; i++) {
+            if (marked[i]) {
+                continue;
+            }
+
+            if (!(cfg.getInstructions().get(i) instanceof AssignInstruction assign)
+                    || !InstructionUtils.isPure(assign.getRhs())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * The hoisted assignment runs even if the loop exits before reaching it, which only matters if the variable is
+     * read after the loop.
+     */
+    private boolean isSafeToRunAlways(Liveness liveness, Dominators dominators, List<BasicBlock> exits,
+                                      List<BasicBlock> exitTargets, BasicBlock block, int var) {
+        if (exits.stream().allMatch(exit -> dominators.dominates(block, exit))) {
+            return true;
+        }
+
+        return exitTargets.stream().noneMatch(target -> liveness.getIn(target).get(var));
+    }
+
+    private void hoist(Method method, List<Integer> invariants, LoopPreheader preheader) {
+        var instructions = method.getInstructions();
+        var removed = new boolean[instructions.size()];
+        var hoisted = new ArrayList<Instruction>(invariants.size());
+        for (int index : invariants) {
+            removed[index] = true;
+            hoisted.add(instructions.get(index));
+        }
+
+        InstructionUtils.removeInstructions(method, removed);
+        preheader.insert(method, hoisted);
+    }
+
+    private boolean isArrayLength(CallInstruction call) {
+        return call.getInvocationType() == CallType.arraylength;
+    }
+
+    private boolean isDivision(Instruction rhs) {
+        return rhs instanceof BinaryOpInstruction binaryOp && binaryOp.getOperation().getOpType() == OperationType.DIV
+                && binaryOp.getOperands().stream().noneMatch(ArrayOperand.class::isInstance);
+    }
+
+    private boolean mayThrow(Instruction rhs) {
+        return rhs instanceof CallInstruction || isDivision(rhs);
+    }
+}
@@ -0,0 +1,126 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2024.optimization.InstructionUtils;
+import pt.up.fe.comp2024.optimization.analysis.ControlFlowGraph;
+import pt.up.fe.comp2024.optimization.analysis.NaturalLoops;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The place where instructions that must run once before a loop, and not in its iterations, are inserted.
+ * <p>
+ * When the loop is only entered from a block that always goes to the header, as in loops that test their condition
+ * at the bottom, the instructions are placed at the end of that block. Otherwise they are placed just before the
+ * header, and the jumps from outside of the loop to the header are redirected to them.
+ */
+class LoopPreheader {
+
+    private static final String LABEL_PREFIX = "preheader";
+
+    private final boolean beforeHeader;
+    private final Instruction place;
+    private final List<Instruction> following;
+    private final List<Instruction> entryJumps;
+
+    private LoopPreheader(boolean beforeHeader, Instruction place, List<Instruction> following,
+                          List<Instruction> entryJumps) {
+        this.beforeHeader = beforeHeader;
+        this.place = place;
+        this.following = following;
+        this.entryJumps = entryJumps;
+    }
+
+    /**
+     * @param cfg
+     * @param loop
+     * @return the preheader of the loop, or empty if instructions placed before the header would also run in the
+     * iterations of the loop, i.e. the instruction before the header falls through to it from inside the loop
+     */
+    static Optional<LoopPreheader> find(ControlFlowGraph cfg, NaturalLoops.Loop loop) {
+        var instructions = cfg.getInstructions();
+        var header = loop.getHeader();
+        var headerInst = instructions.get(header.getStart());
+
+        var entries = loop.getEntries().stream().filter(cfg::isReachable).toList();
+        if (entries.size() == 1 && entries.get(0).getSuccessors().size() == 1) {
+            var last = instructions.get(entries.get(0).getEnd());
+            if (last.getInstType() == InstructionType.GOTO) {
+                return Optional.of(new LoopPreheader(false, last, List.of(), List.of()));
+            }
+        }
+
+        if (header.getStart() > 0) {
+            var previous = cfg.getBlockOf(header.getStart() - 1);
+            boolean fallsThrough = previous.getSuccessors().contains(header)
+                    && instructions.get(header.getStart() - 1).getInstType() != InstructionType.GOTO;
+            if (loop.contains(previous) && fallsThrough) {
+                return Optional.empty();
+            }
+        }
+
+        var entryJumps = new ArrayList<Instruction>();
+        for (var entry : entries) {
+            var jump = instructions.get(entry.getEnd());
+            var label = InstructionUtils.getJumpLabel(jump).orElse(null);
+            if (label != null && cfg.getMethod().getLabels().get(label) == headerInst) {
+                entryJumps.add(jump);
+            }
+        }
+
+        // The header may lose its first instructions before the preheader is filled
+        var following = new ArrayList<>(instructions.subList(header.getStart(), instructions.size()));
+
+        return Optional.of(new LoopPreheader(true, headerInst, following, entryJumps));
+    }
+
+    /**
+     * Adds instructions to the preheader. Instructions of the loop may have been removed since the preheader was
+     * found, as long as the jumps that enter the loop were kept.
+     *
+     * @param method
+     * @param newInstructions
+     */
+    void insert(Method method, List<Instruction> newInstructions) {
+        if (newInstructions.isEmpty()) {
+            return;
+        }
+
+        var instructions = method.getInstructions();
+        var indexes = InstructionUtils.getIndexes(method);
+
+        if (!beforeHeader) {
+            // Jumps to the goto that enters the loop must also run the new instructions
+            for (var label : method.getLabels().entrySet()) {
+                if (label.getValue() == place) {
+                    label.setValue(newInstructions.get(0));
+                }
+            }
+
+            instructions.addAll(indexes.get(place), newInstructions);
+            return;
+        }
+
+        int index = following.stream()
+                .filter(indexes::containsKey)
+                .findFirst()
+                .map(indexes::get)
+                .orElse(instructions.size());
+        instructions.addAll(index, newInstructions);
+
+        if (entryJumps.isEmpty()) {
+            return;
+        }
+
+        var label = InstructionUtils.addLabel(method, LABEL_PREFIX, newInstructions.get(0));
+        for (var jump : entryJumps) {
+            if (jump instanceof GotoInstruction gotoInst) {
+                gotoInst.setLabel(label);
+            } else if (jump instanceof CondBranchInstruction branch) {
+                branch.setLabel(label);
+            }
+        }
+    }
+}
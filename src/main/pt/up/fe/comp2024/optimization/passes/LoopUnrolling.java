@@ -0,0 +1,615 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2024.optimization.InstructionUtils;
+import pt.up.fe.comp2024.optimization.OllirPass;
+import pt.up.fe.comp2024.optimization.analysis.ControlFlowGraph;
+import pt.up.fe.comp2024.optimization.analysis.Dominators;
+import pt.up.fe.comp2024.optimization.analysis.NaturalLoops;
+import pt.up.fe.comp2024.optimization.analysis.ReachingDefinitions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Copies the body of loops that run a number of times known when compiling, so that fewer tests and jumps run.
+ * <p>
+ * A loop is counted when its only exit is a test of a variable {@code i} against a constant, {@code i} is set to a
+ * constant before the loop and is only assigned in the loop by adding a constant to itself, in every iteration. The
+ * instructions of the loop must be contiguous, with the test ending the header, at the top of the loop or at its
+ * bottom, and the jumps of the body must stay in the body.
+ * <p>
+ * When all the iterations fit in {@link #MAX_UNROLLED_SIZE} instructions, the loop is replaced by its iterations, one
+ * after the other. Otherwise, a new loop that runs {@code k} iterations of the original one per test, with the
+ * largest {@code k} up to {@link #MAX_UNROLL_FACTOR} that fits, is placed before it. The new loop stops when {@code i}
+ * reaches the value it has after the last group of {@code k} iterations, and the original loop runs the iterations
+ * that are left.
+ */
+public class LoopUnrolling implements OllirPass {
+
+    public static final int MAX_UNROLLED_SIZE = 64;
+    public static final int MAX_UNROLL_FACTOR = 4;
+
+    // The loops made by unrolling are not unrolled again, they are recognized by the label of their header
+    private static final String LOOP_LABEL_PREFIX = "unrolled";
+    private static final String COPY_LABEL_PREFIX = "copy";
+
+    /**
+     * A counted loop. The header runs the instructions from {@code header} up to the test, and the body runs the
+     * instructions from {@code bodyStart} up to {@code bodyEnd}, excluded, before going back to the header.
+     *
+     * @param start      the first instruction of the loop
+     * @param end        the last instruction of the loop
+     * @param exitOnTrue true if the loop exits when the condition of the test holds, at the top of the loop
+     */
+    private record CountedLoop(int start, int end, int header, int test, int bodyStart, int bodyEnd,
+                               boolean exitOnTrue, Operand variable, int init, int step, long tripCount) {
+
+        int getIterationSize() {
+            return test - header + bodyEnd - bodyStart;
+        }
+    }
+
+    @Override
+    public boolean optimize(Method method) {
+        boolean changed = false;
+
+        // The analyses are computed again after each loop is changed, inner loops are visited first
+        while (unrollSomeLoop(method)) {
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    private boolean unrollSomeLoop(Method method) {
+        var cfg = ControlFlowGraph.build(method).orElse(null);
+        if (cfg == null || cfg.getEntry() == null) {
+            return false;
+        }
+
+        var dominators = new Dominators(cfg);
+        var loops = new NaturalLoops(cfg, dominators);
+        if (loops.getLoops().isEmpty()) {
+            return false;
+        }
+
+        var reaching = new ReachingDefinitions(cfg);
+
+        for (var loop : loops.getLoops()) {
+            var countedLoop = findCountedLoop(cfg, dominators, reaching, loop).orElse(null);
+            if (countedLoop == null) {
+                continue;
+            }
+
+            if (fullyUnrolledSize(countedLoop) <= MAX_UNROLLED_SIZE) {
+                unrollFully(method, countedLoop);
+                return true;
+            }
+
+            for (int factor = MAX_UNROLL_FACTOR; factor > 1; factor--) {
+                if (partiallyUnrolledSize(countedLoop, factor) <= MAX_UNROLLED_SIZE) {
+                    unrollPartially(method, loop, countedLoop, factor);
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static long fullyUnrolledSize(CountedLoop loop) {
+        return loop.tripCount() * loop.getIterationSize() + loop.test() - loop.header() + 1;
+    }
+
+    private static long partiallyUnrolledSize(CountedLoop loop, int factor) {
+        return (long) factor * loop.getIterationSize() + 2;
+    }
+
+    private Optional<CountedLoop> findCountedLoop(ControlFlowGraph cfg, Dominators dominators,
+                                                  ReachingDefinitions reaching, NaturalLoops.Loop loop) {
+        var method = cfg.getMethod();
+        var instructions = cfg.getInstructions();
+        var header = loop.getHeader();
+
+        if (hasLabel(method, instructions.get(header.getStart()), LOOP_LABEL_PREFIX)) {
+            return Optional.empty();
+        }
+
+        // The blocks of the loop must be the contiguous instructions from start to end, only entered by the header
+        int start = Integer.MAX_VALUE;
+        int end = -1;
+        int size = 0;
+        for (var block : loop.getBlocks()) {
+            start = Math.min(start, block.getStart());
+            end = Math.max(end, block.getEnd());
+            size += block.getEnd() - block.getStart() + 1;
+
+            if (block != header && block.getPredecessors().stream().anyMatch(pred -> !loop.contains(pred))) {
+                return Optional.empty();
+            }
+        }
+        if (size != end - start + 1) {
+            return Optional.empty();
+        }
+
+        // The only exit is the test that ends the header
+        int test = header.getEnd();
+        if (!(instructions.get(test) instanceof CondBranchInstruction branch)
+                || loop.getExits().size() != 1 || loop.getExits().get(0) != header) {
+            return Optional.empty();
+        }
+
+        int target = InstructionUtils.getIndexes(method).get(method.getLabels().get(branch.getLabel()));
+        boolean exitOnTrue;
+        int bodyStart;
+        int bodyEnd;
+        if (header.getStart() == start && (target < start || target > end) && test < end
+                && instructions.get(end) instanceof GotoInstruction backEdge
+                && method.getLabels().get(backEdge.getLabel()) == instructions.get(start)) {
+            // The test is at the top and exits, the body ends with a jump back to the header
+            exitOnTrue = true;
+            bodyStart = test + 1;
+            bodyEnd = end;
+        } else if (header.getStart() > start && test == end && target == start) {
+            // The test is at the bottom and jumps back to the body, which falls through to the header
+            exitOnTrue = false;
+            bodyStart = start;
+            bodyEnd = header.getStart();
+        } else {
+            return Optional.empty();
+        }
+
+        if (!canCopyBody(method, instructions, bodyStart, bodyEnd)) {
+            return Optional.empty();
+        }
+
+        var condition = getCondition(branch, exitOnTrue).orElse(null);
+        if (condition == null) {
+            return Optional.empty();
+        }
+
+        var variable = (Operand) condition.getLeftOperand();
+        var bound = getIntValue(condition.getRightOperand()).orElseThrow();
+
+        var increment = findIncrement(cfg, dominators, loop, variable.getName()).orElse(null);
+        if (increment == null || increment < bodyStart || increment >= bodyEnd) {
+            return Optional.empty();
+        }
+        int step = getStep((AssignInstruction) instructions.get(increment)).orElseThrow();
+
+        var init = getInitialValue(cfg, dominators, reaching, loop, increment).orElse(null);
+        if (init == null) {
+            return Optional.empty();
+        }
+
+        var tripCount = getTripCount(condition.getOperation().getOpType(), init, bound, step).orElse(null);
+        if (tripCount == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new CountedLoop(start, end, header.getStart(), test, bodyStart, bodyEnd, exitOnTrue,
+                variable, init, step, tripCount));
+    }
+
+    /**
+     * @return true if every instruction of the body can be copied, and its jumps only go to instructions of the body
+     */
+    private boolean canCopyBody(Method method, List<Instruction> instructions, int bodyStart, int bodyEnd) {
+        var indexes = InstructionUtils.getIndexes(method);
+
+        for (int i = bodyStart; i < bodyEnd; i++) {
+            var inst = instructions.get(i);
+
+            var label = InstructionUtils.getJumpLabel(inst).orElse(null);
+            if (label != null) {
+                int target = indexes.get(method.getLabels().get(label));
+                if (target < bodyStart || target >= bodyEnd) {
+                    return false;
+                }
+                continue;
+            }
+
+            if (InstructionUtils.copyInstruction(inst, name -> name).isEmpty()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the condition that keeps the loop running, as a comparison of a variable with an integer constant
+     */
+    private Optional<BinaryOpInstruction> getCondition(CondBranchInstruction branch, boolean exitOnTrue) {
+        if (!(branch.getCondition() instanceof BinaryOpInstruction comparison)) {
+            return Optional.empty();
+        }
+
+        var opType = comparison.getOperation().getOpType();
+        var left = comparison.getLeftOperand();
+        var right = comparison.getRightOperand();
+
+        if (getIntValue(left).isPresent()) {
+            opType = swap(opType);
+            var temp = left;
+            left = right;
+            right = temp;
+        }
+
+        if (negate(opType) == null || !(left instanceof Operand variable) || variable instanceof ArrayOperand
+                || variable.getType().getTypeOfElement() != ElementType.INT32 || getIntValue(right).isEmpty()) {
+            return Optional.empty();
+        }
+
+        if (exitOnTrue) {
+            opType = negate(opType);
+        }
+
+        return Optional.of(new BinaryOpInstruction(left, new Operation(opType, comparison.getOperation().getTypeInfo()),
+                right));
+    }
+
+    /**
+     * @return the index of the only assignment of the variable in the loop, if it adds a constant to the variable and
+     * runs in every iteration
+     */
+    private Optional<Integer> findIncrement(ControlFlowGraph cfg, Dominators dominators, NaturalLoops.Loop loop,
+                                            String name) {
+        var instructions = cfg.getInstructions();
+
+        Integer increment = null;
+        for (var block : loop.getBlocks()) {
+            for (int i = block.getStart(); i <= block.getEnd(); i++) {
+                if (!InstructionUtils.getDef(instructions.get(i)).map(name::equals).orElse(false)) {
+                    continue;
+                }
+
+                if (increment != null || getStep((AssignInstruction) instructions.get(i)).isEmpty()) {
+                    return Optional.empty();
+                }
+                increment = i;
+            }
+        }
+
+        if (increment == null) {
+            return Optional.empty();
+        }
+
+        // The blocks that go back to the header are only reached through the increment
+        var incrementBlock = cfg.getBlockOf(increment);
+        for (var pred : loop.getHeader().getPredecessors()) {
+            if (loop.contains(pred) && !dominators.dominates(incrementBlock, pred)) {
+                return Optional.empty();
+            }
+        }
+
+        return Optional.of(increment);
+    }
+
+    /**
+     * @return the constant assigned to the variable before the loop, if that assignment runs on every path to the
+     * loop and no other assignment from outside of the loop reaches it
+     */
+    private Optional<Integer> getInitialValue(ControlFlowGraph cfg, Dominators dominators,
+                                              ReachingDefinitions reaching, NaturalLoops.Loop loop, int increment) {
+        var instructions = cfg.getInstructions();
+        var header = loop.getHeader();
+        int var = cfg.getVariables().getDef(increment);
+
+        Integer init = null;
+        var defs = reaching.getReachingIn(header.getStart(), var);
+        for (int def = defs.nextSetBit(0); def >= 0; def = defs.nextSetBit(def + 1)) {
+            if (def == increment) {
+                continue;
+            }
+
+            if (init != null || loop.containsInstruction(def)
+                    || !dominators.dominates(cfg.getBlockOf(def), header)
+                    || !(instructions.get(def) instanceof AssignInstruction assign)
+                    || !(assign.getRhs() instanceof SingleOpInstruction copy)) {
+                return Optional.empty();
+            }
+
+            init = getIntValue(copy.getSingleOperand()).orElse(null);
+            if (init == null) {
+                return Optional.empty();
+            }
+        }
+
+        return Optional.ofNullable(init);
+    }
+
+    /**
+     * @param opType the comparison of the variable with the bound that keeps the loop running
+     * @return how many times the body runs, or empty if the variable would overflow before the loop exits
+     */
+    private Optional<Long> getTripCount(OperationType opType, long init, long bound, long step) {
+        if (!holds(opType, init, bound)) {
+            return Optional.of(0L);
+        }
+
+        long tripCount;
+        switch (opType) {
+            case LTH, LTE -> {
+                if (step <= 0) {
+                    return Optional.empty();
+                }
+                long distance = opType == OperationType.LTH ? bound - init : bound - init + 1;
+                tripCount = (distance + step - 1) / step;
+            }
+            case GTH, GTE -> {
+                if (step >= 0) {
+                    return Optional.empty();
+                }
+                long distance = opType == OperationType.GTH ? init - bound : init - bound + 1;
+                tripCount = (distance - step - 1) / -step;
+            }
+            case NEQ -> {
+                if (step == 0 || (bound - init) % step != 0 || (bound - init) / step < 0) {
+                    return Optional.empty();
+                }
+                tripCount = (bound - init) / step;
+            }
+            case EQ -> tripCount = step == 0 ? -1 : 1;
+            default -> tripCount = -1;
+        }
+
+        long last = init + tripCount * step;
+        if (tripCount < 0 || last < Integer.MIN_VALUE || last > Integer.MAX_VALUE) {
+            return Optional.empty();
+        }
+
+        return Optional.of(tripCount);
+    }
+
+    private void unrollFully(Method method, CountedLoop loop) {
+        var instructions = method.getInstructions();
+
+        var unrolled = new ArrayList<Instruction>();
+        for (long i = 0; i < loop.tripCount(); i++) {
+            unrolled.addAll(copyIteration(method, loop));
+        }
+        unrolled.addAll(copyRange(method, loop.header(), loop.test()));
+
+        if (loop.exitOnTrue()) {
+            var branch = (CondBranchInstruction) instructions.get(loop.test());
+            unrolled.add(new GotoInstruction(branch.getLabel()));
+        }
+
+        var headerInst = instructions.get(loop.header());
+        var removed = new IdentityHashMap<Instruction, Boolean>();
+        for (var inst : instructions.subList(loop.start(), loop.end() + 1)) {
+            removed.put(inst, true);
+        }
+
+        instructions.subList(loop.start(), loop.end() + 1).clear();
+        instructions.addAll(loop.start(), unrolled);
+
+        // The jumps that entered the loop go to the first iteration, the other labels of the loop are left unused
+        var entry = instructions.get(loop.start());
+        method.getLabels().entrySet().removeIf(label -> removed.containsKey(label.getValue())
+                && label.getValue() != headerInst);
+        for (var label : method.getLabels().entrySet()) {
+            if (label.getValue() == headerInst) {
+                label.setValue(entry);
+            }
+        }
+    }
+
+    private void unrollPartially(Method method, NaturalLoops.Loop loop, CountedLoop countedLoop, int factor) {
+        var instructions = method.getInstructions();
+        var headerInst = instructions.get(countedLoop.header());
+        var headerLabel = getLabel(method, headerInst);
+        var comparison = (OpInstruction) ((CondBranchInstruction) instructions.get(countedLoop.test())).getCondition();
+
+        // The variable is compared before the copies of the header, which do not assign it
+        long groups = countedLoop.tripCount() / factor;
+        var variable = countedLoop.variable();
+        var limit = countedLoop.init() + groups * factor * countedLoop.step();
+        var test = new OpCondInstruction(new BinaryOpInstruction(copyOf(variable),
+                new Operation(OperationType.EQ, comparison.getOperation().getTypeInfo()),
+                new LiteralElement(String.valueOf((int) limit), variable.getType())));
+        test.setLabel(headerLabel);
+
+        var unrolled = new ArrayList<Instruction>();
+        unrolled.add(test);
+        for (int i = 0; i < factor; i++) {
+            unrolled.addAll(copyIteration(method, countedLoop));
+        }
+        var loopLabel = InstructionUtils.addLabel(method, LOOP_LABEL_PREFIX, test);
+        unrolled.add(new GotoInstruction(loopLabel));
+
+        // The jumps that entered the loop enter the unrolled loop, the original one is entered after it
+        for (var entry : loop.getEntries()) {
+            var jump = instructions.get(entry.getEnd());
+            var label = InstructionUtils.getJumpLabel(jump).orElse(null);
+            if (label != null && method.getLabels().get(label) == headerInst) {
+                if (jump instanceof GotoInstruction gotoInst) {
+                    gotoInst.setLabel(loopLabel);
+                } else if (jump instanceof CondBranchInstruction branch) {
+                    branch.setLabel(loopLabel);
+                }
+            }
+        }
+
+        instructions.addAll(countedLoop.start(), unrolled);
+    }
+
+    /**
+     * @return a copy of the instructions of the header before the test, followed by a copy of the body
+     */
+    private List<Instruction> copyIteration(Method method, CountedLoop loop) {
+        var iteration = copyRange(method, loop.header(), loop.test());
+        iteration.addAll(copyRange(method, loop.bodyStart(), loop.bodyEnd()));
+
+        return iteration;
+    }
+
+    /**
+     * Copies the instructions from start to end, excluded. The labels that the copied jumps go to are copied with new
+     * names.
+     */
+    private List<Instruction> copyRange(Method method, int start, int end) {
+        var instructions = method.getInstructions();
+        var copies = new ArrayList<Instruction>(end - start);
+        var copyOf = new IdentityHashMap<Instruction, Instruction>();
+
+        for (int i = start; i < end; i++) {
+            var inst = instructions.get(i);
+            var copy = copyJump(inst).or(() -> InstructionUtils.copyInstruction(inst, name -> name)).orElseThrow();
+            copies.add(copy);
+            copyOf.put(inst, copy);
+        }
+
+        var renamed = new HashMap<String, String>();
+        for (int i = start; i < end; i++) {
+            var label = InstructionUtils.getJumpLabel(instructions.get(i)).orElse(null);
+            if (label != null && !renamed.containsKey(label)) {
+                var copy = copyOf.get(method.getLabels().get(label));
+                renamed.put(label, InstructionUtils.addLabel(method, COPY_LABEL_PREFIX, copy));
+            }
+        }
+
+        for (var copy : copies) {
+            if (copy instanceof GotoInstruction gotoInst) {
+                gotoInst.setLabel(renamed.get(gotoInst.getLabel()));
+            } else if (copy instanceof CondBranchInstruction branch) {
+                branch.setLabel(renamed.get(branch.getLabel()));
+            }
+        }
+
+        return copies;
+    }
+
+    /**
+     * @return a copy of the jump, to the same label, or empty if the instruction does not jump
+     */
+    private Optional<Instruction> copyJump(Instruction inst) {
+        if (inst instanceof GotoInstruction gotoInst) {
+            return Optional.of(new GotoInstruction(gotoInst.getLabel()));
+        }
+
+        if (!(inst instanceof CondBranchInstruction branch)) {
+            return Optional.empty();
+        }
+
+        var condition = InstructionUtils.copyInstruction(branch.getCondition(), name -> name).orElseThrow();
+        CondBranchInstruction copy = condition instanceof SingleOpInstruction singleOp
+                ? new SingleOpCondInstruction(singleOp)
+                : new OpCondInstruction((OpInstruction) condition);
+        copy.setLabel(branch.getLabel());
+
+        return Optional.of(copy);
+    }
+
+    /**
+     * @return a label of the instruction, which is added if there is none
+     */
+    private String getLabel(Method method, Instruction inst) {
+        for (var label : method.getLabels().entrySet()) {
+            if (label.getValue() == inst) {
+                return label.getKey();
+            }
+        }
+
+        return InstructionUtils.addLabel(method, LOOP_LABEL_PREFIX, inst);
+    }
+
+    private boolean hasLabel(Method method, Instruction inst, String prefix) {
+        return method.getLabels().entrySet().stream()
+                .anyMatch(label -> label.getValue() == inst && label.getKey().startsWith(prefix));
+    }
+
+    /**
+     * @return the constant added to the variable, if the assignment is {@code i := i + c}, {@code i := c + i} or
+     * {@code i := i - c}
+     */
+    private Optional<Integer> getStep(AssignInstruction assign) {
+        if (!(assign.getRhs() instanceof BinaryOpInstruction binaryOp)
+                || assign.getDest().getType().getTypeOfElement() != ElementType.INT32) {
+            return Optional.empty();
+        }
+
+        var name = ((Operand) assign.getDest()).getName();
+        var left = binaryOp.getLeftOperand();
+        var right = binaryOp.getRightOperand();
+
+        return switch (binaryOp.getOperation().getOpType()) {
+            case ADD -> {
+                if (isVariable(left, name)) {
+                    yield getIntValue(right);
+                }
+                yield isVariable(right, name) ? getIntValue(left) : Optional.empty();
+            }
+            case SUB -> isVariable(left, name) ? getIntValue(right).map(value -> -value) : Optional.empty();
+            default -> Optional.empty();
+        };
+    }
+
+    private static boolean holds(OperationType opType, long left, long right) {
+        return switch (opType) {
+            case LTH -> left < right;
+            case GTH -> left > right;
+            case LTE -> left <= right;
+            case GTE -> left >= right;
+            case EQ -> left == right;
+            case NEQ -> left != right;
+            default -> false;
+        };
+    }
+
+    /**
+     * @return the comparison that holds when the given one does not, or null if it is not a comparison
+     */
+    private static OperationType negate(OperationType opType) {
+        return switch (opType) {
+            case LTH -> OperationType.GTE;
+            case GTE -> OperationType.LTH;
+            case GTH -> OperationType.LTE;
+            case LTE -> OperationType.GTH;
+            case EQ -> OperationType.NEQ;
+            case NEQ -> OperationType.EQ;
+            default -> null;
+        };
+    }
+
+    /**
+     * @return the comparison that holds with the operands in the other order, or null if it is not a comparison
+     */
+    private static OperationType swap(OperationType opType) {
+        return switch (opType) {
+            case LTH -> OperationType.GTH;
+            case GTH -> OperationType.LTH;
+            case LTE -> OperationType.GTE;
+            case GTE -> OperationType.LTE;
+            case EQ, NEQ -> opType;
+            default -> null;
+        };
+    }
+
+    private boolean isVariable(Element element, String name) {
+        return element instanceof Operand operand && !(operand instanceof ArrayOperand)
+                && operand.getName().equals(name);
+    }
+
+    private Optional<Integer> getIntValue(Element element) {
+        if (!(element instanceof LiteralElement literal)
+                || literal.getType().getTypeOfElement() != ElementType.INT32) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(Integer.parseInt(literal.getLiteral()));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Element copyOf(Element element) {
+        return InstructionUtils.copyElement(element, name -> name);
+    }
+}
@@ -0,0 +1,249 @@
+package pt.up.fe.comp2024.optimization.passes;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.optimization.InstructionUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces the calls of a method to itself whose result is returned right away by a jump to the start of the method,
+ * after the arguments of the call are assigned to the parameters.
+ * <p>
+ * The recursion becomes a loop, which does not grow the stack and which the passes over loops can optimize. A call
+ * is in tail position when the instructions after it only copy its result and jump, up to a return of the copied
+ * result, or up to a return without value for methods that return nothing.
+ * <p>
+ * As in {@link Inlining}, a virtual call is only replaced when its receiver is {@code this}, and subclasses compiled
+ * separately are assumed not to override the methods of the class.
+ */
+public class TailCallElimination {
+
+    private static final String ENTRY_LABEL = "entry";
+    private static final String ARGUMENT_PREFIX = "tailArg";
+
+    private final List<Report> reports;
+
+    public TailCallElimination() {
+        this.reports = new ArrayList<>();
+    }
+
+    /**
+     * Replaces the tail calls in every method of the class.
+     *
+     * @param classUnit
+     * @return true if some call was replaced
+     */
+    public boolean optimize(ClassUnit classUnit) {
+        boolean changed = false;
+
+        for (var method : classUnit.getMethods()) {
+            if (method.isConstructMethod() || method.isVarargs()) {
+                continue;
+            }
+
+            int replaced = replaceTailCalls(classUnit, method);
+            if (replaced > 0) {
+                reports.add(Report.newLog(Stage.OPTIMIZATION, -1, -1,
+                        "Replaced " + replaced + (replaced == 1 ? " tail call" : " tail calls")
+                                + " by jumps in method '" + method.getMethodName() + "'",
+                        null));
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return a log report for each method with tail calls that were replaced, with how many there were
+     */
+    public List<Report> getReports() {
+        return Collections.unmodifiableList(reports);
+    }
+
+    private int replaceTailCalls(ClassUnit classUnit, Method method) {
+        var instructions = method.getInstructions();
+        if (instructions.isEmpty()) {
+            return 0;
+        }
+
+        // Found before replacing any call, since the replacements change the indexes of the instructions
+        var tailCalls = new ArrayList<Instruction>();
+        var indexes = InstructionUtils.getIndexes(method);
+        for (int i = 0; i < instructions.size(); i++) {
+            var inst = instructions.get(i);
+            var call = InstructionUtils.getCall(inst).orElse(null);
+            if (call != null && isSelfCall(classUnit, method, call) && isReturned(method, indexes, i)) {
+                tailCalls.add(inst);
+            }
+        }
+
+        if (tailCalls.isEmpty()) {
+            return 0;
+        }
+
+        var entry = getEntryLabel(method);
+        for (var tailCall : tailCalls) {
+            var index = InstructionUtils.getIndexes(method).get(tailCall);
+            var call = InstructionUtils.getCall(tailCall).orElseThrow();
+
+            var jump = assignArguments(method, call);
+            jump.add(new GotoInstruction(entry));
+
+            // The labels of the call go to the first instruction that replaces it
+            InstructionUtils.replaceInstruction(method, index, jump.get(0));
+            instructions.addAll(index + 1, jump.subList(1, jump.size()));
+        }
+
+        return tailCalls.size();
+    }
+
+    private boolean isSelfCall(ClassUnit classUnit, Method method, CallInstruction call) {
+        if (!(call.getCaller() instanceof Operand caller)
+                || !(call.getMethodNameTry().orElse(null) instanceof LiteralElement methodName)
+                || !methodName.getLiteral().replace("\"", "").equals(method.getMethodName())
+                || call.getArguments().size() != method.getParams().size()) {
+            return false;
+        }
+
+        if (method.isStaticMethod()) {
+            return call.getInvocationType() == CallType.invokestatic
+                    && caller.getName().equals(classUnit.getClassName());
+        }
+
+        return call.getInvocationType() == CallType.invokevirtual && caller.getName().equals("this");
+    }
+
+    /**
+     * Follows the instructions after the call, through copies of its result and jumps, up to a return.
+     *
+     * @return true if the method returns the result of the call, or returns nothing, without doing anything else
+     */
+    private boolean isReturned(Method method, Map<Instruction, Integer> indexes, int callIndex) {
+        var instructions = method.getInstructions();
+        var callInst = instructions.get(callIndex);
+
+        String result = null;
+        if (callInst instanceof AssignInstruction assign) {
+            if (!(assign.getDest() instanceof Operand dest) || dest instanceof ArrayOperand) {
+                return false;
+            }
+            result = dest.getName();
+        }
+
+        var visited = new HashSet<Integer>();
+        int index = callIndex + 1;
+        while (index < instructions.size() && visited.add(index)) {
+            var inst = instructions.get(index);
+
+            if (inst instanceof GotoInstruction gotoInst) {
+                index = indexes.get(method.getLabels().get(gotoInst.getLabel()));
+                continue;
+            }
+
+            if (inst instanceof ReturnInstruction ret) {
+                if (!ret.hasReturnValue()) {
+                    return result == null;
+                }
+                return result != null && isVariable(ret.getOperand(), result);
+            }
+
+            // A copy of the result, to a variable that is not read again before returning
+            if (result != null && inst instanceof AssignInstruction assign
+                    && assign.getRhs() instanceof SingleOpInstruction copy
+                    && isVariable(copy.getSingleOperand(), result)
+                    && assign.getDest() instanceof Operand dest && !(dest instanceof ArrayOperand)) {
+                result = dest.getName();
+                index++;
+                continue;
+            }
+
+            return false;
+        }
+
+        return false;
+    }
+
+    private static boolean isVariable(Element element, String name) {
+        return element instanceof Operand operand && !(operand instanceof ArrayOperand)
+                && operand.getName().equals(name);
+    }
+
+    private static boolean readsAny(Element element, Set<String> names) {
+        if (!(element instanceof Operand operand)) {
+            return false;
+        }
+
+        if (names.contains(operand.getName())) {
+            return true;
+        }
+
+        return operand instanceof ArrayOperand array
+                && array.getIndexOperands().stream().anyMatch(index -> readsAny(index, names));
+    }
+
+    /**
+     * @return the label of the first instruction of the method, which is added if there is none
+     */
+    private String getEntryLabel(Method method) {
+        var first = method.getInstructions().get(0);
+
+        for (var label : method.getLabels().entrySet()) {
+            if (label.getValue() == first) {
+                return label.getKey();
+            }
+        }
+
+        return InstructionUtils.addLabel(method, ENTRY_LABEL, first);
+    }
+
+    /**
+     * Builds the assignments of the arguments of the call to the parameters. The arguments that read other parameters,
+     * also as the index of an array, are copied to new variables first, since those parameters may be assigned before
+     * them.
+     */
+    private List<Instruction> assignArguments(Method method, CallInstruction call) {
+        var params = method.getParams();
+        var arguments = call.getArguments();
+
+        var paramNames = new HashSet<String>();
+        for (var param : params) {
+            paramNames.add(((Operand) param).getName());
+        }
+
+        var copies = new ArrayList<Instruction>();
+        var assignments = new ArrayList<Instruction>();
+
+        for (int i = 0; i < params.size(); i++) {
+            var param = (Operand) params.get(i);
+            var argument = InstructionUtils.copyElement(arguments.get(i), name -> name);
+
+            // The parameter already has the value
+            if (isVariable(argument, param.getName())) {
+                continue;
+            }
+
+            if (readsAny(argument, paramNames)) {
+                var copy = InstructionUtils.addVariable(method, ARGUMENT_PREFIX, param.getType());
+                copies.add(new AssignInstruction(new Operand(copy, param.getType()), param.getType(),
+                        new SingleOpInstruction(argument)));
+                argument = new Operand(copy, param.getType());
+            }
+
+            assignments.add(new AssignInstruction(new Operand(param.getName(), param.getType()), param.getType(),
+                    new SingleOpInstruction(argument)));
+        }
+
+        var jump = new ArrayList<Instruction>(copies);
+        jump.addAll(assignments);
+
+        return jump;
+    }
+}
@@ -3,6 +3,7 @@ package pt.up.fe.comp2024.optimization_jasmin;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ast2jasmin.AstToJasmin;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp2024.optimization.AstOptimizer;
 
 import java.util.Collections;
 
@@ -18,7 +19,6 @@ public class AstToJasminImpl implements AstToJasmin {
 
     @Override
     public JmmSemanticsResult optimize(JmmSemanticsResult semanticsResult) {
-        // TODO: To implement for CP3
-        return AstToJasmin.super.optimize(semanticsResult);
+        return new AstOptimizer().optimize(semanticsResult);
     }
 }
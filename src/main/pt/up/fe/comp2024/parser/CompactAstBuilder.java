@@ -0,0 +1,189 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.CompactJmmNode;
+import pt.up.fe.comp2024.ast.Kind;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Builds a {@link CompactJmmNode} AST directly from the ANTLR parse tree.
+ * <p>
+ * Produces the same kinds, hierarchies and attributes as the generic ANTLR converter of the library, but the
+ * reflection work (kind name, hierarchy, public fields) is done once per context class and shared by all the
+ * nodes of that class.
+ */
+public class CompactAstBuilder {
+
+    private static final Map<Class<?>, NodeShape> SHAPES = new HashMap<>();
+
+    private final Parser parser;
+    private final Map<ParseTree, JmmNode> antlrToJmm;
+    private final List<PendingAttribute> pendingAttributes;
+
+    private CompactAstBuilder(Parser parser) {
+        this.parser = parser;
+        this.antlrToJmm = new IdentityHashMap<>();
+        this.pendingAttributes = new ArrayList<>();
+    }
+
+    /**
+     * Converts the given parse tree into a compact AST.
+     *
+     * @param node
+     * @param parser
+     * @return the root of the AST
+     */
+    public static JmmNode build(ParseTree node, Parser parser) {
+        var builder = new CompactAstBuilder(parser);
+        var root = builder.convert(node);
+
+        // Attributes that point to ANTLR nodes are replaced by the equivalent AST node
+        for (var pending : builder.pendingAttributes) {
+            var jmmNode = builder.antlrToJmm.get(pending.value());
+            if (jmmNode != null) {
+                pending.node().putObject(pending.name(), jmmNode);
+            }
+        }
+
+        return root;
+    }
+
+    private CompactJmmNode convert(ParseTree node) {
+        var shape = getShape(node);
+
+        var jmmNode = new CompactJmmNode(shape.kind(), shape.nodeKind(), shape.hierarchy(), shape.slotNames(),
+                node.getChildCount());
+        antlrToJmm.put(node, jmmNode);
+
+        var start = parser.getTokenStream().get(node.getSourceInterval().a);
+        var end = parser.getTokenStream().get(node.getSourceInterval().b);
+        jmmNode.setPosition(start.getLine(), start.getCharPositionInLine(),
+                end.getLine(), end.getCharPositionInLine());
+
+        if (node instanceof TerminalNode terminal) {
+            jmmNode.put("value", terminal.getSymbol().getText());
+            return jmmNode;
+        }
+
+        addAttributes(jmmNode, node, shape);
+
+        for (int i = 0; i < node.getChildCount(); i++) {
+            var child = node.getChild(i);
+
+            // Terminal nodes are not part of the AST
+            if (child instanceof TerminalNode) {
+                continue;
+            }
+
+            jmmNode.add(convert(child));
+        }
+
+        return jmmNode;
+    }
+
+    private void addAttributes(CompactJmmNode jmmNode, ParseTree node, NodeShape shape) {
+        var fields = shape.fields();
+
+        for (int i = 0; i < fields.length; i++) {
+            try {
+                var value = processValue(fields[i].get(node));
+                if (value == null) {
+                    continue;
+                }
+
+                jmmNode.putObject(shape.slotNames()[i], value);
+
+                if (value instanceof ParseTree parseTree) {
+                    pendingAttributes.add(new PendingAttribute(jmmNode, shape.slotNames()[i], parseTree));
+                }
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException("Could not access field '" + fields[i].getName() + "' from node " + node);
+            }
+        }
+    }
+
+    private Object processValue(Object value) {
+        if (value instanceof Token token) {
+            return token.getText();
+        }
+
+        if (value instanceof List<?> list) {
+            var values = new ArrayList<>(list.size());
+            for (var element : list) {
+                values.add(processValue(element));
+            }
+            return values;
+        }
+
+        return value;
+    }
+
+    private NodeShape getShape(ParseTree node) {
+        // Terminal nodes share the class, but their kind depends on the token
+        if (node instanceof TerminalNode terminal) {
+            var kind = parser.getVocabulary().getSymbolicName(terminal.getSymbol().getType());
+            return NodeShape.of(kind, List.of(kind), new Field[0], new String[]{"value"});
+        }
+
+        if (!(node instanceof ParserRuleContext)) {
+            throw new RuntimeException("Expected node to be of class '" + ParserRuleContext.class
+                    + "', but got '" + node.getClass() + "'");
+        }
+
+        synchronized (SHAPES) {
+            return SHAPES.computeIfAbsent(node.getClass(), CompactAstBuilder::buildShape);
+        }
+    }
+
+    private static NodeShape buildShape(Class<?> nodeClass) {
+        var hierarchy = new ArrayList<String>();
+        var fields = new ArrayList<Field>();
+
+        Class<?> currentClass = nodeClass;
+        while (!currentClass.equals(ParserRuleContext.class)) {
+            hierarchy.add(getKind(currentClass));
+
+            for (var field : currentClass.getDeclaredFields()) {
+                if (Modifier.isPublic(field.getModifiers()) && !Modifier.isStatic(field.getModifiers())) {
+                    fields.add(field);
+                }
+            }
+
+            currentClass = currentClass.getSuperclass();
+        }
+
+        var slotNames = fields.stream().map(Field::getName).toArray(String[]::new);
+
+        return NodeShape.of(hierarchy.get(0), List.copyOf(hierarchy), fields.toArray(new Field[0]), slotNames);
+    }
+
+    private static String getKind(Class<?> nodeClass) {
+        String className = nodeClass.getSimpleName();
+
+        // Rules end with context
+        if (!className.endsWith("Context")) {
+            throw new RuntimeException("Expected classname to end with 'Context' " + className);
+        }
+
+        return className.substring(0, className.length() - "Context".length()).intern();
+    }
+
+    private record NodeShape(String kind, Kind nodeKind, List<String> hierarchy, Field[] fields,
+                             String[] slotNames) {
+
+        static NodeShape of(String kind, List<String> hierarchy, Field[] fields, String[] slotNames) {
+            return new NodeShape(kind, Kind.lookup(kind), hierarchy, fields, slotNames);
+        }
+    }
+
+    private record PendingAttribute(JmmNode node, String name, ParseTree value) {
+    }
+}
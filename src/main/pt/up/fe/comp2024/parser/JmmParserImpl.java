@@ -2,13 +2,16 @@ package pt.up.fe.comp2024.parser;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.CommonTokenStream;
-import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
+import org.antlr.v4.runtime.tree.ParseTree;
+import pt.up.fe.comp.jmm.ast.antlr.JmmErrorListener;
 import pt.up.fe.comp.jmm.parser.JmmParser;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.specs.util.SpecsSystem;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.Map;
 
 /**
@@ -45,8 +48,28 @@ public class JmmParserImpl implements JmmParser {
             var parser = new pt.up.fe.comp2024.JavammParser(tokens);
 
 
-            // Convert ANTLR CST to JmmNode AST
-            return AntlrParser.parse(lex, parser, startingRule, config);
+            lex.removeErrorListeners();
+            var lexerListener = new JmmErrorListener(Stage.LEXICAL);
+            lex.addErrorListener(lexerListener);
+
+            parser.removeErrorListeners();
+            var parserListener = new JmmErrorListener(Stage.SYNTATIC);
+            parser.addErrorListener(parserListener);
+
+            var tree = (ParseTree) SpecsSystem.invoke(parser, startingRule);
+
+            var reports = new ArrayList<Report>();
+            reports.addAll(lexerListener.getReports());
+            reports.addAll(parserListener.getReports());
+
+            if (reports.stream().anyMatch(r -> r.getType() == ReportType.ERROR)) {
+                return new JmmParserResult(null, reports, config);
+            }
+
+            // Convert ANTLR CST to a compact JmmNode AST
+            var root = CompactAstBuilder.build(tree, parser);
+
+            return new JmmParserResult(root, reports, config);
 
         } catch (Exception e) {
             // There was an uncaught exception during parsing, create an error JmmParserResult without root node
@@ -0,0 +1,120 @@
+package pt.up.fe.comp2024.symboltable;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the signatures of a class from its class file, without loading the class.
+ * <p>
+ * Only the constant pool, the names of the classes and the declarations of fields and methods are decoded. Code and
+ * every other attribute are skipped.
+ */
+public class ClassFileReader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    /**
+     * @param classFile the contents of a class file
+     * @return the class declared by the file
+     */
+    public static ImportedClass read(byte[] classFile) {
+        try {
+            return read(new DataInputStream(new ByteArrayInputStream(classFile)));
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read class file", e);
+        }
+    }
+
+    private static ImportedClass read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new RuntimeException("Not a class file");
+        }
+
+        // Minor and major version
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+
+        // Only the strings and the classes, which point to a string, are needed
+        int poolSize = in.readUnsignedShort();
+        var strings = new String[poolSize];
+        var classes = new int[poolSize];
+        for (int i = 1; i < poolSize; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case CONSTANT_UTF8 -> strings[i] = in.readUTF();
+                case CONSTANT_CLASS -> classes[i] = in.readUnsignedShort();
+                case CONSTANT_STRING, CONSTANT_METHOD_TYPE, CONSTANT_MODULE, CONSTANT_PACKAGE -> in.skipNBytes(2);
+                case CONSTANT_METHOD_HANDLE -> in.skipNBytes(3);
+                case CONSTANT_INTEGER, CONSTANT_FLOAT, CONSTANT_FIELDREF, CONSTANT_METHODREF,
+                        CONSTANT_INTERFACE_METHODREF, CONSTANT_NAME_AND_TYPE, CONSTANT_DYNAMIC,
+                        CONSTANT_INVOKE_DYNAMIC -> in.skipNBytes(4);
+                case CONSTANT_LONG, CONSTANT_DOUBLE -> {
+                    // Takes two entries of the pool
+                    in.skipNBytes(8);
+                    i++;
+                }
+                default -> throw new RuntimeException("Unknown constant pool tag " + tag + " at entry " + i);
+            }
+        }
+
+        // Access flags
+        in.readUnsignedShort();
+
+        String name = strings[classes[in.readUnsignedShort()]];
+        int superIndex = in.readUnsignedShort();
+        String superName = superIndex == 0 ? null : strings[classes[superIndex]];
+        if ("java/lang/Object".equals(superName)) {
+            superName = null;
+        }
+
+        int numInterfaces = in.readUnsignedShort();
+        in.skipNBytes(2L * numInterfaces);
+
+        var fields = readMembers(in, strings);
+        var methods = readMembers(in, strings);
+
+        return new ImportedClass(name, superName, fields, methods);
+    }
+
+    private static List<ImportedClass.Member> readMembers(DataInputStream in, String[] strings) throws IOException {
+        int count = in.readUnsignedShort();
+        var members = new ArrayList<ImportedClass.Member>(count);
+
+        for (int i = 0; i < count; i++) {
+            int accessFlags = in.readUnsignedShort();
+            String name = strings[in.readUnsignedShort()];
+            String descriptor = strings[in.readUnsignedShort()];
+
+            int numAttributes = in.readUnsignedShort();
+            for (int j = 0; j < numAttributes; j++) {
+                in.readUnsignedShort();
+                in.skipNBytes(in.readInt() & 0xFFFFFFFFL);
+            }
+
+            members.add(new ImportedClass.Member(name, descriptor, accessFlags));
+        }
+
+        return members;
+    }
+}
@@ -0,0 +1,378 @@
+package pt.up.fe.comp2024.symboltable;
+
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipFile;
+
+/**
+ * The signatures of the compiled classes in a classpath, which give the types of the methods and fields of imported
+ * classes without loading them.
+ * <p>
+ * Reading every class file on each compilation is avoided in two ways. The index is saved to a cache file, which is
+ * memory mapped and decoded when a later run finds it matches the classpath, and indexes are also kept in memory for
+ * the compilations of the same process. A classpath matches a saved index when the names, sizes and modification
+ * times of its class files and jars are the same.
+ */
+public class ClassIndex {
+
+    public static final ClassIndex EMPTY = new ClassIndex(new HashMap<>());
+
+    private static final int CACHE_MAGIC = 0x4A4D4D49;
+    private static final int CACHE_VERSION = 1;
+
+    private static final Map<String, ClassIndex> LOADED = new ConcurrentHashMap<>();
+
+    private final Map<String, ImportedClass> classes;
+    private long fingerprint;
+
+    private ClassIndex(Map<String, ImportedClass> classes) {
+        this.classes = classes;
+        this.fingerprint = 0;
+    }
+
+    /**
+     * Reads every class file in the given directories and jars. Entries that do not exist are ignored.
+     *
+     * @param classpath
+     * @return
+     */
+    public static ClassIndex build(List<File> classpath) {
+        var classes = new HashMap<String, ImportedClass>();
+
+        forEachClassFile(classpath, (entry, name, size, lastModified) -> {
+            // The first entry of the classpath that declares a class wins, as in the JVM
+            if (classes.containsKey(name)) {
+                return;
+            }
+
+            try {
+                var importedClass = ClassFileReader.read(entry.read());
+                classes.putIfAbsent(importedClass.getName(), importedClass);
+            } catch (RuntimeException | IOException e) {
+                // A class that cannot be read is left out, and calls to it are typed as if there was no index
+            }
+        });
+
+        var index = new ClassIndex(classes);
+        index.fingerprint = fingerprint(classpath);
+
+        return index;
+    }
+
+    /**
+     * Returns the index of the classpath, reusing the one in memory or in the cache file if the classpath has not
+     * changed, and updating the cache file otherwise.
+     *
+     * @param classpath
+     * @param cacheFile
+     * @return
+     */
+    public static ClassIndex load(List<File> classpath, File cacheFile) {
+        if (classpath.stream().noneMatch(File::exists)) {
+            return EMPTY;
+        }
+
+        var key = classpath.toString();
+        long fingerprint = fingerprint(classpath);
+
+        var loaded = LOADED.get(key);
+        if (loaded != null && loaded.fingerprint == fingerprint) {
+            return loaded;
+        }
+
+        var index = readCache(cacheFile, fingerprint).orElse(null);
+        if (index == null) {
+            index = build(classpath);
+            writeCache(index, cacheFile);
+        }
+
+        LOADED.put(key, index);
+
+        return index;
+    }
+
+    /**
+     * @param name the name of a class, either internal ("foo/bar/A") or as in an import ("foo.bar.A")
+     * @return the class, if it is in the classpath
+     */
+    public Optional<ImportedClass> find(String name) {
+        return Optional.ofNullable(classes.get(name.replace('.', '/')));
+    }
+
+    public Collection<ImportedClass> getClasses() {
+        return classes.values();
+    }
+
+    public boolean isEmpty() {
+        return classes.isEmpty();
+    }
+
+    /**
+     * @param className  the name of the class, as in {@link #find(String)}
+     * @param methodName
+     * @param numArgs
+     * @return the methods of the class or of its superclasses with the given name and number of parameters. Methods
+     * of a class hide the methods of its superclasses with the same name
+     */
+    public List<ImportedClass.Member> findMethods(String className, String methodName, int numArgs) {
+        var current = find(className);
+
+        while (current.isPresent()) {
+            var methods = new ArrayList<ImportedClass.Member>();
+            for (var method : current.get().getMethods()) {
+                if (method.getName().equals(methodName) && method.getParameterTypes().size() == numArgs) {
+                    methods.add(method);
+                }
+            }
+
+            if (!methods.isEmpty()) {
+                return methods;
+            }
+
+            var superName = current.get().getSuperName();
+            current = superName != null ? find(superName) : Optional.empty();
+        }
+
+        return List.of();
+    }
+
+    /**
+     * @param className
+     * @param methodName
+     * @param numArgs
+     * @return the return type of the method, if it is known and the same for every overload with that number of
+     * parameters
+     */
+    public Optional<Type> getReturnType(String className, String methodName, int numArgs) {
+        var methods = findMethods(className, methodName, numArgs);
+        if (methods.isEmpty()) {
+            return Optional.empty();
+        }
+
+        var returnType = methods.get(0).getType();
+        for (var method : methods) {
+            if (!method.getType().equals(returnType)) {
+                return Optional.empty();
+            }
+        }
+
+        return Optional.of(returnType);
+    }
+
+    /**
+     * @param className
+     * @param fieldName
+     * @return the type of the field of the class or of its superclasses
+     */
+    public Optional<Type> getFieldType(String className, String fieldName) {
+        var current = find(className);
+
+        while (current.isPresent()) {
+            for (var field : current.get().getFields()) {
+                if (field.getName().equals(fieldName)) {
+                    return Optional.of(field.getType());
+                }
+            }
+
+            var superName = current.get().getSuperName();
+            current = superName != null ? find(superName) : Optional.empty();
+        }
+
+        return Optional.empty();
+    }
+
+    private interface ClassFileEntry {
+        byte[] read() throws IOException;
+    }
+
+    private interface ClassFileVisitor {
+        void visit(ClassFileEntry entry, String name, long size, long lastModified);
+    }
+
+    /**
+     * Visits the class files of the classpath, in order, with their internal class names.
+     */
+    private static void forEachClassFile(List<File> classpath, ClassFileVisitor visitor) {
+        for (var file : classpath) {
+            if (file.isDirectory()) {
+                forEachClassFile(file, "", visitor);
+            } else if (file.isFile() && file.getName().endsWith(".jar")) {
+                try (var jar = new ZipFile(file)) {
+                    var entries = jar.entries();
+                    while (entries.hasMoreElements()) {
+                        var entry = entries.nextElement();
+                        var name = entry.getName();
+                        if (!name.endsWith(".class") || name.endsWith("module-info.class")) {
+                            continue;
+                        }
+
+                        visitor.visit(() -> jar.getInputStream(entry).readAllBytes(),
+                                name.substring(0, name.length() - ".class".length()), entry.getSize(),
+                                entry.getTime());
+                    }
+                } catch (IOException e) {
+                    // A jar that cannot be opened adds no classes
+                }
+            }
+        }
+    }
+
+    private static void forEachClassFile(File directory, String packagePrefix, ClassFileVisitor visitor) {
+        var files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        // Sorted, so that the fingerprint does not depend on the order of the file system
+        Arrays.sort(files);
+        for (var file : files) {
+            var name = file.getName();
+            if (file.isDirectory()) {
+                forEachClassFile(file, packagePrefix + name + "/", visitor);
+            } else if (name.endsWith(".class")) {
+                visitor.visit(() -> Files.readAllBytes(file.toPath()),
+                        packagePrefix + name.substring(0, name.length() - ".class".length()), file.length(),
+                        file.lastModified());
+            }
+        }
+    }
+
+    private static long fingerprint(List<File> classpath) {
+        var hash = new long[]{1125899906842597L};
+        for (var file : classpath) {
+            hash[0] = 31 * hash[0] + file.getAbsolutePath().hashCode();
+        }
+
+        forEachClassFile(classpath, (entry, name, size, lastModified) -> {
+            hash[0] = 31 * hash[0] + name.hashCode();
+            hash[0] = 31 * hash[0] + size;
+            hash[0] = 31 * hash[0] + lastModified;
+        });
+
+        return hash[0];
+    }
+
+    private static Optional<ClassIndex> readCache(File cacheFile, long fingerprint) {
+        if (!cacheFile.isFile()) {
+            return Optional.empty();
+        }
+
+        try (var channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != CACHE_MAGIC || buffer.getInt() != CACHE_VERSION
+                    || buffer.getLong() != fingerprint) {
+                return Optional.empty();
+            }
+
+            int numClasses = buffer.getInt();
+            var classes = new HashMap<String, ImportedClass>(numClasses * 2);
+            for (int i = 0; i < numClasses; i++) {
+                var name = readString(buffer);
+                var superName = readString(buffer);
+                var fields = readMembers(buffer);
+                var methods = readMembers(buffer);
+
+                classes.put(name, new ImportedClass(name, superName.isEmpty() ? null : superName, fields, methods));
+            }
+
+            var index = new ClassIndex(classes);
+            index.fingerprint = fingerprint;
+
+            return Optional.of(index);
+        } catch (IOException | RuntimeException e) {
+            // A cache that cannot be read is rebuilt
+            return Optional.empty();
+        }
+    }
+
+    private static List<ImportedClass.Member> readMembers(ByteBuffer buffer) {
+        int count = buffer.getShort() & 0xFFFF;
+        var members = new ArrayList<ImportedClass.Member>(count);
+
+        for (int i = 0; i < count; i++) {
+            var name = readString(buffer);
+            var descriptor = readString(buffer);
+            int accessFlags = buffer.getShort() & 0xFFFF;
+            members.add(new ImportedClass.Member(name, descriptor, accessFlags));
+        }
+
+        return members;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        var bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeCache(ClassIndex index, File cacheFile) {
+        File tempFile = null;
+        try {
+            var parent = cacheFile.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                Files.createDirectories(parent.toPath());
+            }
+
+            // Written to a temporary file first, so that other compilations never map a partial index
+            tempFile = File.createTempFile(cacheFile.getName(), ".tmp", parent);
+            try (var out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(CACHE_MAGIC);
+                out.writeInt(CACHE_VERSION);
+                out.writeLong(index.fingerprint);
+                out.writeInt(index.classes.size());
+
+                for (var importedClass : index.classes.values()) {
+                    writeString(out, importedClass.getName());
+                    writeString(out, importedClass.getSuperName() != null ? importedClass.getSuperName() : "");
+                    writeMembers(out, importedClass.getFields());
+                    writeMembers(out, importedClass.getMethods());
+                }
+            }
+
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The cache is only an optimization, the index is rebuilt on the next run
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    private static void writeMembers(DataOutputStream out, List<ImportedClass.Member> members) throws IOException {
+        out.writeShort(members.size());
+
+        for (var member : members) {
+            writeString(out, member.getName());
+            writeString(out, member.getDescriptor());
+            out.writeShort(member.getAccessFlags());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        var bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,147 @@
+package pt.up.fe.comp2024.symboltable;
+
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp2024.ast.Types;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The signatures of the methods and fields of a compiled class, as read from its class file.
+ * <p>
+ * Class names are kept in the internal form of the JVM, e.g. "foo/bar/A".
+ */
+public class ImportedClass {
+
+    /**
+     * A method or field of the class.
+     */
+    public static class Member {
+
+        private static final int ACC_STATIC = 0x0008;
+
+        private final String name;
+        private final String descriptor;
+        private final int accessFlags;
+
+        public Member(String name, String descriptor, int accessFlags) {
+            this.name = name;
+            this.descriptor = descriptor;
+            this.accessFlags = accessFlags;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the JVM descriptor, e.g. "(I[I)Z" for a method or "I" for a field
+         */
+        public String getDescriptor() {
+            return descriptor;
+        }
+
+        public int getAccessFlags() {
+            return accessFlags;
+        }
+
+        public boolean isStatic() {
+            return (accessFlags & ACC_STATIC) != 0;
+        }
+
+        /**
+         * @return the types of the parameters of a method
+         */
+        public List<Type> getParameterTypes() {
+            var types = new ArrayList<Type>();
+
+            int i = 1;
+            while (descriptor.charAt(i) != ')') {
+                int end = endOfType(descriptor, i);
+                types.add(toType(descriptor.substring(i, end)));
+                i = end;
+            }
+
+            return types;
+        }
+
+        /**
+         * @return the type of a field, or the return type of a method
+         */
+        public Type getType() {
+            return toType(descriptor.substring(descriptor.lastIndexOf(')') + 1));
+        }
+
+        @Override
+        public String toString() {
+            return name + descriptor;
+        }
+    }
+
+    private final String name;
+    private final String superName;
+    private final List<Member> fields;
+    private final List<Member> methods;
+
+    public ImportedClass(String name, String superName, List<Member> fields, List<Member> methods) {
+        this.name = name;
+        this.superName = superName;
+        this.fields = fields;
+        this.methods = methods;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the name of the class without its package, which is how J-- code refers to it
+     */
+    public String getSimpleName() {
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * @return the internal name of the superclass, or null for java/lang/Object
+     */
+    public String getSuperName() {
+        return superName;
+    }
+
+    public List<Member> getFields() {
+        return Collections.unmodifiableList(fields);
+    }
+
+    public List<Member> getMethods() {
+        return Collections.unmodifiableList(methods);
+    }
+
+    /**
+     * @param descriptor a field descriptor, e.g. "I", "[I" or "Ljava/lang/String;"
+     * @return the J-- type of the descriptor. Classes are named without their package, as in J-- code
+     */
+    public static Type toType(String descriptor) {
+        boolean isArray = descriptor.startsWith("[");
+        var element = isArray ? descriptor.substring(1) : descriptor;
+
+        String typeName = switch (element.charAt(0)) {
+            case 'I' -> "int";
+            case 'Z' -> "boolean";
+            case 'V' -> "void";
+            case 'L' -> element.substring(element.lastIndexOf('/') + 1, element.length() - 1);
+            default -> element;
+        };
+
+        return Types.get(typeName, isArray);
+    }
+
+    private static int endOfType(String descriptor, int start) {
+        int i = start;
+        while (descriptor.charAt(i) == '[') {
+            i++;
+        }
+
+        return descriptor.charAt(i) == 'L' ? descriptor.indexOf(';', i) + 1 : i + 1;
+    }
+}
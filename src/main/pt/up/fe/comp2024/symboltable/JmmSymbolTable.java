@@ -20,6 +20,7 @@ public class JmmSymbolTable implements SymbolTable {
     private final Map<String, List<Symbol>> locals;
     private List<? extends Symbol> fields;
     private String superClass;
+    private final ClassIndex classIndex;
 
     public JmmSymbolTable(String className,
                           List<String> methods,
@@ -27,6 +28,16 @@ public class JmmSymbolTable implements SymbolTable {
                           Map<String, Type> returnTypes,
                           Map<String, List<Symbol>> params,
                           Map<String, List<Symbol>> locals, String superClass, List<Symbol> fields) {
+        this(className, methods, imports, returnTypes, params, locals, superClass, fields, ClassIndex.EMPTY);
+    }
+
+    public JmmSymbolTable(String className,
+                          List<String> methods,
+                          List<String> imports,
+                          Map<String, Type> returnTypes,
+                          Map<String, List<Symbol>> params,
+                          Map<String, List<Symbol>> locals, String superClass, List<Symbol> fields,
+                          ClassIndex classIndex) {
         this.className = className;
         this.imports = imports;
         this.methods = methods;
@@ -35,7 +46,15 @@ public class JmmSymbolTable implements SymbolTable {
         this.locals = locals;
         this.superClass=superClass;
         this.fields = fields;
+        this.classIndex = classIndex;
+
+    }
 
+    /**
+     * @return the signatures of the classes in the classpath, which include the imported classes
+     */
+    public ClassIndex getClassIndex() {
+        return classIndex;
     }
 
     @Override
@@ -4,6 +4,7 @@ import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.Types;
 import pt.up.fe.specs.util.SpecsCheck;
 import java.util.*;
 import static pt.up.fe.comp2024.ast.Kind.*;
@@ -21,6 +22,10 @@ import java.util.HashMap;
 public class JmmSymbolTableBuilder {
 
     public static JmmSymbolTable build(JmmNode root) {
+        return build(root, ClassIndex.EMPTY);
+    }
+
+    public static JmmSymbolTable build(JmmNode root, ClassIndex classIndex) {
         var classDecl = root.getChildren(Kind.CLASS_DECLARATION).get(0);
         SpecsCheck.checkArgument(Kind.CLASS_DECLARATION.check(classDecl), () -> "Expected a class declaration: " + classDecl);
         String className = classDecl.get("name");
@@ -32,7 +37,8 @@ public class JmmSymbolTableBuilder {
         String superClass = classDecl.getOptional("sname").orElse(null);
         List<Symbol> fields = buildFields(classDecl); // Convert ExtendedSymbol to Symbol
 
-        return new JmmSymbolTable(className, methods, imports, returnTypes, params, locals, superClass, fields);
+        return new JmmSymbolTable(className, methods, imports, returnTypes, params, locals, superClass, fields,
+                classIndex);
     }
 
     private static List<String> buildImports(JmmNode root) {
@@ -75,7 +81,7 @@ public class JmmSymbolTableBuilder {
 
     private static Type getType(JmmNode node) {
         boolean isArray = node.getObject("isArray", Boolean.class);
-        return new Type(node.get("value"), isArray);
+        return Types.get(node.get("value"), isArray);
     }
 
     private static Map<String, List<Symbol>> buildParams(JmmNode classDecl) {
@@ -0,0 +1,165 @@
+package pt.up.fe.comp.bench;
+
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.backend.JasminRunner;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Measures how fast the compiled programs run with each configuration of the compiler.
+ * <p>
+ * Each program is compiled with every configuration and loaded in this JVM with {@link JasminRunner}. The cold start
+ * time is the time of the first run in a new class loader, which includes assembling and loading the class and runs
+ * in the interpreter. The steady state time is the median of the runs made after the program has run long enough for
+ * the JIT compiler to compile it. Every configuration must give the same output as the first one.
+ * <p>
+ * Run with {@code gradle benchmark}. The programs to measure can be given as arguments, as resources: .jmm files go
+ * through the whole compiler, .ollir files start at the optimization stage.
+ */
+public class RuntimeBenchmark {
+
+    private static final List<String> PROGRAMS = List.of(
+            "pt/up/fe/comp/bench/QuickSort.ollir",
+            "pt/up/fe/comp/bench/ArrayLoops.ollir",
+            "pt/up/fe/comp/bench/Recursion.ollir");
+
+    private static final Map<String, Map<String, String>> CONFIGS = new LinkedHashMap<>();
+
+    static {
+        CONFIGS.put("baseline", Map.of());
+        CONFIGS.put("-o", Map.of("optimize", "true"));
+        CONFIGS.put("-r=0", Map.of("registerAllocation", "0"));
+        CONFIGS.put("-o -r=0", Map.of("optimize", "true", "registerAllocation", "0"));
+    }
+
+    private static final int COLD_RUNS = 10;
+
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final int MIN_WARMUP_RUNS = 20;
+
+    private static final long MEASURE_NANOS = 1_000_000_000L;
+    private static final int MIN_MEASURED_RUNS = 30;
+
+    public static void main(String[] args) {
+        var programs = args.length > 0 ? Arrays.asList(args) : PROGRAMS;
+
+        // The compiler, the assembler and the runner are compiled by the JIT compiler first, so that they do not add
+        // to the cold start of the first configuration that is measured
+        for (var program : programs) {
+            for (var config : CONFIGS.values()) {
+                measureColdStart(JasminRunner.getDefault(), compile(program, config));
+            }
+        }
+
+        System.out.printf("%-16s %-10s %-8s %12s %12s %8s%n",
+                "program", "config", "code", "cold (ms)", "steady (ms)", "speedup");
+
+        for (var program : programs) {
+            benchmark(program);
+        }
+    }
+
+    private static void benchmark(String resource) {
+        var name = SpecsIo.removeExtension(new File(resource).getName());
+        var runner = JasminRunner.getDefault();
+
+        String baselineCode = null;
+        String baselineOutput = null;
+        double baselineSteady = 0;
+
+        for (var config : CONFIGS.entrySet()) {
+            var program = compile(resource, config.getValue());
+
+            var output = runner.load(program).run(Collections.emptyList(), null);
+            if (output.getReturnValue() != 0) {
+                throw new RuntimeException("Program " + name + " failed with " + config.getKey() + ":\n"
+                        + output.getOutput());
+            }
+
+            if (baselineOutput == null) {
+                baselineCode = program.getJasminCode();
+                baselineOutput = output.getOutput();
+            } else if (!baselineOutput.equals(output.getOutput())) {
+                throw new RuntimeException("Program " + name + " prints something else with " + config.getKey()
+                        + ":\n" + output.getOutput() + "\ninstead of:\n" + baselineOutput);
+            }
+
+            double cold = measureColdStart(runner, program);
+            double steady = measureSteadyState(runner, program);
+            if (baselineSteady == 0) {
+                baselineSteady = steady;
+            }
+
+            var code = program.getJasminCode().equals(baselineCode) ? "same" : "changed";
+            System.out.printf("%-16s %-10s %-8s %12.3f %12.3f %7.2fx%n",
+                    name, config.getKey(), code, cold, steady, baselineSteady / steady);
+        }
+    }
+
+    private static JasminResult compile(String resource, Map<String, String> config) {
+        var code = SpecsIo.getResource(resource);
+
+        OllirResult ollirResult;
+        if (resource.endsWith(".jmm")) {
+            ollirResult = TestUtils.optimize(code, config);
+        } else {
+            ollirResult = new JmmOptimizationImpl().optimize(new OllirResult(code, config));
+        }
+        TestUtils.noErrors(ollirResult.getReports());
+
+        var jasminResult = new JasminBackendImpl().toJasmin(ollirResult);
+        TestUtils.noErrors(jasminResult.getReports());
+
+        return jasminResult;
+    }
+
+    /**
+     * @return the median time in milliseconds of loading the program in a new class loader and running it once
+     */
+    private static double measureColdStart(JasminRunner runner, JasminResult program) {
+        var times = new long[COLD_RUNS];
+
+        for (int i = 0; i < times.length; i++) {
+            long start = System.nanoTime();
+            runner.load(program).run(Collections.emptyList(), null);
+            times[i] = System.nanoTime() - start;
+        }
+
+        return median(times);
+    }
+
+    /**
+     * @return the median time in milliseconds of running the program, once it was compiled by the JIT compiler
+     */
+    private static double measureSteadyState(JasminRunner runner, JasminResult program) {
+        var loaded = runner.load(program);
+
+        long warmupStart = System.nanoTime();
+        for (int i = 0; i < MIN_WARMUP_RUNS || System.nanoTime() - warmupStart < WARMUP_NANOS; i++) {
+            loaded.run(Collections.emptyList(), null);
+        }
+
+        var times = new ArrayList<Long>();
+        long measureStart = System.nanoTime();
+        while (times.size() < MIN_MEASURED_RUNS || System.nanoTime() - measureStart < MEASURE_NANOS) {
+            long start = System.nanoTime();
+            loaded.run(Collections.emptyList(), null);
+            times.add(System.nanoTime() - start);
+        }
+
+        return median(times.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    private static double median(long[] nanos) {
+        var sorted = nanos.clone();
+        Arrays.sort(sorted);
+
+        return sorted[sorted.length / 2] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,78 @@
+package pt.up.fe.comp.cp1;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp2024.ast.Types;
+import pt.up.fe.comp2024.symboltable.ClassIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class ClassIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<File> getLibs() {
+        return List.of(new File(TestUtils.getLibsClasspath()));
+    }
+
+    @Test
+    public void methodSignatures() {
+        var index = ClassIndex.build(getLibs());
+
+        assertEquals(Optional.of(Types.INT), index.getReturnType("io", "read", 0));
+        assertEquals(Optional.of(Types.VOID), index.getReturnType("io", "println", 1));
+        assertEquals(Optional.of(Types.INT_ARRAY), index.getReturnType("BoardBase", "playerTurn", 1));
+        assertEquals(Optional.of(Types.BOOLEAN), index.getReturnType("Quicksort", "quicksort", 3));
+        assertEquals(Optional.empty(), index.getReturnType("Quicksort", "quicksort", 2));
+
+        var random = index.findMethods("MathUtils", "random", 2).get(0);
+        assertTrue(random.isStatic());
+        assertEquals(List.of(Types.INT, Types.INT), random.getParameterTypes());
+    }
+
+    @Test
+    public void classesInPackagesAndSuperclasses() {
+        var index = ClassIndex.build(getLibs());
+
+        assertTrue(index.find("foo.bar.A").isPresent());
+        assertTrue(index.find("pt/up/fe/comp/Comp").isPresent());
+        assertEquals("inheritanceAB/A", index.find("inheritanceAB.B").orElseThrow().getSuperName());
+        assertEquals(Optional.of(Types.INT), index.getFieldType("GetterAndSetter", "a"));
+    }
+
+    @Test
+    public void cacheFollowsClasspath() throws IOException {
+        var classes = folder.newFolder("classes");
+        var cacheFile = new File(folder.getRoot(), "index.bin");
+        var libs = new File(TestUtils.getLibsClasspath());
+        Files.copy(new File(libs, "io.class").toPath(), new File(classes, "io.class").toPath());
+
+        var index = ClassIndex.load(List.of(classes), cacheFile);
+        assertTrue(cacheFile.isFile());
+        assertTrue(index.find("io").isPresent());
+        assertFalse(index.find("MathUtils").isPresent());
+
+        // A new class file changes the classpath, so the index is built again
+        Files.copy(new File(libs, "MathUtils.class").toPath(), new File(classes, "MathUtils.class").toPath());
+        index = ClassIndex.load(List.of(classes), cacheFile);
+        assertEquals(Optional.of(Types.INT), index.getReturnType("MathUtils", "random", 2));
+        assertEquals(Optional.of(Types.INT), index.getReturnType("io", "read", 0));
+    }
+
+    @Test
+    public void missingClasspathIsEmpty() {
+        var index = ClassIndex.load(List.of(new File(folder.getRoot(), "missing")), new File(folder.getRoot(), "i"));
+
+        assertTrue(index.isEmpty());
+        assertFalse(new File(folder.getRoot(), "i").exists());
+    }
+}
@@ -0,0 +1,127 @@
+package pt.up.fe.comp.cp1;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.comp2024.ast.CompactJmmNode;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.ArrayList;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class CompactAstTest {
+
+    private static void assertSameAsAntlrConverter(String resource) {
+        var code = SpecsIo.getResource(resource);
+
+        var lexer = new JavammLexer(new ANTLRInputStream(code));
+        var parser = new JavammParser(new CommonTokenStream(lexer));
+        var expected = AntlrParser.parse(lexer, parser, "program").getRootNode();
+
+        var actual = TestUtils.parse(code).getRootNode();
+
+        assertSameTree(expected, actual);
+    }
+
+    private static void assertSameTree(JmmNode expected, JmmNode actual) {
+        assertEquals(expected.getKind(), actual.getKind());
+        assertEquals(new ArrayList<>(expected.getHierarchy()), new ArrayList<>(actual.getHierarchy()));
+        assertEquals(new TreeSet<>(expected.getAttributes()), new TreeSet<>(actual.getAttributes()));
+
+        for (var attribute : expected.getAttributes()) {
+            assertEquals("Attribute '" + attribute + "' of " + expected,
+                    String.valueOf(expected.getObject(attribute)), String.valueOf(actual.getObject(attribute)));
+        }
+
+        assertEquals(expected.getNumChildren(), actual.getNumChildren());
+        for (int i = 0; i < expected.getNumChildren(); i++) {
+            assertSameTree(expected.getJmmChild(i), actual.getJmmChild(i));
+        }
+    }
+
+    @Test
+    public void sameTreeMethodsAndFields() {
+        assertSameAsAntlrConverter("pt/up/fe/comp/cp1/symboltable/MethodsAndFields.jmm");
+    }
+
+    @Test
+    public void sameTreeImports() {
+        assertSameAsAntlrConverter("pt/up/fe/comp/cp1/symboltable/Imports.jmm");
+    }
+
+    @Test
+    public void sameTreeStatementsAndCalls() {
+        assertSameAsAntlrConverter("pt/up/fe/comp/cp2/apps/Simple.jmm");
+    }
+
+    @Test
+    public void compactNodeFields() {
+        var root = TestUtils.parse("class Foo { int a; public int bar(int x) { return x + 1; } }").getRootNode();
+
+        assertTrue(root instanceof CompactJmmNode);
+        assertEquals(Kind.PROGRAM_DECLARATION, ((CompactJmmNode) root).getNodeKind());
+
+        var classDecl = root.getJmmChild(0);
+        assertEquals("Foo", classDecl.get("name"));
+        assertEquals(1, NodeUtils.getLine(classDecl));
+
+        // Attributes added after parsing do not have a slot of their own
+        classDecl.put("type", "int");
+        assertEquals("int", classDecl.get("type"));
+        assertTrue(classDecl.getAttributes().contains("type"));
+
+        var copy = classDecl.copyNode();
+        assertEquals("Foo", copy.get("name"));
+        assertEquals("int", copy.get("type"));
+        assertEquals(0, copy.getNumChildren());
+    }
+
+    @Test
+    public void kindOfNode() {
+        var root = TestUtils.parse("class Foo { public int bar(int... xs) { return this.bar(xs); } }").getRootNode();
+
+        var method = root.getJmmChild(0).getJmmChild(0);
+        assertEquals(Kind.METHOD_DECLARATION, Kind.fromNode(method));
+        assertTrue(Kind.VARARG.check(method.getJmmChild(1).getJmmChild(0)));
+
+        var call = method.getJmmChild(method.getNumChildren() - 1).getJmmChild(0);
+        assertEquals(Kind.METHOD_CALL, Kind.fromNode(call));
+        assertTrue(Kind.THIS.check(call.getJmmChild(0)));
+        assertFalse(Kind.VAR_REF_EXPR.check(call.getJmmChild(0)));
+    }
+
+    @Test
+    public void failedRemovalsReported() {
+        var root = TestUtils.parse("class Foo { int a; }").getRootNode();
+        var classDecl = root.getJmmChild(0);
+        var field = classDecl.getJmmChild(0);
+
+        // A node that is not a child is not found, and the children are kept
+        assertEquals(-1, root.removeChild(field));
+        assertEquals(1, classDecl.getNumChildren());
+
+        try {
+            classDecl.removeChild(1);
+            fail("Expected an IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            assertEquals(1, classDecl.getNumChildren());
+        }
+
+        field.detach();
+        try {
+            field.detach();
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertEquals(0, classDecl.getNumChildren());
+        }
+    }
+}
@@ -1,15 +1,23 @@
 package pt.up.fe.comp.cp2;
 
 import org.junit.Test;
+import pt.up.fe.comp.CpUtils;
 import pt.up.fe.comp.TestUtils;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.backend.JasminRunner;
 import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
 
 import java.io.File;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 public class JasminTest {
 
@@ -43,6 +51,124 @@ public class JasminTest {
         testOllirToJasmin("pt/up/fe/comp/cp2/jasmin/OllirToJasminFields.ollir");
     }
 
+    @Test
+    public void ollirToJasminBranches() {
+        var ollirResult = new OllirResult(SpecsIo.getResource("pt/up/fe/comp/cp2/jasmin/OllirToJasminBranches.ollir"),
+                Collections.emptyMap());
+        var jasminResult = TestUtils.backend(ollirResult);
+
+        // Comparisons with zero test the value directly, and negations are merged into the branch
+        var values = CpUtils.getJasminMethod(jasminResult, "values");
+        CpUtils.matches(values, "ifgt\\s+\\w+");
+        CpUtils.matches(values, "ifeq\\s+l5");
+        assertFalse(values.contains("if_icmplt cmp0"));
+
+        // The loop condition jumps out of the loop instead of jumping over a goto
+        var count = CpUtils.getJasminMethod(jasminResult, "count");
+        CpUtils.matches(count, "if_icmpge\\s+whileEnd0");
+        assertEquals(1, count.split("goto").length - 1);
+
+        CpUtils.runJasmin(jasminResult, "1111101\n11010\n10");
+    }
+
+    @Test
+    public void ollirToJasminManyLocals() {
+        // Enough variables for registers that do not fit in a byte
+        var code = new StringBuilder("import io;\nManyLocals {\n");
+        code.append(".construct ManyLocals().V {\ninvokespecial(this, \"<init>\").V;\n}\n");
+        code.append(".method public static main(args.array.String).V {\n");
+        for (int i = 0; i < 300; i++) {
+            code.append("v").append(i).append(".i32 :=.i32 ").append(i).append(".i32;\n");
+        }
+        code.append("v299.i32 :=.i32 v299.i32 +.i32 1000.i32;\n");
+        code.append("v298.i32 :=.i32 v298.i32 -.i32 1.i32;\n");
+        code.append("s.i32 :=.i32 v0.i32 +.i32 v299.i32;\n");
+        code.append("s.i32 :=.i32 s.i32 +.i32 v298.i32;\n");
+        code.append("invokestatic(io, \"println\", s.i32).V;\nret.V;\n}\n}\n");
+
+        var jasminResult = TestUtils.backend(new OllirResult(code.toString(), Collections.emptyMap()));
+
+        // The first registers use the short forms, and constants are added in place
+        CpUtils.matches(jasminResult, "istore_1");
+        CpUtils.matches(jasminResult, "iload_1");
+        CpUtils.matches(jasminResult, "iinc\\s+\\d+\\s+1000");
+        CpUtils.matches(jasminResult, "iinc\\s+\\d+\\s+-1");
+
+        CpUtils.runJasmin(jasminResult, "1596");
+    }
+
+    @Test
+    public void ollirToJasminParallel() {
+        var code = new StringBuilder("import io;\nManyMethods {\n");
+        code.append(".construct ManyMethods().V {\ninvokespecial(this, \"<init>\").V;\n}\n");
+        code.append(".method public static main(args.array.String).V {\n");
+        code.append("o.ManyMethods :=.ManyMethods new(ManyMethods).ManyMethods;\n");
+        code.append("invokespecial(o.ManyMethods, \"<init>\").V;\n");
+        code.append("r.i32 :=.i32 invokevirtual(o.ManyMethods, \"m199\", 3.i32).i32;\n");
+        code.append("invokestatic(io, \"println\", r.i32).V;\nret.V;\n}\n");
+        for (int i = 0; i < 200; i++) {
+            code.append(".method public m").append(i).append("(a.i32).i32 {\n");
+            code.append("b.bool :=.bool a.i32 <.bool ").append(i).append(".i32;\n");
+            code.append("if (b.bool) goto small;\n");
+            code.append("r.i32 :=.i32 a.i32 *.i32 2.i32;\nret.i32 r.i32;\n");
+            code.append("small:\nr.i32 :=.i32 a.i32 +.i32 ").append(i).append(".i32;\nret.i32 r.i32;\n}\n");
+        }
+        code.append("}\n");
+
+        var sequential = TestUtils.backend(new OllirResult(code.toString(), Collections.emptyMap()));
+        var parallel = TestUtils.backend(new OllirResult(code.toString(), Map.of("parallel", "true")));
+
+        // The methods are in the same order, with the same code
+        assertEquals(sequential.getJasminCode(), parallel.getJasminCode());
+        CpUtils.runJasmin(parallel, "202");
+    }
+
+    @Test
+    public void inProcessRunnerIsolatesRuns() {
+        var code = "import io;\nReader {\n"
+                + ".construct Reader().V {\ninvokespecial(this, \"<init>\").V;\n}\n"
+                + ".method public static main(args.array.String).V {\n"
+                + "a.i32 :=.i32 invokestatic(io, \"read\").i32;\n"
+                + "b.i32 :=.i32 invokestatic(io, \"read\").i32;\n"
+                + "invokestatic(io, \"println\", a.i32).V;\n"
+                + "invokestatic(io, \"println\", b.i32).V;\nret.V;\n}\n}\n";
+        var program = TestUtils.backend(new OllirResult(code, Collections.emptyMap()));
+
+        // Each run reads its own input and prints to its own output, even when they run at the same time
+        var runs = IntStream.range(0, 50)
+                .mapToObj(i -> JasminRunner.getDefault().submit(program, List.of(), i + "\n" + (i * 2) + "\n"))
+                .toList();
+        for (int i = 0; i < runs.size(); i++) {
+            var output = runs.get(i).join();
+            assertEquals(0, output.getReturnValue());
+            assertEquals(i + "\n" + (i * 2), SpecsStrings.normalizeFileContents(output.getOutput(), true));
+        }
+
+        // The numbers left in the buffer of io by a run are not seen by the next one
+        assertEquals("1\n2", SpecsStrings.normalizeFileContents(
+                JasminRunner.getDefault().run(program, List.of(), "1 2 3\n").getOutput(), true));
+        assertEquals("4\n5", SpecsStrings.normalizeFileContents(
+                JasminRunner.getDefault().run(program, List.of(), "4 5\n").getOutput(), true));
+    }
+
+    @Test
+    public void inProcessRunnerTimesOut() {
+        var sleeper = new JasminResult(".class public Sleeper\n.super java/lang/Object\n"
+                + ".method public static main([Ljava/lang/String;)V\n.limit stack 2\n.limit locals 1\n"
+                + "ldc2_w 60000\ninvokestatic java/lang/Thread/sleep(J)V\nreturn\n.end method\n");
+        var hello = TestUtils.backend(SpecsIo.getResource("pt/up/fe/comp/cp2/apps/HelloWorld.jmm"));
+
+        try (var runner = new JasminRunner(List.of(new File(TestUtils.getLibsClasspath())), 1,
+                Duration.ofMillis(200))) {
+            assertEquals(-1, runner.run(sleeper).getReturnValue());
+
+            // The only thread of the pool was taken by the program that timed out, and was replaced
+            var output = runner.run(hello);
+            assertEquals(0, output.getReturnValue());
+            assertEquals("Hello, World!", output.getOutput().strip());
+        }
+    }
+
     public static void testOllirToJasmin(String resource, String expectedOutput) {
         JasminResult result = null;
 
@@ -65,7 +191,7 @@ public class JasminTest {
         
         var testName = new File(resource).getName();
         System.out.println(testName + ":\n" + result.getJasminCode());
-        var runOutput = result.runWithFullOutput();
+        var runOutput = JasminRunner.getDefault().run(result);
         assertEquals("Error while running compiled Jasmin: " + runOutput.getOutput(), 0, runOutput.getReturnValue());
         System.out.println("\n Result: " + runOutput.getOutput());
 
@@ -7,7 +7,9 @@ import pt.up.fe.specs.util.SpecsIo;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.function.Consumer;
 
 import static org.hamcrest.CoreMatchers.hasItem;
@@ -37,6 +39,36 @@ public class OllirTest {
         testJmmCompilation("pt/up/fe/comp/cp2/ollir/CompileAssignment.jmm", this::compileAssignment);
     }
 
+    @Test
+    public void compileParallel() {
+        var code = new StringBuilder("class ManyMethods {\n");
+        code.append("public static void main(String[] args) {\n}\n");
+        for (int i = 0; i < 100; i++) {
+            code.append("public int m").append(i).append("(int a) {\n");
+            code.append("int r;\n");
+            code.append("if (a < ").append(i).append(") {\nr = a + ").append(i).append(" * 2;\n}\n");
+            code.append("else {\nr = a * 3;\n}\n");
+            code.append("return r;\n}\n");
+        }
+        code.append("}\n");
+
+        var sequential = TestUtils.optimize(code.toString(), Collections.emptyMap());
+        var parallel = TestUtils.optimize(code.toString(), Map.of("parallel", "true"));
+
+        // The methods are in the same order, with the same code
+        assertEquals(sequential.getOllirCode(), parallel.getOllirCode());
+
+        // The temporaries and labels of each method are numbered from zero
+        var classUnit = parallel.getOllirClass();
+        classUnit.buildVarTables();
+        for (var method : classUnit.getMethods()) {
+            if (method.getMethodName().matches("m\\d+")) {
+                assertTrue(method.getVarTable().containsKey("tmp0"));
+                assertTrue(method.getLabels().containsKey("if0"));
+            }
+        }
+    }
+
     public static void testJmmCompilation(String resource, Consumer<ClassUnit> ollirTester, String executionOutput) {
 
         // If AstToJasmin pipeline, generate Jasmin
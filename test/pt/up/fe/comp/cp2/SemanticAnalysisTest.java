@@ -113,6 +113,13 @@ public class SemanticAnalysisTest {
         TestUtils.noErrors(result);
     }
 
+    @Test
+    public void staticImportedCallAssumedCorrect() {
+        var result = TestUtils
+                .analyse(SpecsIo.getResource("pt/up/fe/comp/cp2/semanticanalysis/StaticImportedCallMismatch.jmm"));
+        TestUtils.noErrors(result);
+    }
+
     @Test
     public void incompatibleArguments() {
         var result = TestUtils
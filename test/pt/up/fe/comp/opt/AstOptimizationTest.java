@@ -0,0 +1,130 @@
+package pt.up.fe.comp.opt;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.backend.JasminRunner;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class AstOptimizationTest {
+
+    private static JmmSemanticsResult optimize(String resource, boolean optimize) {
+        var semanticsResult = TestUtils.analyse(SpecsIo.getResource("pt/up/fe/comp/opt/jmm/" + resource),
+                Map.of("optimize", String.valueOf(optimize)));
+        TestUtils.noErrors(semanticsResult);
+
+        return new JmmOptimizationImpl().optimize(semanticsResult);
+    }
+
+    private static JmmNode getMethod(JmmSemanticsResult semanticsResult, String name) {
+        return semanticsResult.getRootNode().getDescendants("MethodDeclaration").stream()
+                .filter(method -> method.get("name").equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static List<String> getStatementKinds(JmmNode method) {
+        return method.getChildren().stream()
+                .map(JmmNode::getKind)
+                .filter(kind -> !List.of("VARIABLE_INT", "BOOL", "ParamDeclaration", "VarDecl").contains(kind))
+                .toList();
+    }
+
+    @Test
+    public void constantsFolded() {
+        var fold = getMethod(optimize("ConstantFolding.jmm", true), "fold");
+
+        // The first assignment is a single literal, and both ifs were replaced by the statements of their branch
+        assertEquals(fold.toTree(), List.of("AssignStmt", "AssignStmt", "ExprStmt", "ReturnStmt"),
+                getStatementKinds(fold));
+        assertEquals("15", fold.getChildren("AssignStmt").get(0).getJmmChild(1).get("value"));
+
+        var sum = fold.getChildren("AssignStmt").get(1).getJmmChild(1);
+        assertEquals("BinaryExpr", sum.getKind());
+        assertEquals("a", sum.getJmmChild(1).get("name"));
+    }
+
+    @Test
+    public void constantsNotFoldedWithoutFlag() {
+        var fold = getMethod(optimize("ConstantFolding.jmm", false), "fold");
+
+        assertEquals(List.of("AssignStmt", "IfStm", "WhileStm", "IfStm", "ReturnStmt"), getStatementKinds(fold));
+    }
+
+    @Test
+    public void foldedProgramRuns() {
+        var config = Map.of("optimize", "true");
+        var ollirResult = TestUtils.optimize(SpecsIo.getResource("pt/up/fe/comp/opt/jmm/ConstantFolding.jmm"),
+                config);
+        TestUtils.noErrors(ollirResult);
+        assertFalse(ollirResult.getOllirCode(), ollirResult.getOllirCode().contains("if"));
+
+        var output = JasminRunner.getDefault().run(new JasminBackendImpl().toJasmin(ollirResult)).getOutput();
+        assertEquals("22\n22", SpecsStrings.normalizeFileContents(output).trim());
+    }
+
+    private static List<String> getChildKinds(JmmNode node) {
+        return node.getChildren().stream().map(JmmNode::getKind).toList();
+    }
+
+    @Test
+    public void nestedConstantBranchesKeepParentShape() {
+        var nested = getMethod(optimize("ConstantBranchesNested.jmm", true), "nested");
+        var ifs = nested.getChildren("IfStm");
+
+        // The removed loop leaves an empty block, and the else branch stays in its place
+        assertEquals(nested.toTree(), List.of("VarRefExpr", "BRACKETS", "BRACKETS"), getChildKinds(ifs.get(0)));
+        assertEquals(0, ifs.get(0).getJmmChild(1).getNumChildren());
+        assertEquals("7", ifs.get(0).getJmmChild(2).getJmmChild(0).getJmmChild(1).get("value"));
+
+        // The loop keeps a single body, with both statements of the branch
+        var loop = nested.getChildren("WhileStm").get(0);
+        assertEquals(List.of("BinaryExpr", "BRACKETS"), getChildKinds(loop));
+        assertEquals(List.of("AssignStmt", "AssignStmt"), getChildKinds(loop.getJmmChild(1)));
+
+        // An unbraced branch is wrapped in a block
+        assertEquals(List.of("VarRefExpr", "BRACKETS", "AssignStmt"), getChildKinds(ifs.get(1)));
+        assertEquals("6", ifs.get(1).getJmmChild(1).getJmmChild(0).getJmmChild(1).get("value"));
+    }
+
+    @Test
+    public void nestedConstantBranchesRun() {
+        var expected = "8\n6\n5\n0";
+
+        // The empty blocks left by the removed loops are lowered as well, and the program runs as without optimizations
+        for (var optimize : List.of("true", "false")) {
+            var ollirResult = TestUtils.optimize(
+                    SpecsIo.getResource("pt/up/fe/comp/opt/jmm/ConstantBranchesNested.jmm"), Map.of("optimize", optimize));
+            TestUtils.noErrors(ollirResult);
+
+            var output = JasminRunner.getDefault().run(new JasminBackendImpl().toJasmin(ollirResult)).getOutput();
+            assertEquals(ollirResult.getOllirCode(), expected, SpecsStrings.normalizeFileContents(output).trim());
+        }
+    }
+
+    @Test
+    public void effectsKept() {
+        var keep = getMethod(optimize("ConstantFoldingKept.jmm", true), "keep");
+        var assignments = keep.getChildren("AssignStmt");
+
+        // The division by zero throws, and the call may have effects
+        assertEquals("BinaryExpr", assignments.get(0).getJmmChild(1).getKind());
+        assertEquals("BinaryExprAnd", assignments.get(1).getJmmChild(1).getKind());
+
+        // Conditions that cannot have effects are simplified, even when they are not constant
+        assertEquals("BinaryExpr", assignments.get(2).getJmmChild(1).getKind());
+        assertEquals("false", assignments.get(3).getJmmChild(1).get("value"));
+
+        // Only loops that never run are removed
+        assertEquals(1, keep.getChildren("WhileStm").size());
+    }
+}
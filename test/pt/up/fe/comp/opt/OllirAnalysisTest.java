@@ -0,0 +1,162 @@
+package pt.up.fe.comp.opt;
+
+import org.junit.Test;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.ReturnInstruction;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.optimization.analysis.ControlFlowGraph;
+import pt.up.fe.comp2024.optimization.analysis.Dominators;
+import pt.up.fe.comp2024.optimization.analysis.Liveness;
+import pt.up.fe.comp2024.optimization.analysis.ReachingDefinitions;
+import pt.up.fe.comp2024.optimization.analysis.SsaForm;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OllirAnalysisTest {
+
+    private static Method getMethod(String methodName) {
+        var ollirResult = new OllirResult(SpecsIo.getResource("pt/up/fe/comp/opt/ollir/Analysis.ollir"),
+                Collections.emptyMap());
+        return CpUtils.getMethod(ollirResult, methodName);
+    }
+
+    private static ControlFlowGraph buildCfg(String methodName) {
+        return ControlFlowGraph.build(getMethod(methodName)).orElseThrow();
+    }
+
+    private static BitSet bitsOf(int... indexes) {
+        var bits = new BitSet();
+        for (var index : indexes) {
+            bits.set(index);
+        }
+        return bits;
+    }
+
+    @Test
+    public void basicBlocks() {
+        var cfg = buildCfg("sum");
+        var blocks = cfg.getBlocks();
+
+        // Initialization, loop condition, loop body and return
+        assertEquals(4, blocks.size());
+        assertEquals(List.of(0, 2, 3, 6), blocks.stream().map(block -> block.getStart()).toList());
+        assertEquals(List.of(blocks.get(0), blocks.get(2)), blocks.get(1).getPredecessors());
+        assertEquals(List.of(blocks.get(3), blocks.get(2)), blocks.get(1).getSuccessors());
+        assertTrue(cfg.isBlockStart(3));
+        assertFalse(cfg.isBlockStart(4));
+    }
+
+    @Test
+    public void dominators() {
+        var cfg = buildCfg("sum");
+        var blocks = cfg.getBlocks();
+        var dominators = new Dominators(cfg);
+
+        assertNull(dominators.getImmediateDominator(blocks.get(0)));
+        assertSame(blocks.get(0), dominators.getImmediateDominator(blocks.get(1)));
+        assertSame(blocks.get(1), dominators.getImmediateDominator(blocks.get(2)));
+        assertSame(blocks.get(1), dominators.getImmediateDominator(blocks.get(3)));
+        assertTrue(dominators.dominates(blocks.get(1), blocks.get(3)));
+        assertFalse(dominators.dominates(blocks.get(2), blocks.get(3)));
+
+        // The loop body flows back into the condition
+        assertEquals(List.of(blocks.get(1)), dominators.getFrontier(blocks.get(2)));
+        assertEquals(List.of(blocks.get(1)), dominators.getFrontier(blocks.get(1)));
+    }
+
+    @Test
+    public void liveness() {
+        var cfg = buildCfg("sum");
+        var variables = cfg.getVariables();
+        var liveness = new Liveness(cfg);
+
+        int i = variables.getId("i");
+        int s = variables.getId("s");
+        int n = variables.getId("n");
+
+        assertEquals(bitsOf(n), liveness.getIn(cfg.getEntry()));
+        assertEquals(bitsOf(i, s, n), liveness.getIn(cfg.getBlocks().get(1)));
+        assertEquals(bitsOf(s), liveness.getIn(cfg.getBlocks().get(3)));
+
+        // i is written again before the loop condition reads s
+        var liveOut = liveness.getLiveOutPerInstruction();
+        assertEquals(bitsOf(i, n), liveOut[0]);
+        assertEquals(bitsOf(i, s, n), liveOut[3]);
+        assertEquals(bitsOf(i, s, n), liveOut[5]);
+        assertEquals(liveOut[3], liveness.getLiveOut(3));
+        assertTrue(liveOut[6].isEmpty());
+    }
+
+    @Test
+    public void reachingDefinitions() {
+        var cfg = buildCfg("sum");
+        var variables = cfg.getVariables();
+        var reaching = new ReachingDefinitions(cfg);
+
+        // Both the initialization and the increment reach the loop condition
+        assertEquals(bitsOf(0, 1, 3, 4), reaching.getIn(cfg.getBlocks().get(1)));
+        assertEquals(bitsOf(1, 3), reaching.getReachingIn(6, variables.getId("s")));
+        assertEquals(bitsOf(0, 4), reaching.getDefinitions(variables.getId("i")));
+        assertTrue(reaching.getReachingIn(0).isEmpty());
+    }
+
+    @Test
+    public void ssaLoop() {
+        var cfg = buildCfg("sum");
+        var variables = cfg.getVariables();
+        var ssa = new SsaForm(cfg, new Dominators(cfg), new Liveness(cfg));
+
+        var cond = cfg.getBlocks().get(1);
+        var phis = ssa.getPhis(cond);
+        assertEquals(2, phis.size());
+
+        for (var phi : phis) {
+            // One version from the initialization and one from the body, which are both different from the phi
+            int fromEntry = phi.getOperand(0);
+            int fromBody = phi.getOperand(1);
+            assertEquals(3, ssa.getVersionCount(phi.getVariable()));
+            assertEquals(3, new HashSet<>(List.of(fromEntry, fromBody, phi.getVersion())).size());
+        }
+
+        // The parameter is never assigned, so it keeps its initial version and needs no phi
+        assertTrue(phis.stream().noneMatch(phi -> phi.getVariable() == variables.getId("n")));
+
+        // The return reads the value selected by the phi of s
+        var ret = (ReturnInstruction) cfg.getInstructions().get(6);
+        var phiOfS = phis.stream().filter(phi -> phi.getVariable() == variables.getId("s")).findFirst().orElseThrow();
+        assertEquals(phiOfS.getVersion(), ssa.getUseVersion((Operand) ret.getOperand()));
+    }
+
+    @Test
+    public void ssaPruned() {
+        var cfg = buildCfg("max");
+        var variables = cfg.getVariables();
+        var ssa = new SsaForm(cfg, new Dominators(cfg), new Liveness(cfg));
+
+        var done = cfg.getBlockOf(4);
+        var phis = ssa.getPhis(done);
+        assertEquals(1, phis.size());
+        assertEquals(variables.getId("m"), phis.get(0).getVariable());
+
+        // t is assigned in one branch only but is dead at the join, so it gets no phi
+        assertTrue(phis.stream().noneMatch(phi -> phi.getVariable() == variables.getId("t")));
+
+        // Each assignment of m gets its own version, which the phi selects from the matching predecessor
+        var phi = phis.get(0);
+        assertNotEquals(ssa.getDefVersion(0), ssa.getDefVersion(2));
+        assertEquals(ssa.getDefVersion(0), phi.getOperand(0));
+        assertEquals(ssa.getDefVersion(2), phi.getOperand(1));
+        assertEquals(0, ssa.getDefVersion(1));
+
+        var ret = (ReturnInstruction) cfg.getInstructions().get(4);
+        assertEquals(phi.getVersion(), ssa.getUseVersion((Operand) ret.getOperand()));
+    }
+}
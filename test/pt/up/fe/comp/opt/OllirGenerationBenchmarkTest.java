@@ -0,0 +1,116 @@
+package pt.up.fe.comp.opt;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp2024.optimization.OllirCode;
+import pt.up.fe.comp2024.optimization.OllirGeneratorVisitor;
+
+import java.util.StringJoiner;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that lowering to OLLIR scales linearly with the size of expressions.
+ * <p>
+ * The timeouts are far above the time the tests take, and only fail if building the code of an expression becomes
+ * quadratic (or worse) again. The measured times are printed for comparison.
+ */
+public class OllirGenerationBenchmarkTest {
+
+    private static String deepExpressionProgram(int depth) {
+        var expr = new StringJoiner(" + ");
+        for (int i = 0; i <= depth; i++) {
+            expr.add("a");
+        }
+
+        return "class Deep {\n" +
+                "    public int compute(int a) {\n" +
+                "        int x;\n" +
+                "        x = " + expr + ";\n" +
+                "        return x;\n" +
+                "    }\n" +
+                "    public static void main(String[] args) {\n" +
+                "    }\n" +
+                "}\n";
+    }
+
+    private static String manyArgumentsProgram(int numArgs) {
+        var params = new StringJoiner(", ");
+        var args = new StringJoiner(", ");
+        for (int i = 0; i < numArgs; i++) {
+            params.add("int p" + i);
+            args.add("a + " + i);
+        }
+
+        return "class Args {\n" +
+                "    public int sum(" + params + ") {\n" +
+                "        return p0;\n" +
+                "    }\n" +
+                "    public int compute(int a) {\n" +
+                "        int x;\n" +
+                "        x = this.sum(" + args + ");\n" +
+                "        return x;\n" +
+                "    }\n" +
+                "    public static void main(String[] args) {\n" +
+                "    }\n" +
+                "}\n";
+    }
+
+    private static String lower(String code, String label) {
+        var semanticsResult = TestUtils.analyse(code);
+        TestUtils.noErrors(semanticsResult);
+
+        // The generator is used directly, so that parsing the OLLIR is not measured
+        long start = System.nanoTime();
+        var ollirCode = new OllirGeneratorVisitor(semanticsResult.getSymbolTable()).visit(semanticsResult.getRootNode());
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println("OLLIR lowering of " + label + ": " + elapsed / 1_000_000 + " ms");
+
+        return ollirCode;
+    }
+
+    private static int countOccurrences(String text, String pattern) {
+        int count = 0;
+        for (int i = text.indexOf(pattern); i != -1; i = text.indexOf(pattern, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test(timeout = 20_000)
+    public void deeplyNestedExpression() {
+        for (var depth : new int[]{100, 200, 400}) {
+            var ollirCode = lower(deepExpressionProgram(depth), "expression of depth " + depth);
+
+            // One temporary per addition, plus the assignment to x
+            assertEquals(depth + 1, countOccurrences(ollirCode, ":=.i32"));
+        }
+    }
+
+    @Test(timeout = 20_000)
+    public void manyArguments() {
+        for (var numArgs : new int[]{100, 200, 400}) {
+            var ollirCode = lower(manyArgumentsProgram(numArgs), "call with " + numArgs + " arguments");
+
+            // Every argument is computed before the call
+            int call = ollirCode.indexOf("invokevirtual(this.Args, \"sum\"");
+            assertTrue(call != -1);
+            assertEquals(numArgs, countOccurrences(ollirCode.substring(0, call), "+.i32"));
+        }
+    }
+
+    @Test
+    public void deeplyNestedCode() {
+        // Builds a chain of pieces of code, each one appended to the next, deeper than the call stack allows
+        var code = new OllirCode("0;\n");
+        for (int i = 1; i < 100_000; i++) {
+            code = new OllirCode().append(code).append(i + ";\n");
+        }
+
+        var text = code.toString();
+        assertTrue(text.startsWith("0;\n1;\n2;\n"));
+        assertTrue(text.endsWith("99998;\n99999;\n"));
+        assertEquals(text.length(), code.length());
+    }
+}
@@ -0,0 +1,60 @@
+package pt.up.fe.comp.opt;
+
+import org.junit.Test;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.Operand;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.specs.util.SpecsIo;
+
+import static org.junit.Assert.*;
+
+public class OllirGeneratorTest {
+
+    @Test
+    public void callArgumentsAssignedToTemporaries() {
+        var ollirResult = TestUtils.optimize(SpecsIo.getResource("pt/up/fe/comp/opt/jmm/CallArguments.jmm"));
+        TestUtils.noErrors(ollirResult);
+
+        var main = CpUtils.getMethod(ollirResult, "main");
+        var calls = CpUtils.getInstructions(AssignInstruction.class, main).stream()
+                .filter(assign -> assign.getRhs() instanceof CallInstruction call
+                        && call.getInvocationType() == CallType.invokevirtual)
+                .toList();
+
+        // Both nested calls are assigned to an integer temporary before being passed on
+        assertEquals(ollirResult.getOllirCode(), 2, calls.size());
+        for (var call : calls) {
+            assertEquals(ElementType.INT32, call.getTypeOfAssign().getTypeOfElement());
+        }
+
+        var println = CpUtils.getInstructions(CallInstruction.class, main).stream()
+                .filter(call -> call.getInvocationType() == CallType.invokestatic)
+                .findFirst()
+                .orElseThrow();
+        var argument = (Operand) println.getArguments().get(0);
+        assertEquals(((Operand) calls.get(1).getDest()).getName(), argument.getName());
+    }
+
+    @Test
+    public void importedCallsTypedFromClasspath() {
+        var ollirResult = TestUtils.optimize(SpecsIo.getResource("pt/up/fe/comp/opt/jmm/ImportedCalls.jmm"));
+        TestUtils.noErrors(ollirResult);
+
+        // The calls are arguments of println, whose context says nothing about their type
+        var main = CpUtils.getMethod(ollirResult, "main");
+        var calls = CpUtils.getInstructions(AssignInstruction.class, main).stream()
+                .filter(assign -> assign.getRhs() instanceof CallInstruction)
+                .map(assign -> (CallInstruction) assign.getRhs())
+                .filter(call -> call.getInvocationType() != CallType.NEW)
+                .toList();
+
+        assertEquals(ollirResult.getOllirCode(), 2, calls.size());
+        for (var call : calls) {
+            assertEquals(ollirResult.getOllirCode(), ElementType.INT32, call.getReturnType().getTypeOfElement());
+        }
+    }
+}
@@ -0,0 +1,525 @@
+package pt.up.fe.comp.opt;
+
+import org.junit.Test;
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.backend.JasminRunner;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.optimization.passes.TailCallElimination;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class OllirOptimizationTest {
+
+    private static OllirResult optimize(String resource, boolean optimize) {
+        return optimizeResource("pt/up/fe/comp/opt/ollir/" + resource, optimize);
+    }
+
+    private static OllirResult optimizeResource(String resource, boolean optimize) {
+        var config = new HashMap<String, String>();
+        config.put("optimize", String.valueOf(optimize));
+
+        var ollirResult = new OllirResult(SpecsIo.getResource(resource), config);
+        return new JmmOptimizationImpl().optimize(ollirResult);
+    }
+
+    private static String run(OllirResult ollirResult) {
+        return JasminRunner.getDefault().run(new JasminBackendImpl().toJasmin(ollirResult)).getOutput();
+    }
+
+    private static void assertNoReports(OllirResult ollirResult) {
+        assertTrue(CpUtils.toMessage("Expected no reports", ollirResult), ollirResult.getReports().isEmpty());
+    }
+
+    @Test
+    public void deadCodeNotRemovedWithoutFlag() {
+        var ollirResult = optimize("DeadCode.ollir", false);
+
+        var method = CpUtils.getMethod(ollirResult, "compute");
+        assertEquals(9, method.getInstructions().size());
+    }
+
+    @Test
+    public void deadCodeRemoved() {
+        var ollirResult = optimize("DeadCode.ollir", true);
+        assertNoReports(ollirResult);
+
+        var method = CpUtils.getMethod(ollirResult, "compute");
+        var instructions = method.getInstructions();
+
+        // Unused temporaries and the code after the first return are removed
+        assertEquals(method.getInstructions().toString(), 5, instructions.size());
+        assertEquals(InstructionType.RETURN, instructions.get(instructions.size() - 1).getInstType());
+
+        // Labels still point to instructions of the method
+        for (var target : method.getLabels().values()) {
+            assertTrue(instructions.contains(target));
+        }
+        assertSame(instructions.get(4), method.getLabels().get("end"));
+    }
+
+    @Test
+    public void deadCodeKeepsSideEffects() {
+        var ollirResult = optimize("DeadCode.ollir", true);
+        assertNoReports(ollirResult);
+
+        var method = CpUtils.getMethod(ollirResult, "sideEffects");
+
+        // Calls and divisions (which may throw) are kept, even if the result is not used
+        assertEquals(3, method.getInstructions().size());
+    }
+
+    @Test
+    public void copiesCoalesced() {
+        var ollirResult = optimize("Copies.ollir", true);
+        assertNoReports(ollirResult);
+
+        // The chain of copies ends up as a single assignment
+        var chain = CpUtils.getMethod(ollirResult, "chain");
+        assertEquals(2, chain.getInstructions().size());
+        CpUtils.assertHasOperation(OperationType.ADD, chain, ollirResult);
+
+        // Call and operation results are assigned directly to their final variable
+        var temps = CpUtils.getMethod(ollirResult, "temps");
+        assertEquals(3, temps.getInstructions().size());
+        var mul = (AssignInstruction) temps.getInstructions().get(1);
+        assertEquals("y", ((Operand) mul.getDest()).getName());
+    }
+
+    @Test
+    public void copyAfterLabelNotCoalesced() {
+        var ollirResult = optimize("Copies.ollir", true);
+        assertNoReports(ollirResult);
+
+        // The copy after the label joins two definitions of the temporary, so neither can be merged with it
+        var method = CpUtils.getMethod(ollirResult, "acrossLabel");
+        var instructions = method.getInstructions();
+        assertEquals(instructions.toString(), 4, instructions.size());
+
+        for (var index : new int[]{0, 2}) {
+            var assign = (AssignInstruction) instructions.get(index);
+            assertEquals("tmp0", ((Operand) assign.getDest()).getName());
+        }
+
+        // The copy itself was propagated into the return
+        var ret = (ReturnInstruction) method.getLabels().get("skip");
+        assertEquals("tmp0", ((Operand) ret.getOperand()).getName());
+    }
+
+    private static List<String> getCalledMethods(Method method, String receiver) {
+        return CpUtils.getInstructions(CallInstruction.class, method).stream()
+                .filter(call -> ((Operand) call.getCaller()).getName().equals(receiver))
+                .map(call -> ((LiteralElement) call.getMethodName()).getLiteral().replace("\"", ""))
+                .toList();
+    }
+
+    @Test
+    public void smallMethodsInlined() {
+        var ollirResult = optimize("Inlining.ollir", true);
+
+        // Methods with branches, and calls on other objects, are left as calls
+        var compute = CpUtils.getMethod(ollirResult, "compute");
+        assertEquals(List.of("abs"), getCalledMethods(compute, "this"));
+        assertEquals(List.of("<init>", "square"), getCalledMethods(compute, "other"));
+        assertEquals(List.of("println"), getCalledMethods(compute, "io"));
+
+        // Recursive methods are never inlined
+        assertEquals(List.of("recurse"), getCalledMethods(CpUtils.getMethod(ollirResult, "recurse"), "this"));
+
+        var inlined = ollirResult.getReports().stream()
+                .filter(report -> report.getType() == ReportType.LOG)
+                .map(Report::getMessage)
+                .toList();
+        assertEquals(inlined.toString(), 2, inlined.size());
+        assertTrue(inlined.get(0).contains("'square'"));
+        assertTrue(inlined.get(1).contains("'log'"));
+    }
+
+    @Test
+    public void inlinedMethodsRun() {
+        var ollirResult = optimize("Inlining.ollir", true);
+        assertEquals("9\n81", SpecsStrings.normalizeFileContents(run(ollirResult)).trim());
+    }
+
+    @Test
+    public void inliningNeedsFlag() {
+        var ollirResult = optimize("Inlining.ollir", false);
+
+        assertEquals(List.of("square", "log", "abs"), getCalledMethods(CpUtils.getMethod(ollirResult, "compute"), "this"));
+        assertNoReports(ollirResult);
+    }
+
+    @Test
+    public void tailCallsBecomeJumps() {
+        var ollirResult = optimize("TailCalls.ollir", true);
+        TestUtils.noErrors(ollirResult);
+
+        // Calls whose result is returned, also through copies and jumps, and calls that return nothing
+        for (var name : List.of("sum", "swap", "countdown", "factorial", "pick")) {
+            var method = CpUtils.getMethod(ollirResult, name);
+            assertEquals(name, List.of(), getCalledMethods(method, "this"));
+            assertEquals(name, List.of(), getCalledMethods(method, "TailCalls"));
+            assertFalse(name, CpUtils.getInstructions(GotoInstruction.class, method).isEmpty());
+        }
+
+        // The results of the calls of fib are added, and other calls another object
+        assertEquals(List.of("fib", "fib"), getCalledMethods(CpUtils.getMethod(ollirResult, "fib"), "this"));
+        assertEquals(List.of("<init>", "other"), getCalledMethods(CpUtils.getMethod(ollirResult, "other"), "o"));
+
+        var replaced = ollirResult.getReports().stream()
+                .filter(report -> report.getType() == ReportType.LOG)
+                .map(Report::getMessage)
+                .toList();
+        assertEquals(replaced.toString(), 5, replaced.size());
+        assertTrue(replaced.get(0).contains("1 tail call by jumps in method 'sum'"));
+    }
+
+    @Test
+    public void tailCallsRun() {
+        // The sum recurses deeper than the stack allows, unless its call became a jump
+        var ollirResult = optimize("TailCalls.ollir", true);
+        assertEquals("705082704\n8\n3\n2\n1\n3628800\n610\n0\n10",
+                SpecsStrings.normalizeFileContents(run(ollirResult)).trim());
+    }
+
+    @Test
+    public void tailCallArrayArgumentsReadBeforeParametersChange() {
+        var ollirResult = new OllirResult(SpecsIo.getResource("pt/up/fe/comp/opt/ollir/TailCalls.ollir"), Map.of());
+
+        // The load of the array is passed directly, as if it was propagated into the call, and its index is the
+        // parameter that the first argument assigns
+        var pick = CpUtils.getMethod(ollirResult, "pick");
+        var call = pick.getInstructions().stream()
+                .filter(inst -> inst instanceof AssignInstruction assign && assign.getRhs() instanceof CallInstruction)
+                .map(inst -> (CallInstruction) ((AssignInstruction) inst).getRhs())
+                .filter(rhs -> rhs.getInvocationType() == CallType.invokevirtual)
+                .findFirst()
+                .orElseThrow();
+        var intType = call.getArguments().get(1).getType();
+        call.getArguments().set(1, new ArrayOperand("v", intType, List.of(new Operand("n", intType))));
+
+        assertTrue(new TailCallElimination().optimize(ollirResult.getOllirClass()));
+        assertEquals(List.of(), getCalledMethods(pick, "this"));
+
+        var output = SpecsStrings.normalizeFileContents(run(ollirResult)).trim();
+        assertTrue(output, output.endsWith("\n10"));
+    }
+
+    @Test
+    public void tailCallsNeedSecondLevel() {
+        var ollirResult = new JmmOptimizationImpl().optimize(new OllirResult(
+                SpecsIo.getResource("pt/up/fe/comp/opt/ollir/TailCalls.ollir"), Map.of("optimizationLevel", "1")));
+
+        assertEquals(List.of("sum"), getCalledMethods(CpUtils.getMethod(ollirResult, "sum"), "this"));
+        assertNoReports(ollirResult);
+    }
+
+    /**
+     * @return the names of the variables assigned by the instructions of the method, up to the given label
+     */
+    private static List<String> getDefsBefore(Method method, String label) {
+        var instructions = method.getInstructions();
+        var end = instructions.indexOf(method.getLabels().get(label));
+
+        return instructions.subList(0, end).stream()
+                .filter(AssignInstruction.class::isInstance)
+                .map(inst -> ((AssignInstruction) inst).getDest())
+                .filter(dest -> !(dest instanceof ArrayOperand))
+                .map(dest -> ((Operand) dest).getName())
+                .toList();
+    }
+
+    @Test
+    public void loopInvariantsHoisted() {
+        var ollirResult = optimize("Loops.ollir", true);
+        assertNoReports(ollirResult);
+
+        // The length of the array in the header and the product in the body only depend on parameters
+        var sum = CpUtils.getMethod(ollirResult, "sum");
+        assertEquals(List.of("s", "i", "n", "t"), getDefsBefore(sum, "loop"));
+        assertEquals(InstructionType.BRANCH, sum.getLabels().get("loop").getInstType());
+
+        // A loop entered by a goto to its condition gets the invariants before the goto
+        var repeat = CpUtils.getMethod(ollirResult, "repeat");
+        assertEquals(List.of("i", "r", "last", "d", "e"), getDefsBefore(repeat, "body"));
+
+        // Jumps from outside of the loop go to the hoisted instructions, the loop keeps jumping to its header
+        var scan = CpUtils.getMethod(ollirResult, "scan");
+        var entry = CpUtils.getInstructions(CondBranchInstruction.class, scan).get(0);
+        var preheader = (AssignInstruction) scan.getLabels().get(entry.getLabel());
+        assertEquals("b", ((Operand) preheader.getDest()).getName());
+        assertEquals(List.of("i", "r", "b"), getDefsBefore(scan, "body"));
+    }
+
+    @Test
+    public void loopVariantsKept() {
+        var ollirResult = optimize("Loops.ollir", true);
+        assertNoReports(ollirResult);
+
+        // Read after the loop, which may not run
+        var repeatDefs = getDefsBefore(CpUtils.getMethod(ollirResult, "repeat"), "cond");
+        assertEquals("last", repeatDefs.get(repeatDefs.size() - 2));
+
+        // May throw, and is not computed when the loop does not run
+        assertEquals(List.of("i", "r"), getDefsBefore(CpUtils.getMethod(ollirResult, "divide"), "loop"));
+
+        // The loop writes the field
+        assertEquals(List.of("i", "r"), getDefsBefore(CpUtils.getMethod(ollirResult, "fields"), "loop"));
+    }
+
+    @Test
+    public void hoistedLoopsRun() {
+        var ollirResult = optimize("Loops.ollir", true);
+        assertEquals("24\n253\n0\n5\n15", SpecsStrings.normalizeFileContents(run(ollirResult)).trim());
+    }
+
+    @Test
+    public void loopsNotChangedWithoutFlag() {
+        var ollirResult = optimize("Loops.ollir", false);
+
+        assertEquals(List.of("s", "i"), getDefsBefore(CpUtils.getMethod(ollirResult, "sum"), "loop"));
+    }
+
+    private static List<String> getPassStatistics(OllirResult ollirResult) {
+        return ollirResult.getReports().stream()
+                .filter(report -> report.getType() == ReportType.DEBUG)
+                .map(Report::getMessage)
+                .toList();
+    }
+
+    @Test
+    public void optimizationLevelsSelectPasses() {
+        var resource = SpecsIo.getResource("pt/up/fe/comp/opt/ollir/Loops.ollir");
+
+        // The first level only cleans up each method, loops are optimized by the second
+        var firstLevel = new JmmOptimizationImpl().optimize(new OllirResult(resource,
+                Map.of("optimizationLevel", "1", "passStatistics", "true")));
+        var firstStatistics = getPassStatistics(firstLevel);
+        assertTrue(firstStatistics.toString(), firstStatistics.stream().anyMatch(s -> s.contains("'copy-propagation'")));
+        assertTrue(firstStatistics.stream().noneMatch(s -> s.contains("'loop-invariant-code-motion'")));
+        assertEquals(List.of("s", "i"), getDefsBefore(CpUtils.getMethod(firstLevel, "sum"), "loop"));
+        assertEquals("24\n253\n0\n5\n15", SpecsStrings.normalizeFileContents(run(firstLevel)).trim());
+
+        // The level overrides the flag, and without the flag of the statistics there are no reports
+        var secondLevel = new JmmOptimizationImpl().optimize(new OllirResult(resource,
+                Map.of("optimize", "false", "optimizationLevel", "2")));
+        assertNoReports(secondLevel);
+        assertEquals(List.of("s", "i", "n", "t"), getDefsBefore(CpUtils.getMethod(secondLevel, "sum"), "loop"));
+
+        var noLevel = new JmmOptimizationImpl().optimize(new OllirResult(resource,
+                Map.of("optimize", "true", "optimizationLevel", "0", "passStatistics", "true")));
+        assertNoReports(noLevel);
+        assertEquals(List.of("s", "i"), getDefsBefore(CpUtils.getMethod(noLevel, "sum"), "loop"));
+    }
+
+    @Test
+    public void passStatisticsReported() {
+        var ollirResult = new JmmOptimizationImpl().optimize(new OllirResult(
+                SpecsIo.getResource("pt/up/fe/comp/opt/ollir/Loops.ollir"),
+                Map.of("optimize", "true", "passStatistics", "true")));
+
+        // One report for each pass, and loops were hoisted at least once
+        var statistics = getPassStatistics(ollirResult);
+        assertEquals(statistics.toString(), 9, statistics.size());
+        assertTrue(statistics.stream().anyMatch(s -> s.matches("Pass 'loop-invariant-code-motion' ran \\d+ times, "
+                + "changed the code [1-9]\\d* times, took .* ms")));
+    }
+
+    private static long countBranches(Method method) {
+        return method.getInstructions().stream().filter(CondBranchInstruction.class::isInstance).count();
+    }
+
+    @Test
+    public void smallCountedLoopsFullyUnrolled() {
+        var ollirResult = optimize("Unrolling.ollir", true);
+        assertNoReports(ollirResult);
+
+        // Four iterations with no test between them, the label of the loop is kept for the first one
+        var squares = CpUtils.getMethod(ollirResult, "squares");
+        assertEquals(0, countBranches(squares));
+        assertEquals(4, squares.getInstructions().stream()
+                .filter(inst -> inst instanceof AssignInstruction assign && assign.getDest() instanceof ArrayOperand)
+                .count());
+        assertEquals(InstructionType.ASSIGN, squares.getLabels().get("loop").getInstType());
+    }
+
+    @Test
+    public void largeCountedLoopsPartiallyUnrolled() {
+        var ollirResult = optimize("Unrolling.ollir", true);
+        assertNoReports(ollirResult);
+
+        // The unrolled loop runs four iterations per test, the original loop runs the ones left
+        var sum = CpUtils.getMethod(ollirResult, "sum");
+        assertEquals(2, countBranches(sum));
+        var unrolled = (OpCondInstruction) sum.getInstructions().get(2);
+        assertEquals(OperationType.EQ, unrolled.getCondition().getOperation().getOpType());
+        assertEquals("1000", ((LiteralElement) unrolled.getOperands().get(1)).getLiteral());
+        assertEquals("cond", unrolled.getLabel());
+
+        // The branches of the body are copied with new labels, in the four iterations of the unrolled loop
+        var parity = CpUtils.getMethod(ollirResult, "parity");
+        assertEquals(1 + 4 + 2, countBranches(parity));
+        assertEquals(List.of("e", "i"), getDefsBefore(parity, "loop").subList(0, 2));
+
+        // The bound is not a constant
+        var bounded = CpUtils.getMethod(ollirResult, "bounded");
+        assertEquals(1, countBranches(bounded));
+        assertEquals(7, bounded.getInstructions().size());
+    }
+
+    @Test
+    public void unrolledLoopsRun() {
+        for (var optimize : new boolean[]{false, true}) {
+            var ollirResult = optimize("Unrolling.ollir", optimize);
+            assertEquals("13\n500500\n1\n1715\n14", SpecsStrings.normalizeFileContents(run(ollirResult)).trim());
+        }
+    }
+
+    @Test
+    public void loopsUnrolledAtSecondLevel() {
+        var ollirResult = new JmmOptimizationImpl().optimize(new OllirResult(
+                SpecsIo.getResource("pt/up/fe/comp/opt/ollir/Unrolling.ollir"), Map.of("optimizationLevel", "1")));
+        assertNoReports(ollirResult);
+
+        assertEquals(1, countBranches(CpUtils.getMethod(ollirResult, "squares")));
+        assertEquals(1, countBranches(CpUtils.getMethod(ollirResult, "sum")));
+    }
+
+    private static long countArrayLoads(Method method) {
+        return method.getInstructions().stream()
+                .filter(inst -> inst instanceof AssignInstruction assign
+                        && assign.getRhs() instanceof SingleOpInstruction singleOp
+                        && singleOp.getSingleOperand() instanceof ArrayOperand)
+                .count();
+    }
+
+    @Test
+    public void repeatedValuesReused() {
+        var ollirResult = optimize("ValueNumbering.ollir", true);
+        assertNoReports(ollirResult);
+
+        // The element is read once, and the sum in the other order is the same value
+        var sums = CpUtils.getMethod(ollirResult, "sums");
+        assertEquals(1, countArrayLoads(sums));
+        CpUtils.assertNumberOfOperations(OperationType.ADD, 2, sums, ollirResult);
+
+        // The field is read again after it is written
+        var fields = CpUtils.getMethod(ollirResult, "fields");
+        assertEquals(2, CpUtils.getInstructions(GetFieldInstruction.class, fields).size());
+    }
+
+    @Test
+    public void changedValuesRecomputed() {
+        var ollirResult = optimize("ValueNumbering.ollir", true);
+        assertNoReports(ollirResult);
+
+        // The variable holding the product is assigned again on one of the paths
+        CpUtils.assertNumberOfOperations(OperationType.MUL, 2, CpUtils.getMethod(ollirResult, "reassigned"),
+                ollirResult);
+
+        // The product in the loop does not dominate the one after it
+        CpUtils.assertNumberOfOperations(OperationType.MUL, 2, CpUtils.getMethod(ollirResult, "loop"), ollirResult);
+    }
+
+    @Test
+    public void reusedValuesRun() {
+        for (var optimize : new boolean[]{false, true}) {
+            var ollirResult = optimize("ValueNumbering.ollir", optimize);
+            var output = run(ollirResult);
+
+            assertEquals("19\n11\n12\n20\n40", SpecsStrings.normalizeFileContents(output).trim());
+        }
+    }
+
+    private static final String ARITHMETIC = "pt/up/fe/comp/cpf/4_jasmin/arithmetic/";
+
+    @Test
+    public void arithmeticIdentitiesSimplified() {
+        var ollirResult = optimize("Arithmetic_strength.ollir", true);
+        assertNoReports(ollirResult);
+
+        // Multiplications and divisions by 0 and 1, and between literals, are gone
+        var identities = CpUtils.getMethod(ollirResult, "identities");
+        CpUtils.assertNumberOfOperations(OperationType.MUL, 0, identities, ollirResult);
+        CpUtils.assertNumberOfOperations(OperationType.DIV, 0, identities, ollirResult);
+    }
+
+    @Test
+    public void powersOfTwoBecomeShifts() {
+        var ollirResult = optimize("Arithmetic_strength.ollir", true);
+        assertNoReports(ollirResult);
+
+        var powers = CpUtils.getMethod(ollirResult, "powers");
+        CpUtils.assertNumberOfOperations(OperationType.MUL, 0, powers, ollirResult);
+        CpUtils.assertNumberOfOperations(OperationType.DIV, 0, powers, ollirResult);
+        CpUtils.assertNumberOfOperations(OperationType.SHL, 1, powers, ollirResult);
+
+        // Each division needs an arithmetic shift to round negative numbers towards zero
+        CpUtils.assertNumberOfOperations(OperationType.SHRR, 2, powers, ollirResult);
+    }
+
+    @Test
+    public void inductionVariableProductsReduced() {
+        var ollirResult = optimize("Arithmetic_strength.ollir", true);
+        assertNoReports(ollirResult);
+
+        // The product is computed once before the loop, and then updated with an addition
+        var method = CpUtils.getMethod(ollirResult, "sumOfMultiples");
+        var mul = CpUtils.getOperationInstances(OperationType.MUL, method, ollirResult);
+        assertEquals(1, mul.size());
+
+        var instructions = method.getInstructions();
+        var loopStart = instructions.indexOf(method.getLabels().get("loop"));
+        var mulIndex = -1;
+        for (int i = 0; i < instructions.size(); i++) {
+            if (instructions.get(i) instanceof AssignInstruction assign && assign.getRhs() == mul.get(0)) {
+                mulIndex = i;
+            }
+        }
+        assertTrue("Expected the multiplication before the loop", mulIndex != -1 && mulIndex < loopStart);
+    }
+
+    @Test
+    public void simplifiedArithmeticRuns() {
+        var expected = "13\n17\n-17\n30";
+        for (var optimize : new boolean[]{false, true}) {
+            var ollirResult = optimize("Arithmetic_strength.ollir", optimize);
+            var output = run(ollirResult);
+
+            assertEquals(expected, SpecsStrings.normalizeFileContents(output).trim());
+        }
+
+        // The other arithmetic inputs give the same output when optimized
+        assertEquals("1", run(optimizeResource(ARITHMETIC + "Arithmetic_and.ollir", true)).trim());
+        assertEquals("1", run(optimizeResource(ARITHMETIC + "Arithmetic_less.ollir", true)).trim());
+        assertEquals("false", run(optimizeResource(ARITHMETIC + "Arithmetic_not.ollir", true)).trim());
+    }
+
+    @Test
+    public void benchmarkProgramsRun() {
+        var expected = Map.of(
+                "QuickSort.ollir", "0\n0\n19999",
+                "ArrayLoops.ollir", "-593635264\n2147328888",
+                "Recursion.ollir", "46368\n203\n125250");
+
+        for (var program : expected.entrySet()) {
+            for (var optimize : new boolean[]{false, true}) {
+                var ollirResult = optimizeResource("pt/up/fe/comp/bench/" + program.getKey(), optimize);
+                TestUtils.noErrors(ollirResult);
+
+                assertEquals(program.getValue(), SpecsStrings.normalizeFileContents(run(ollirResult)).trim());
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package pt.up.fe.comp.opt;
+
+import org.junit.Test;
+import pt.up.fe.comp2024.optimization.PassManager;
+import pt.up.fe.comp2024.optimization.PassStatistics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PassManagerTest {
+
+    @Test
+    public void passesRunInOrderOfLevel() {
+        var ran = new ArrayList<String>();
+        var manager = new PassManager<List<String>>()
+                .register("a", 1, unit -> unit.add("a"))
+                .register("b", 2, unit -> unit.add("b"), "a")
+                .register("c", 1, unit -> unit.add("c"), "a");
+
+        assertEquals(List.of(), manager.getSchedule(0));
+        assertEquals(List.of("a", "c"), manager.getSchedule(1));
+        assertEquals(List.of("a", "b", "c"), manager.getSchedule(2));
+
+        assertTrue(manager.run(ran, 2, new PassStatistics()));
+        assertEquals(List.of("a", "b", "c"), ran);
+    }
+
+    @Test
+    public void invalidatedPassesRunAgain() {
+        var counter = new int[]{5};
+        var ran = new ArrayList<String>();
+
+        // The passes make each other run again, until the counter reaches zero
+        var manager = new PassManager<int[]>()
+                .register("decrement", 1, unit -> {
+                    ran.add("decrement");
+                    if (unit[0] == 0) {
+                        return false;
+                    }
+                    unit[0]--;
+                    return true;
+                })
+                .register("check", 1, unit -> {
+                    ran.add("check");
+                    return unit[0] > 0;
+                })
+                .invalidates("decrement", "check")
+                .invalidates("check", "decrement");
+
+        var statistics = new PassStatistics();
+        assertTrue(manager.run(counter, 1, statistics));
+
+        assertEquals(0, counter[0]);
+        assertEquals(List.of("decrement", "check", "decrement", "check", "decrement", "check", "decrement", "check",
+                "decrement", "check"), ran);
+        assertEquals(5, statistics.getRuns("check"));
+        assertEquals(4, statistics.getChanges("check"));
+        assertEquals(5, statistics.getChanges("decrement"));
+    }
+
+    @Test
+    public void passesThatNeverStopAreLimited() {
+        var manager = new PassManager<int[]>()
+                .register("forever", 1, unit -> ++unit[0] > 0)
+                .invalidates("forever", "forever");
+
+        var statistics = new PassStatistics();
+        var counter = new int[]{0};
+        manager.run(counter, 1, statistics);
+
+        assertEquals(PassManager.MAX_RUNS, counter[0]);
+        assertEquals(PassManager.MAX_RUNS, statistics.getRuns("forever"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void unknownDependenciesRejected() {
+        new PassManager<int[]>().register("a", 1, unit -> false, "missing");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void repeatedPassesRejected() {
+        new PassManager<int[]>()
+                .register("a", 1, unit -> false)
+                .register("a", 1, unit -> false);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void unknownInvalidatedPassesRejected() {
+        new PassManager<int[]>()
+                .register("a", 1, unit -> false)
+                .invalidates("a", "missing");
+    }
+}